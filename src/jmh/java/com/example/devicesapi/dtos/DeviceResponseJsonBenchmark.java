@@ -0,0 +1,83 @@
+package com.example.devicesapi.dtos;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Jackson serialization of the API responses
+ * - a single device (GET /{id}), an offset page (GET ?page=) and a cursor page (GET ?limit=)
+ * - pages of size devices (default page size and the largest allowed limit)
+ * - mapper configured as the Spring Boot one (java.time module, ISO dates)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceResponseJsonBenchmark {
+
+    @Param({"10", "1000"})
+    int size;
+
+    ObjectMapper mapper;
+    DeviceResponse device;
+    List<DeviceResponse> page;
+    CursorPageResponse<DeviceResponse> cursorPage;
+
+    @Setup
+    public void setUp() {
+        mapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .build();
+        OffsetDateTime now = OffsetDateTime.now();
+        page = IntStream.range(0, size)
+                .mapToObj(i -> DeviceResponse.builder()
+                        .id(UUID.randomUUID())
+                        .name("Device " + i)
+                        .brand("Brand " + (i % 20))
+                        .state("AVAILABLE")
+                        .createdAt(now.minusSeconds(i))
+                        .version((long) i)
+                        .build())
+                .toList();
+        device = page.getFirst();
+        cursorPage = new CursorPageResponse<>(page, DeviceCursor.of(page.getLast()).encode());
+    }
+
+    @Benchmark
+    public byte[] device() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(device);
+    }
+
+    @Benchmark
+    public byte[] page() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] cursorPage() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(cursorPage);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.devicesapi.entities;
+
+import com.example.devicesapi.exceptions.InvalidFieldValueException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the requested states (Device.State.from)
+ * - a valid state, and an invalid one, rejected with an InvalidFieldValueException
+ *   (the cost of the rejected requests: two exceptions, with their stack traces)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceStateBenchmark {
+
+    String valid = "IN_USE";
+    String invalid = "BROKEN";
+
+    @Benchmark
+    public Device.State valid() {
+        return Device.State.from(valid);
+    }
+
+    @Benchmark
+    public Object invalid() {
+        try {
+            return Device.State.from(invalid);
+        } catch (InvalidFieldValueException e) {
+            return e;
+        }
+    }
+}
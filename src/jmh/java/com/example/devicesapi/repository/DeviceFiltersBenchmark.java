@@ -0,0 +1,68 @@
+package com.example.devicesapi.repository;
+
+import com.example.devicesapi.dtos.DeviceCursor;
+import com.example.devicesapi.entities.Device;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of the listing specifications, on every list request
+ * - no filters, all the filters, and all the filters after a cursor (keyset pages)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceFiltersBenchmark {
+
+    Optional<String> name;
+    Optional<String> brand;
+    Optional<String> state;
+    Optional<LocalDateTime> startDate;
+    Optional<LocalDateTime> endDate;
+    DeviceCursor cursor;
+
+    @Setup
+    public void setUp() {
+        name = Optional.of("Galaxy");
+        brand = Optional.of("Sam");
+        state = Optional.of("AVAILABLE");
+        startDate = Optional.of(LocalDateTime.now().minusDays(30));
+        endDate = Optional.of(LocalDateTime.now());
+        cursor = new DeviceCursor(OffsetDateTime.now(), UUID.randomUUID());
+    }
+
+    @Benchmark
+    public Specification<Device> noFilters() {
+        return DevicesRepository.byFilters(
+                Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+    }
+
+    @Benchmark
+    public Specification<Device> allFilters() {
+        return DevicesRepository.byFilters(name, brand, state, startDate, endDate);
+    }
+
+    @Benchmark
+    public Specification<Device> allFiltersAfterCursor() {
+        return DevicesRepository.byFilters(name, brand, state, startDate, endDate)
+                .and(DevicesRepository.afterCursor(cursor, true));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.devicesapi.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * API key authentication of every request (ApiKeyAuthenticationProvider.authenticate)
+ * - verification: bcrypt (cache disabled, BCrypt check on every request) or cached (as configured on the app)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiKeyAuthenticationBenchmark {
+
+    static final String KEY = "devices-api-key";
+    static final String SECRET = "devices-api-secret";
+
+    @Param({"bcrypt", "cached"})
+    String verification;
+
+    ApiKeyAuthenticationProvider provider;
+
+    @Setup
+    public void setUp() {
+        var props = new ApiKeyProperties(List.of(
+                new ApiKeyProperties.Client(KEY, new BCryptPasswordEncoder().encode(SECRET), null)), null);
+        Duration ttl = verification.equals("cached") ? Duration.ofMinutes(5) : Duration.ZERO;
+        provider = new ApiKeyAuthenticationProvider(props, new SimpleMeterRegistry(), 10_000, ttl);
+    }
+
+    @Benchmark
+    public Authentication authenticate() {
+        return provider.authenticate(new ApiKeyAuthenticationToken(KEY, SECRET));
+    }
+}
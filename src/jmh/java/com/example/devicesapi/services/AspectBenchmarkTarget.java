@@ -0,0 +1,17 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.annotations.TrackExecution;
+
+import java.util.UUID;
+
+/**
+ * Service like target of AspectsBenchmark
+ * on the services package (LoggingAspect pointcut) and with a @TrackExecution method (ExecutionTrackerAspect)
+ */
+public class AspectBenchmarkTarget {
+
+    @TrackExecution
+    public String describe(UUID id, String state) {
+        return id + ":" + state;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.devicesapi.services;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.devicesapi.aspects.ExecutionTrackerAspect;
+import com.example.devicesapi.aspects.LoggingAspect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the aspects proxying every service call
+ * - aspects: none (plain call), tracker (ExecutionTrackerAspect), logging (LoggingAspect) or both, as on the app
+ * - level of the aspects loggers: OFF (proxy and join point only) or INFO (as configured on the app),
+ *   written to target/jmh-aspects.log (logback-jmh.xml)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+public class AspectsBenchmark {
+
+    @Param({"none", "tracker", "logging", "both"})
+    String aspects;
+
+    @Param({"OFF", "INFO"})
+    String level;
+
+    AspectBenchmarkTarget target;
+    UUID id;
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger("com.example.devicesapi.aspects")).setLevel(Level.toLevel(level));
+        id = UUID.randomUUID();
+        if (aspects.equals("none")) {
+            target = new AspectBenchmarkTarget();
+            return;
+        }
+        AspectJProxyFactory factory = new AspectJProxyFactory(new AspectBenchmarkTarget());
+        factory.setProxyTargetClass(true);
+        if (!aspects.equals("logging")) {
+            factory.addAspect(new ExecutionTrackerAspect());
+        }
+        if (!aspects.equals("tracker")) {
+            factory.addAspect(new LoggingAspect());
+        }
+        target = factory.getProxy();
+    }
+
+    @Benchmark
+    public String call() {
+        return target.describe(id, "AVAILABLE");
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.entities.Device;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping of every device returned by the service (DevicesService.toDto)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceMappingBenchmark {
+
+    Device device;
+
+    @Setup
+    public void setUp() {
+        device = Device.builder()
+                .id(UUID.randomUUID())
+                .name("Galaxy S24")
+                .brand("Samsung")
+                .state(Device.State.AVAILABLE)
+                .createdAt(OffsetDateTime.now())
+                .version(3L)
+                .build();
+    }
+
+    @Benchmark
+    public DeviceResponse toDto() {
+        return DevicesService.toDto(device);
+    }
+}
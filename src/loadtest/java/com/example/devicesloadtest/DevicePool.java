@@ -0,0 +1,71 @@
+package com.example.devicesloadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ids of the existing devices, picked at random by the get, patch and delete operations
+ * - removals swap the last id into the removed slot, so every operation is O(1)
+ * - a device taken for deletion is no longer picked by the other operations
+ */
+public class DevicePool {
+
+    private final List<UUID> ids = new ArrayList<>();
+    private final Lock lock = new ReentrantLock();
+
+    public void add(UUID id) {
+        lock.lock();
+        try {
+            ids.add(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a random device, if any
+     */
+    public Optional<UUID> pick() {
+        lock.lock();
+        try {
+            return ids.isEmpty()
+                    ? Optional.empty()
+                    : Optional.of(ids.get(ThreadLocalRandom.current().nextInt(ids.size())));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a random device, removed from the pool, if any
+     */
+    public Optional<UUID> take() {
+        lock.lock();
+        try {
+            if (ids.isEmpty()) {
+                return Optional.empty();
+            }
+            int index = ThreadLocalRandom.current().nextInt(ids.size());
+            UUID id = ids.get(index);
+            ids.set(index, ids.getLast());
+            ids.removeLast();
+            return Optional.of(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
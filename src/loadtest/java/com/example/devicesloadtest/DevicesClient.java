@@ -0,0 +1,145 @@
+package com.example.devicesloadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client of the devices API under load
+ * - authenticated with an access token, exchanged once for the API key and secret
+ * - devices named after the run, so repeated runs on the same db don't collide
+ */
+public class DevicesClient {
+
+    static final int BRANDS = 20;
+    static final int SEED_BATCH_SIZE = 1000;
+    static final String[] STATES = {"AVAILABLE", "INACTIVE"};
+
+    private final URI devices;
+    private final String token;
+    private final HttpClient http;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final DevicePool pool = new DevicePool();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+
+    public DevicesClient(String baseUrl, String apiKey, String apiSecret) throws IOException, InterruptedException {
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.devices = URI.create(baseUrl + "/api/devices");
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/token"))
+                        .header("API-Key", apiKey)
+                        .header("API-Secret", apiSecret)
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Token request failed with " + response.statusCode());
+        }
+        JsonNode body = mapper.readTree(response.body());
+        this.token = (body.has("accessToken") ? body.get("accessToken") : body.get("access_token")).asText();
+    }
+
+    /**
+     * creates the initial devices, through the batch endpoint
+     * @param count - number of devices to create
+     */
+    public void seed(int count) throws IOException, InterruptedException {
+        for (int from = 0; from < count; from += SEED_BATCH_SIZE) {
+            int size = Math.min(SEED_BATCH_SIZE, count - from);
+            StringBuilder batch = new StringBuilder("[");
+            for (int i = 0; i < size; i++) {
+                batch.append(i == 0 ? "" : ",").append(newDeviceJson());
+            }
+            HttpResponse<String> response = http.send(post("/batch", batch.append("]").toString()),
+                    HttpResponse.BodyHandlers.ofString());
+            if (!Operation.succeeded(response)) {
+                throw new IllegalStateException("Seeding failed with " + response.statusCode() + ": " + response.body());
+            }
+            for (JsonNode item : mapper.readTree(response.body()).get("items")) {
+                if (item.hasNonNull("device")) {
+                    pool.add(UUID.fromString(item.get("device").get("id").asText()));
+                }
+            }
+        }
+    }
+
+    public HttpClient http() {
+        return http;
+    }
+
+    public DevicePool pool() {
+        return pool;
+    }
+
+    HttpRequest get(String path) {
+        return request(path).GET().build();
+    }
+
+    HttpRequest post(String path, String json) {
+        return request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    HttpRequest patch(String path, String json) {
+        return request(path)
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    HttpRequest delete(String path) {
+        return request(path).DELETE().build();
+    }
+
+    /**
+     * @return json of a create request of a new (unique) device
+     */
+    String newDeviceJson() {
+        return "{\"name\":\"load-" + runId + "-" + sequence.incrementAndGet()
+                + "\",\"brand\":\"" + randomBrand()
+                + "\",\"state\":\"" + randomState() + "\"}";
+    }
+
+    /**
+     * @param json - device returned by the API
+     * @return its id
+     */
+    UUID idOf(String json) {
+        try {
+            return UUID.fromString(mapper.readTree(json).get("id").asText());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected device " + json, e);
+        }
+    }
+
+    String randomBrand() {
+        return "Brand" + ThreadLocalRandom.current().nextInt(BRANDS);
+    }
+
+    /**
+     * the devices are never locked (IN_USE), so they can always be deleted
+     */
+    static String randomState() {
+        return STATES[ThreadLocalRandom.current().nextInt(STATES.length)];
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(devices + path))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30));
+    }
+}
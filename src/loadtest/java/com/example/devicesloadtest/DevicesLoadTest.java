@@ -0,0 +1,122 @@
+package com.example.devicesloadtest;
+
+import com.example.devicesapi.DevicesapiApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End to end load test of the devices API
+ * - boots the application against postgres and redis stand-ins (see StandIns)
+ * - seeds the devices, then sends a weighted mix of create, get, list, patch and delete requests
+ *   at a fixed rate (open model: requests are sent on schedule, whatever the response times),
+ *   first to warm up and then measured
+ * - reports the latency percentiles and throughput of each operation (see LoadReport)
+ * run with:
+ *   mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--devices=100000 --rate=500 --duration=2m"
+ */
+public class DevicesLoadTest {
+
+    static final String API_KEY = "loadtest-key";
+    static final String API_SECRET = "loadtest-secret";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        try (StandIns standIns = StandIns.start(options.standIns());
+             ConfigurableApplicationContext app = start(standIns, options)) {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            DevicesClient client = new DevicesClient("http://localhost:" + port, API_KEY, API_SECRET);
+
+            System.out.printf("Seeding %d devices%n", options.devices());
+            client.seed(options.devices());
+
+            LoadReport report = new LoadReport();
+            System.out.printf("Warming up for %s at %d req/s%n", options.warmup(), options.rate());
+            run(client, options, options.warmup(), report);
+            report.reset();
+            System.out.printf("Measuring for %s at %d req/s, mix %s%n", options.duration(), options.rate(), options.mix());
+            Duration elapsed = run(client, options, options.duration(), report);
+
+            report.print(System.out, elapsed);
+            report.write(options.reportDir());
+            System.out.printf("Latency distributions written to %s%n", options.reportDir().toAbsolutePath());
+        }
+    }
+
+    /**
+     * sends the mix at the target rate, each request on its own virtual thread
+     * @return time until the last response
+     */
+    static Duration run(DevicesClient client, LoadTestOptions options, Duration duration, LoadReport report) {
+        Operation[] operations = Operation.values();
+        int[] weights = new int[operations.length];
+        options.mix().forEach((operation, weight) -> weights[operation.ordinal()] = weight);
+        int total = options.mix().values().stream().mapToInt(Integer::intValue).sum();
+        long requests = duration.toNanos() * options.rate() / 1_000_000_000L;
+
+        long start = System.nanoTime();
+        try (ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < requests; i++) {
+                long scheduled = start + i * 1_000_000_000L / options.rate();
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation operation = Operation.pick(weights, total);
+                senders.submit(() -> send(client, operation, scheduled, report));
+            }
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * sends a request, recording its latency since it was scheduled
+     */
+    static void send(DevicesClient client, Operation operation, long scheduled, LoadReport report) {
+        Optional<HttpRequest> request = operation.request(client);
+        if (request.isEmpty()) {
+            report.skipped(operation);
+            return;
+        }
+        try {
+            HttpResponse<String> response = client.http().send(request.get(), HttpResponse.BodyHandlers.ofString());
+            operation.completed(client, response);
+            report.record(operation, System.nanoTime() - scheduled, Operation.succeeded(response));
+        } catch (Exception e) {
+            report.record(operation, System.nanoTime() - scheduled, false);
+        }
+    }
+
+    /**
+     * boots the application on a random port, with a single API client, not throttled
+     * (the limit under test is the server, not the client)
+     */
+    static ConfigurableApplicationContext start(StandIns standIns, LoadTestOptions options) {
+        Map<String, Object> props = standIns.properties();
+        props.put("server.port", 0);
+        props.put("spring.security.user.name", "user");
+        props.put("spring.security.user.password", "xpto123");
+        props.put("spring.security.api-keys.clients[0].key", API_KEY);
+        props.put("spring.security.api-keys.clients[0].secret-hash", new BCryptPasswordEncoder().encode(API_SECRET));
+        props.put("spring.security.api-keys.rate-limit.requests-per-second", 0);
+        // the access token must outlive the whole run
+        props.put("spring.security.api-tokens.ttl", options.warmup().plus(options.duration()).plusHours(1).toSeconds() + "s");
+        props.put("server.tomcat.max-connections", 20000);
+        props.put("logging.level.root", "WARN");
+        // as command line arguments, so they take precedence over application.yaml
+        return new SpringApplicationBuilder(DevicesapiApplication.class)
+                .run(props.entrySet().stream()
+                        .map(p -> "--" + p.getKey() + "=" + p.getValue())
+                        .toArray(String[]::new));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.devicesloadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of each operation
+ * - latencies in microseconds, from the time each request was scheduled to be sent
+ *   (not from when it was actually sent), so a stalled server isn't hidden by a stalled client
+ * - printed as percentiles and throughput per operation, and written as HdrHistogram
+ *   percentile distributions (<operation>.hgrm), to be plotted or compared across runs
+ */
+public class LoadReport {
+
+    static final int SIGNIFICANT_DIGITS = 3;
+    static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> skipped = new EnumMap<>(Operation.class);
+
+    public LoadReport() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(SIGNIFICANT_DIGITS));
+            errors.put(operation, new LongAdder());
+            skipped.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * @param operation - completed operation
+     * @param nanos - time since the request was scheduled
+     * @param succeeded - false for the failed requests and the unexpected responses
+     */
+    public void record(Operation operation, long nanos, boolean succeeded) {
+        latencies.get(operation).recordValue(Math.max(0, nanos / 1000));
+        if (!succeeded) {
+            errors.get(operation).increment();
+        }
+    }
+
+    /**
+     * @param operation - operation not sent, for lack of a device to act on
+     */
+    public void skipped(Operation operation) {
+        skipped.get(operation).increment();
+    }
+
+    /**
+     * drops everything recorded (at the end of the warm up)
+     */
+    public void reset() {
+        latencies.values().forEach(Histogram::reset);
+        errors.values().forEach(LongAdder::reset);
+        skipped.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * @param out - where to print the report
+     * @param elapsed - measured time
+     */
+    public void print(PrintStream out, Duration elapsed) {
+        double seconds = elapsed.toNanos() / 1e9;
+        Histogram all = new Histogram(SIGNIFICANT_DIGITS);
+        out.println("-".repeat(104));
+        out.printf("%-8s %9s %7s %7s %10s %9s %9s %9s %9s %9s%n",
+                "op", "requests", "errors", "skipped", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() > 0 || skipped.get(operation).sum() > 0) {
+                all.add(histogram);
+                row(out, operation.name().toLowerCase(), histogram,
+                        errors.get(operation).sum(), skipped.get(operation).sum(), seconds);
+            }
+        }
+        row(out, "all", all,
+                errors.values().stream().mapToLong(LongAdder::sum).sum(),
+                skipped.values().stream().mapToLong(LongAdder::sum).sum(),
+                seconds);
+        out.println("-".repeat(104));
+    }
+
+    /**
+     * writes the percentile distribution of each operation, in milliseconds
+     * @param dir - directory of the .hgrm files
+     */
+    public void write(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() > 0) {
+                try (PrintStream out = new PrintStream(
+                        Files.newOutputStream(dir.resolve(operation.name().toLowerCase() + ".hgrm")))) {
+                    histogram.outputPercentileDistribution(out, 1000.0);
+                }
+            }
+        }
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private static void row(PrintStream out, String name, Histogram histogram, long errors, long skipped, double seconds) {
+        out.printf("%-8s %9d %7d %7d %10.1f", name, histogram.getTotalCount(), errors, skipped,
+                histogram.getTotalCount() / seconds);
+        for (double percentile : PERCENTILES) {
+            out.printf(" %9.2f", histogram.getValueAtPercentile(percentile) / 1000.0);
+        }
+        out.printf(" %9.2f%n", histogram.getMaxValue() / 1000.0);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.devicesloadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Options of a load test run, from --name=value arguments (all optional)
+ * @param standIns - containers (postgres and redis started by testcontainers)
+ *                   or local (the ones configured on application.yaml / env vars)
+ * @param devices - devices seeded before the run
+ * @param rate - requests per second, sent on schedule whatever the response times
+ * @param warmup - time at the target rate before measuring
+ * @param duration - measured time
+ * @param mix - relative weight of each operation
+ * @param reportDir - where the latency distributions (.hgrm) are written
+ */
+public record LoadTestOptions(
+    String standIns,
+    int devices,
+    int rate,
+    Duration warmup,
+    Duration duration,
+    Map<Operation, Integer> mix,
+    Path reportDir
+) {
+
+    static final String DEFAULT_MIX = "create=10,get=50,list=25,patch=10,delete=5";
+
+    /**
+     * @param args - --stand-ins, --devices, --rate, --warmup, --duration, --mix and --report-dir
+     * @return options, with the defaults of the missing ones
+     * @throws IllegalArgumentException on unknown or invalid options
+     */
+    public static LoadTestOptions parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Invalid option " + arg + ", expected --name=value");
+            }
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        var options = new LoadTestOptions(
+                values.getOrDefault("stand-ins", "containers"),
+                Integer.parseInt(values.getOrDefault("devices", "10000")),
+                Integer.parseInt(values.getOrDefault("rate", "200")),
+                DurationStyle.detectAndParse(values.getOrDefault("warmup", "10s")),
+                DurationStyle.detectAndParse(values.getOrDefault("duration", "60s")),
+                mix(values.getOrDefault("mix", DEFAULT_MIX)),
+                Path.of(values.getOrDefault("report-dir", "target/loadtest")));
+        values.keySet().removeAll(Set.of(
+                "stand-ins", "devices", "rate", "warmup", "duration", "mix", "report-dir"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + values.keySet());
+        }
+        if (options.rate() < 1 || options.devices() < 0) {
+            throw new IllegalArgumentException("rate must be positive and devices not negative");
+        }
+        return options;
+    }
+
+    /**
+     * @param mix - operation=weight pairs, comma separated (e.g. get=80,list=20)
+     * @return weight of each operation, the missing ones not sent
+     */
+    static Map<Operation, Integer> mix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String pair : mix.split(",")) {
+            String[] parts = pair.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry " + pair + ", expected operation=weight");
+            }
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("The mix needs at least one operation with a positive weight");
+        }
+        return weights;
+    }
+}
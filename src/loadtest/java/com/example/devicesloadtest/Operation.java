@@ -0,0 +1,94 @@
+package com.example.devicesloadtest;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * API calls of the load mix
+ * each one builds its request (empty when there's no device to act on) and keeps the pool
+ * in line with its response (created devices join it, deleted ones left it when taken)
+ */
+public enum Operation {
+
+    CREATE {
+        @Override
+        Optional<HttpRequest> request(DevicesClient client) {
+            return Optional.of(client.post("", client.newDeviceJson()));
+        }
+
+        @Override
+        void completed(DevicesClient client, HttpResponse<String> response) {
+            if (response.statusCode() == 201) {
+                client.pool().add(client.idOf(response.body()));
+            }
+        }
+    },
+
+    GET {
+        @Override
+        Optional<HttpRequest> request(DevicesClient client) {
+            return client.pool().pick().map(id -> client.get("/" + id));
+        }
+    },
+
+    LIST {
+        @Override
+        Optional<HttpRequest> request(DevicesClient client) {
+            return Optional.of(client.get("?limit=20&brand=" + client.randomBrand()));
+        }
+    },
+
+    PATCH {
+        @Override
+        Optional<HttpRequest> request(DevicesClient client) {
+            return client.pool().pick().map(id -> client.patch("/" + id,
+                    "{\"state\":\"" + DevicesClient.randomState() + "\"}"));
+        }
+    },
+
+    DELETE {
+        @Override
+        Optional<HttpRequest> request(DevicesClient client) {
+            return client.pool().take().map(id -> client.delete("/" + id));
+        }
+    };
+
+    /**
+     * @param client - client of the API under test
+     * @return request of this operation, if there's a device to act on
+     */
+    abstract Optional<HttpRequest> request(DevicesClient client);
+
+    /**
+     * @param client - client of the API under test
+     * @param response - response of a request of this operation
+     */
+    void completed(DevicesClient client, HttpResponse<String> response) {
+    }
+
+    /**
+     * @return true for the expected (2xx) responses
+     */
+    static boolean succeeded(HttpResponse<?> response) {
+        return response.statusCode() / 100 == 2;
+    }
+
+    /**
+     * @param weights - weight of each operation, indexed by ordinal
+     * @param total - sum of the weights
+     * @return a random operation, with the probability of its weight
+     */
+    static Operation pick(int[] weights, int total) {
+        int r = ThreadLocalRandom.current().nextInt(total);
+        Operation[] operations = values();
+        for (int i = 0; i < operations.length; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException("Weights don't add up to " + total);
+    }
+}
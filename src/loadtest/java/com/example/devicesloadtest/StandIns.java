@@ -0,0 +1,66 @@
+package com.example.devicesloadtest;
+
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Postgres and redis of the application under load
+ * - containers: throwaway ones, started by testcontainers (same images of the tests)
+ * - local: the ones the application is configured with (application.yaml, DB_* and REDIS_* env vars)
+ */
+public class StandIns implements AutoCloseable {
+
+    private final PostgreSQLContainer<?> postgres;
+    private final GenericContainer<?> redis;
+
+    private StandIns(PostgreSQLContainer<?> postgres, GenericContainer<?> redis) {
+        this.postgres = postgres;
+        this.redis = redis;
+    }
+
+    /**
+     * @param mode - containers or local
+     * @return the started stand-ins
+     */
+    public static StandIns start(String mode) {
+        return switch (mode) {
+            case "local" -> new StandIns(null, null);
+            case "containers" -> {
+                var postgres = new PostgreSQLContainer<>("postgres:latest").withDatabaseName("devices_database");
+                var redis = new GenericContainer<>(DockerImageName.parse("redis:7.4.2")).withExposedPorts(6379);
+                postgres.start();
+                redis.start();
+                yield new StandIns(postgres, redis);
+            }
+            default -> throw new IllegalArgumentException("Unknown stand-ins " + mode + ", expected containers or local");
+        };
+    }
+
+    /**
+     * @return application properties pointing to the stand-ins (none for the local ones)
+     */
+    public Map<String, Object> properties() {
+        Map<String, Object> props = new LinkedHashMap<>();
+        if (postgres != null) {
+            props.put("spring.docker.compose.enabled", false);
+            props.put("spring.datasource.url", postgres.getJdbcUrl());
+            props.put("spring.datasource.username", postgres.getUsername());
+            props.put("spring.datasource.password", postgres.getPassword());
+            props.put("spring.data.redis.host", redis.getHost());
+            props.put("spring.data.redis.port", redis.getMappedPort(6379));
+        }
+        return props;
+    }
+
+    @Override
+    public void close() {
+        if (postgres != null) {
+            redis.stop();
+            postgres.stop();
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.devicesapi.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tells the ids of devices that certainly don't exist, so they're rejected without a db lookup
+ * - a Bloom filter of the existing ids, kept on redis (shared by all the nodes):
+ *   added on creation, rebuilt periodically (deleted ids stay on it until then)
+ *   and caught up from the creation times, so writes that bypassed it are not missed
+ * - a short lived in-process cache of ids known to be absent (deleted, or false positives)
+ * While the filter is not built (or any of its keys was lost on redis) every id might exist:
+ * a built filter has a sentinel bit set past its own ones, which a bitmap recreated by the
+ * SETBIT of a creation, after being lost on redis, doesn't have
+ */
+@Slf4j
+@Component
+public class DeviceIdFilter {
+
+    static final String BITS_KEY = "devicesapi:devices:ids:bloom";
+    static final String BUILDING_KEY = BITS_KEY + ":building";
+    static final String META_KEY = BITS_KEY + ":meta";
+    static final String LOCK_KEY = BITS_KEY + ":lock";
+
+    /**
+     * devices created up to this long before a build / sync are added again,
+     * covering the transactions still running when it started
+     */
+    static final Duration SYNC_MARGIN = Duration.ofMinutes(1);
+    static final Duration LOCK_TTL = Duration.ofMinutes(10);
+    static final int CHUNK = 10_000;
+
+    /**
+     * answer of the filter about an id
+     * - ABSENT: the device certainly doesn't exist
+     * - MAYBE: the id is on the filter, the device might exist
+     * - UNFILTERED: the filter is not built or unavailable, the device might exist
+     */
+    public enum Lookup {
+        ABSENT, MAYBE, UNFILTERED
+    }
+
+    static final String ALL_IDS_SQL = "SELECT id FROM devices";
+    static final String IDS_SINCE_SQL = "SELECT id FROM devices WHERE creation_time >= ?";
+
+    private final StringRedisTemplate redis;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate readOnlyTx;
+    private final long bits;
+    private final int hashes;
+    private final Duration rebuildInterval;
+    private final com.github.benmanes.caffeine.cache.Cache<UUID, Boolean> absent;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Counter rejected;
+    private final Counter negativeHits;
+    private final Counter maybe;
+    private final Counter falsePositives;
+
+    public DeviceIdFilter(StringRedisTemplate redis,
+                          DataSource dataSource,
+                          PlatformTransactionManager transactionManager,
+                          MeterRegistry registry,
+                          @Value("${devices.ids.filter.expected:1000000}") long expected,
+                          @Value("${devices.ids.filter.fpp:0.01}") double fpp,
+                          @Value("${devices.ids.filter.rebuild-interval:6h}") Duration rebuildInterval,
+                          @Value("${devices.ids.negative-cache.max-size:100000}") long negativeMaxSize,
+                          @Value("${devices.ids.negative-cache.ttl:1m}") Duration negativeTtl) {
+        this.redis = redis;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(CHUNK);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.bits = (long) Math.ceil(-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expected * Math.log(2)));
+        this.rebuildInterval = rebuildInterval;
+        this.absent = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(negativeTtl)
+                .build();
+        this.rejected = lookups(registry, "absent");
+        this.negativeHits = lookups(registry, "negative-cached");
+        this.maybe = lookups(registry, "maybe");
+        this.falsePositives = Counter.builder("devices.ids.false.positives")
+                .description("Ids the filter let through that were not found on the db")
+                .register(registry);
+        Gauge.builder("devices.ids.false.positive.rate", () -> {
+                    double passed = maybe.count();
+                    return passed == 0 ? 0 : falsePositives.count() / passed;
+                })
+                .description("Ratio of the ids let through by the filter that were not found on the db")
+                .register(registry);
+    }
+
+    /**
+     * @param id - device id
+     * @return false if the device certainly doesn't exist
+     */
+    public boolean mightExist(UUID id) {
+        return lookup(id) != Lookup.ABSENT;
+    }
+
+    /**
+     * @param id - device id
+     * @return whether the device certainly doesn't exist, might exist, or the filter couldn't tell
+     */
+    public Lookup lookup(UUID id) {
+        if (absent.getIfPresent(id) != null) {
+            negativeHits.increment();
+            return Lookup.ABSENT;
+        }
+        List<Object> results;
+        try {
+            long[] offsets = offsets(id);
+            results = redis.executePipelined((RedisCallback<Object>) connection -> {
+                connection.keyCommands().exists(bytes(META_KEY));
+                connection.stringCommands().getBit(bytes(BITS_KEY), bits);
+                for (long offset : offsets) {
+                    connection.stringCommands().getBit(bytes(BITS_KEY), offset);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.debug("Device ids filter unavailable: {}", e.getMessage());
+            return Lookup.UNFILTERED;
+        }
+        if (!Boolean.TRUE.equals(results.get(0)) || !Boolean.TRUE.equals(results.get(1))) {
+            return Lookup.UNFILTERED;
+        }
+        for (Object bit : results.subList(2, results.size())) {
+            if (!Boolean.TRUE.equals(bit)) {
+                rejected.increment();
+                return Lookup.ABSENT;
+            }
+        }
+        maybe.increment();
+        return Lookup.MAYBE;
+    }
+
+    /**
+     * registers an id that was not found on the db
+     * (a false positive of the filter only if it was on it, not when the filter couldn't tell)
+     * @param id - id of the missing device
+     * @param lookup - answer of the filter about the id
+     */
+    public void recordAbsent(UUID id, Lookup lookup) {
+        absent.put(id, Boolean.TRUE);
+        if (lookup == Lookup.MAYBE) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * registers a deleted device (it stays on the filter until the next rebuild)
+     * @param id - id of the deleted device
+     */
+    public void removed(UUID id) {
+        absent.put(id, Boolean.TRUE);
+    }
+
+    /**
+     * adds the ids of new devices to the filter
+     * (a failure is only logged, the next sync adds them from their creation time)
+     * @param ids - ids of the created devices
+     */
+    public void addAll(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            setBits(BITS_KEY, ids);
+        } catch (RuntimeException e) {
+            log.warn("Could not add {} device ids to the filter: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * keeps the filter up to date: builds it when missing, outdated (deleted ids piling up)
+     * or sized differently, otherwise adds the devices created since the previous sync
+     * only one node at a time does it
+     */
+    @Scheduled(fixedDelayString = "${devices.ids.filter.sync-interval:30s}")
+    public void sync() {
+        try {
+            if (!Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(LOCK_KEY, nodeId, LOCK_TTL))) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.debug("Device ids filter not synced: {}", e.getMessage());
+            return;
+        }
+        try {
+            Map<Object, Object> meta = redis.opsForHash().entries(META_KEY);
+            Instant now = Instant.now();
+            if (needsRebuild(meta, now)) {
+                rebuild(now);
+            } else {
+                Instant synced = Instant.parse((String) meta.get("synced"));
+                long added = addCreatedSince(BITS_KEY, synced.minus(SYNC_MARGIN));
+                redis.opsForHash().put(META_KEY, "synced", now.toString());
+                log.debug("Device ids filter synced: {} ids added", added);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Device ids filter sync failed: {}", e.getMessage());
+        } finally {
+            redis.delete(LOCK_KEY);
+        }
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private boolean needsRebuild(Map<Object, Object> meta, Instant now) {
+        if (meta.isEmpty()
+                || !Boolean.TRUE.equals(redis.opsForValue().getBit(BITS_KEY, bits))
+                || !String.valueOf(bits).equals(meta.get("bits"))
+                || !String.valueOf(hashes).equals(meta.get("hashes"))) {
+            return true;
+        }
+        return Instant.parse((String) meta.get("built")).plus(rebuildInterval).isBefore(now);
+    }
+
+    /**
+     * builds the filter from all the existing ids, aside, and then replaces the current one
+     * the sentinel bit is set first, so a building bitmap lost (and recreated) midway doesn't have it
+     * the devices created meanwhile are added again after the replacement
+     */
+    private void rebuild(Instant start) {
+        redis.delete(BUILDING_KEY);
+        redis.opsForValue().setBit(BUILDING_KEY, bits, true);
+        long total = streamIds(ALL_IDS_SQL, null, BUILDING_KEY);
+        redis.rename(BUILDING_KEY, BITS_KEY);
+        addCreatedSince(BITS_KEY, start.minus(SYNC_MARGIN));
+        redis.opsForHash().putAll(META_KEY, Map.of(
+                "built", start.toString(),
+                "synced", start.toString(),
+                "bits", String.valueOf(bits),
+                "hashes", String.valueOf(hashes)));
+        log.info("Device ids filter built: {} ids, {} bits, {} hashes", total, bits, hashes);
+    }
+
+    private long addCreatedSince(String key, Instant since) {
+        return streamIds(IDS_SINCE_SQL, Timestamp.from(since), key);
+    }
+
+    /**
+     * reads ids from a db cursor and sets their bits, chunk by chunk
+     * @return number of ids read
+     */
+    private long streamIds(String sql, Timestamp since, String key) {
+        Long total = readOnlyTx.execute(status -> {
+            List<UUID> chunk = new ArrayList<>(CHUNK);
+            long[] count = {0};
+            jdbc.query(sql, rs -> {
+                chunk.add(rs.getObject(1, UUID.class));
+                count[0]++;
+                if (chunk.size() == CHUNK) {
+                    setBits(key, chunk);
+                    chunk.clear();
+                }
+            }, since == null ? new Object[0] : new Object[]{since});
+            setBits(key, chunk);
+            return count[0];
+        });
+        return total == null ? 0 : total;
+    }
+
+    private void setBits(String key, Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        byte[] rawKey = bytes(key);
+        redis.executePipelined((RedisCallback<Object>) connection -> {
+            for (UUID id : ids) {
+                setBits(connection, rawKey, id);
+            }
+            return null;
+        });
+    }
+
+    private void setBits(RedisConnection connection, byte[] rawKey, UUID id) {
+        for (long offset : offsets(id)) {
+            connection.stringCommands().setBit(rawKey, offset, true);
+        }
+    }
+
+    long bits() {
+        return bits;
+    }
+
+    int hashes() {
+        return hashes;
+    }
+
+    /**
+     * bit positions of an id (double hashing of the two halves of the uuid)
+     */
+    long[] offsets(UUID id) {
+        long h1 = mix(id.getMostSignificantBits());
+        long h2 = mix(id.getLeastSignificantBits()) | 1;
+        long[] offsets = new long[hashes];
+        for (int i = 0; i < hashes; i++) {
+            offsets[i] = Math.floorMod(h1 + i * h2, bits);
+        }
+        return offsets;
+    }
+
+    /**
+     * murmur3 64 bits finalizer
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("devices.ids.lookups")
+                .tag("result", result)
+                .description("Device ids checked before a db lookup")
+                .register(registry);
+    }
+}
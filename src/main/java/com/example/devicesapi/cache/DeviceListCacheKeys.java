@@ -0,0 +1,117 @@
+package com.example.devicesapi.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Keys of the cached device lists
+ * - built from the normalized filters, page and sort, so equivalent requests share an entry
+ * - prefixed by a generation counter, kept on redis and shared by all the nodes
+ * Any change to the devices bumps the generation (a single INCR), so all the cached
+ * lists become unreachable at once, without scanning keys; they expire by ttl
+ */
+@Slf4j
+@Component("deviceListKeys")
+public class DeviceListCacheKeys {
+
+    /**
+     * redis key of the generation counter
+     */
+    static final String GENERATION_KEY = "devicesapi:deviceLists:generation";
+
+    private final StringRedisTemplate redis;
+    private final Counter invalidations;
+
+    public DeviceListCacheKeys(StringRedisTemplate redis, MeterRegistry registry) {
+        this.redis = redis;
+        this.invalidations = Counter.builder("cache.lists.invalidations")
+                .description("Generation bumps of the cached device lists")
+                .register(registry);
+    }
+
+    /**
+     * key of an offset paginated list
+     */
+    public String key(Optional<String> name,
+                      Optional<String> brand,
+                      Optional<String> state,
+                      Optional<LocalDateTime> startDateTime,
+                      Optional<LocalDateTime> endDateTime,
+                      Pageable pageable) {
+        return filtersKey(name, brand, state, startDateTime, endDateTime)
+                + "|p=" + pageable.getPageNumber() + "," + pageable.getPageSize()
+                + "|sort=" + pageable.getSort();
+    }
+
+    /**
+     * key of a keyset paginated list
+     */
+    public String key(Optional<String> name,
+                      Optional<String> brand,
+                      Optional<String> state,
+                      Optional<LocalDateTime> startDateTime,
+                      Optional<LocalDateTime> endDateTime,
+                      Optional<String> after,
+                      int limit,
+                      boolean ascending) {
+        return filtersKey(name, brand, state, startDateTime, endDateTime)
+                + "|after=" + text(after)
+                + "|limit=" + limit
+                + "|asc=" + ascending;
+    }
+
+    /**
+     * invalidates all the cached lists, moving to a new generation
+     * (a failure is only logged, the lists ttl bounds the staleness)
+     */
+    public void invalidate() {
+        try {
+            redis.opsForValue().increment(GENERATION_KEY);
+            invalidations.increment();
+        } catch (RuntimeException e) {
+            log.warn("Could not invalidate the cached device lists: {}", e.getMessage());
+        }
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private String filtersKey(Optional<String> name,
+                              Optional<String> brand,
+                              Optional<String> state,
+                              Optional<LocalDateTime> startDateTime,
+                              Optional<LocalDateTime> endDateTime) {
+        return "g" + generation()
+                + "|n=" + text(name.map(n -> n.toLowerCase(Locale.ROOT)))
+                + "|b=" + text(brand.map(b -> b.toLowerCase(Locale.ROOT)))
+                + "|s=" + text(state)
+                + "|from=" + startDateTime.map(LocalDateTime::toString).orElse("")
+                + "|to=" + endDateTime.map(LocalDateTime::toString).orElse("");
+    }
+
+    private long generation() {
+        String generation = redis.opsForValue().get(GENERATION_KEY);
+        return generation == null ? 0 : Long.parseLong(generation);
+    }
+
+    /**
+     * blank values are the same as absent ones (as on the filters),
+     * and the others are encoded, so they can't be confused with the separators
+     */
+    private static String text(Optional<String> value) {
+        return value.filter(v -> !v.isBlank())
+                .map(v -> URLEncoder.encode(v, StandardCharsets.UTF_8))
+                .orElse("");
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.devicesapi.cache;
+
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.entities.Device;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Compact binary form of the cached devices
+ * - format byte, so entries of another format are read as misses
+ * - bit mask of the present (non null) fields
+ * - id as 16 bytes, name and brand as utf, state as its ordinal
+ * - creation time as epoch seconds + nanos + offset seconds, version as a long
+ */
+public class DeviceResponseSerializer implements RedisSerializer<DeviceResponse> {
+
+    /**
+     * identifies this format on the first byte of the entries
+     */
+    static final byte FORMAT = (byte) 0xD1;
+
+    private static final int ID = 1;
+    private static final int NAME = 1 << 1;
+    private static final int BRAND = 1 << 2;
+    private static final int STATE = 1 << 3;
+    private static final int CREATED_AT = 1 << 4;
+    private static final int VERSION = 1 << 5;
+
+    private static final Device.State[] STATES = Device.State.values();
+
+    @Override
+    public byte[] serialize(DeviceResponse device) throws SerializationException {
+        if (device == null) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeByte(presentFields(device));
+            if (device.id() != null) {
+                out.writeLong(device.id().getMostSignificantBits());
+                out.writeLong(device.id().getLeastSignificantBits());
+            }
+            if (device.name() != null) {
+                out.writeUTF(device.name());
+            }
+            if (device.brand() != null) {
+                out.writeUTF(device.brand());
+            }
+            if (device.state() != null) {
+                out.writeByte(Device.State.valueOf(device.state()).ordinal());
+            }
+            if (device.createdAt() != null) {
+                Instant instant = device.createdAt().toInstant();
+                out.writeLong(instant.getEpochSecond());
+                out.writeInt(instant.getNano());
+                out.writeInt(device.createdAt().getOffset().getTotalSeconds());
+            }
+            if (device.version() != null) {
+                out.writeLong(device.version());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new SerializationException("Could not serialize device " + device.id(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public DeviceResponse deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length < 2 || bytes[0] != FORMAT) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+            int fields = in.readUnsignedByte();
+            DeviceResponse.DeviceResponseBuilder device = DeviceResponse.builder();
+            if ((fields & ID) != 0) {
+                device.id(new UUID(in.readLong(), in.readLong()));
+            }
+            if ((fields & NAME) != 0) {
+                device.name(in.readUTF());
+            }
+            if ((fields & BRAND) != 0) {
+                device.brand(in.readUTF());
+            }
+            if ((fields & STATE) != 0) {
+                device.state(STATES[in.readUnsignedByte()].name());
+            }
+            if ((fields & CREATED_AT) != 0) {
+                Instant instant = Instant.ofEpochSecond(in.readLong(), in.readInt());
+                device.createdAt(OffsetDateTime.ofInstant(instant, ZoneOffset.ofTotalSeconds(in.readInt())));
+            }
+            if ((fields & VERSION) != 0) {
+                device.version(in.readLong());
+            }
+            return device.build();
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Could not deserialize device", e);
+        }
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return DeviceResponse.class;
+    }
+
+    private static int presentFields(DeviceResponse device) {
+        int fields = 0;
+        if (device.id() != null) fields |= ID;
+        if (device.name() != null) fields |= NAME;
+        if (device.brand() != null) fields |= BRAND;
+        if (device.state() != null) fields |= STATE;
+        if (device.createdAt() != null) fields |= CREATED_AT;
+        if (device.version() != null) fields |= VERSION;
+        return fields;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.devicesapi.cache;
+
+import com.example.devicesapi.config.RedisConfig;
+import com.example.devicesapi.dtos.DeviceResponse;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bulk writes and evictions on the "devices" cache
+ * - sends all the commands on a single redis pipeline (one round trip)
+ * - keys, values and ttl follow the cache configuration, so the entries
+ *   are the same that @CachePut / @Cacheable would produce
+ * - evictions also drop the near cache entries, on all the nodes
+ */
+@Component
+public class DevicesCacheWriter {
+
+    /**
+     * number of keys removed per DEL command
+     */
+    static final int EVICT_CHUNK = 1000;
+
+    private final RedisCacheManager cacheManager;
+    private final NearCacheManager nearCacheManager;
+    private final RedisTemplate<String, Serializable> redisTemplate;
+
+    public DevicesCacheWriter(RedisCacheManager cacheManager,
+                              NearCacheManager nearCacheManager,
+                              RedisTemplate<String, Serializable> redisTemplate) {
+        this.cacheManager = cacheManager;
+        this.nearCacheManager = nearCacheManager;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * stores a set of devices on the cache
+     * @param devices - devices to cache
+     */
+    public void putAll(Collection<DeviceResponse> devices) {
+        putAll(devices, RedisStringCommands.SetOption.upsert());
+    }
+
+    /**
+     * stores a set of devices on the cache, except the ones already cached (SET NX),
+     * so a device read from the db doesn't overwrite a newer entry put meanwhile
+     * @param devices - devices to cache
+     */
+    public void putAllAbsent(Collection<DeviceResponse> devices) {
+        putAll(devices, RedisStringCommands.SetOption.ifAbsent());
+    }
+
+    /**
+     * removes a set of devices from the cache
+     * @param ids - ids of the devices to evict
+     */
+    public void evictAll(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        RedisCacheConfiguration config = cacheConfiguration();
+        String prefix = config.getKeyPrefixFor(RedisConfig.DEVICES_CACHE);
+        List<byte[]> keys = ids.stream()
+                .map(id -> ByteUtils.getBytes(config.getKeySerializationPair().write(prefix + id)))
+                .toList();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int from = 0; from < keys.size(); from += EVICT_CHUNK) {
+                List<byte[]> chunk = keys.subList(from, Math.min(from + EVICT_CHUNK, keys.size()));
+                connection.keyCommands().del(chunk.toArray(byte[][]::new));
+            }
+            return null;
+        });
+        nearCacheManager.invalidate(RedisConfig.DEVICES_CACHE, ids);
+    }
+
+    private void putAll(Collection<DeviceResponse> devices, RedisStringCommands.SetOption option) {
+        if (devices.isEmpty()) {
+            return;
+        }
+        RedisCacheConfiguration config = cacheConfiguration();
+        String prefix = config.getKeyPrefixFor(RedisConfig.DEVICES_CACHE);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (DeviceResponse device : devices) {
+                byte[] key = ByteUtils.getBytes(config.getKeySerializationPair().write(prefix + device.id()));
+                byte[] value = ByteUtils.getBytes(config.getValueSerializationPair().write(device));
+                Duration ttl = config.getTtlFunction().getTimeToLive(device.id(), device);
+                Expiration expiration = ttl != null && !ttl.isZero() && !ttl.isNegative()
+                        ? Expiration.from(ttl)
+                        : Expiration.persistent();
+                connection.stringCommands().set(key, value, expiration, option);
+            }
+            return null;
+        });
+    }
+
+    private RedisCacheConfiguration cacheConfiguration() {
+        return ((RedisCache) cacheManager.getCache(RedisConfig.DEVICES_CACHE)).getCacheConfiguration();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.devicesapi.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the most frequently accessed devices, to warm the cache of the starting nodes
+ * - only a sample of the accesses is counted, in memory
+ * - the counts are periodically added to an hourly redis sorted set, shared by all the nodes
+ * - the hottest devices are the top ones of the current and previous hours
+ */
+@Slf4j
+@Component
+public class HotKeyTracker {
+
+    /**
+     * outside of the versioned cache namespace: the ids are not serialized values, and the statistics
+     * must survive a namespace bump (when the new release starts on a cold cache and needs them most)
+     */
+    static final String HOT_KEY_PREFIX = "devicesapi:devices:hot:";
+    static final Duration BUCKET_TTL = Duration.ofHours(3);
+
+    private final StringRedisTemplate redis;
+    private final double sampleRate;
+    private final int maxTracked;
+    private final Map<UUID, LongAdder> counts = new ConcurrentHashMap<>();
+
+    public HotKeyTracker(StringRedisTemplate redis,
+                         @Value("${cache.warmup.sample-rate:0.05}") double sampleRate,
+                         @Value("${cache.warmup.max-tracked:10000}") int maxTracked) {
+        this.redis = redis;
+        this.sampleRate = sampleRate;
+        this.maxTracked = maxTracked;
+    }
+
+    /**
+     * counts an access to a device, with the sample probability
+     * (once maxTracked devices are counted, new ones wait for the next flush)
+     * @param id - id of the accessed device
+     */
+    public void record(UUID id) {
+        if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        LongAdder count = counts.get(id);
+        if (count == null) {
+            if (counts.size() >= maxTracked) {
+                return;
+            }
+            count = counts.computeIfAbsent(id, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    /**
+     * adds the sampled counts to the sorted set of the current hour, on a single pipeline
+     */
+    @Scheduled(fixedDelayString = "${cache.warmup.flush-interval:30s}")
+    public void flush() {
+        if (counts.isEmpty()) {
+            return;
+        }
+        Map<UUID, Long> sampled = new HashMap<>();
+        counts.keySet().forEach(id -> {
+            LongAdder count = counts.remove(id);
+            if (count != null) {
+                sampled.put(id, count.sum());
+            }
+        });
+        byte[] key = bucket(Instant.now()).getBytes(StandardCharsets.UTF_8);
+        try {
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                sampled.forEach((id, count) -> increment(connection, key, id, count));
+                connection.keyCommands().expire(key, BUCKET_TTL.toSeconds());
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.debug("Hot devices not flushed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @param limit - maximum number of devices
+     * @return ids of the most accessed devices, the hottest first
+     */
+    public List<UUID> hottest(int limit) {
+        Instant now = Instant.now();
+        Map<String, Double> scores = new HashMap<>();
+        for (String bucket : List.of(bucket(now), bucket(now.minus(Duration.ofHours(1))))) {
+            Set<ZSetOperations.TypedTuple<String>> top =
+                    redis.opsForZSet().reverseRangeWithScores(bucket, 0, limit - 1L);
+            if (top != null) {
+                top.forEach(t -> scores.merge(t.getValue(), t.getScore() == null ? 0 : t.getScore(), Double::sum));
+            }
+        }
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()));
+        return ranked.stream()
+                .limit(limit)
+                .map(e -> UUID.fromString(e.getKey()))
+                .toList();
+    }
+
+    private static void increment(RedisConnection connection, byte[] key, UUID id, long count) {
+        connection.zSetCommands().zIncrBy(key, count, id.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String bucket(Instant instant) {
+        return HOT_KEY_PREFIX + instant.getEpochSecond() / 3600;
+    }
+}
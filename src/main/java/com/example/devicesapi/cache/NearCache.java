@@ -0,0 +1,240 @@
+package com.example.devicesapi.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Two level cache: a bounded in-process (L1) cache in front of the shared redis (L2) cache
+ * - reads are served by L1 when possible, falling back to L2 (which then fills L1)
+ * - puts and evictions are applied to both levels and broadcast to the other nodes,
+ *   so they drop their (now stale) L1 entries
+ * - L1 entries expire after a short ttl, bounding the staleness of a lost invalidation
+ * - a value read from L2 is dropped from L1 if its key was invalidated meanwhile
+ *   (tracked by invalidation stamps), so a read racing a change doesn't keep the old value
+ */
+public class NearCache implements Cache {
+
+    /**
+     * number of invalidation stamps, the keys are spread over them by hash
+     */
+    static final int STAMPS = 1024;
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final Cache remote;
+    private final NearCacheManager owner;
+
+    /**
+     * invalidations of the keys of each stamp, and of the whole cache
+     */
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMPS);
+    private final AtomicLong clears = new AtomicLong();
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+
+    NearCache(Cache remote, NearCacheManager owner, long maxSize, Duration ttl, MeterRegistry registry) {
+        this.name = remote.getName();
+        this.remote = remote;
+        this.owner = owner;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.l1Hits = gets(registry, "l1", "hit");
+        this.l1Misses = gets(registry, "l1", "miss");
+        this.l2Hits = gets(registry, "l2", "hit");
+        this.l2Misses = gets(registry, "l2", "miss");
+        hitRatio(registry, "l1", l1Hits, l1Misses);
+        hitRatio(registry, "l2", l2Hits, l2Misses);
+        Gauge.builder("cache.near.size", local, com.github.benmanes.caffeine.cache.Cache::estimatedSize)
+                .tag("cache", name)
+                .description("Number of entries on the in-process cache")
+                .register(registry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            l1Hits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        l1Misses.increment();
+        long stamp = stamp(localKey);
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null || wrapper.get() == null) {
+            l2Misses.increment();
+            return wrapper;
+        }
+        l2Hits.increment();
+        putLocal(localKey, wrapper.get(), stamp);
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            return (T) wrapper.get();
+        }
+        String localKey = localKey(key);
+        long stamp = stamp(localKey);
+        T value = remote.get(key, valueLoader);
+        if (value != null) {
+            putLocal(localKey, value, stamp);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        String localKey = localKey(key);
+        if (value == null) {
+            local.invalidate(localKey);
+        } else {
+            local.put(localKey, value);
+        }
+        owner.publish(name, List.of(localKey));
+    }
+
+    /**
+     * caches a value loaded from the db (a miss or a refresh), on both levels:
+     * unlike a put it's not a change, so nothing is broadcast to the other nodes
+     * @param key - key of the entry
+     * @param value - loaded value
+     */
+    void fill(Object key, Object value) {
+        remote.put(key, value);
+        local.put(localKey(key), value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        String localKey = localKey(key);
+        invalidate(localKey);
+        owner.publish(name, List.of(localKey));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        clears.incrementAndGet();
+        local.invalidateAll();
+        owner.publish(name, List.of(NearCacheManager.ALL_KEYS));
+    }
+
+    /**
+     * drops entries from this node L1 only (the ones changed elsewhere)
+     * @param keys - keys of the entries to drop, or ALL_KEYS to drop them all
+     */
+    void invalidateLocal(Collection<String> keys) {
+        if (keys.contains(NearCacheManager.ALL_KEYS)) {
+            clears.incrementAndGet();
+            local.invalidateAll();
+        } else {
+            keys.forEach(this::invalidate);
+        }
+    }
+
+    /**
+     * drops an entry from L1, stamping its key first, so the L2 reads
+     * already in progress don't put the old value back
+     * @param localKey - L1 key of the entry
+     */
+    private void invalidate(String localKey) {
+        stamps.incrementAndGet(stampOf(localKey));
+        local.invalidate(localKey);
+    }
+
+    /**
+     * stores a value read from L2, unless its key was invalidated since the read started
+     * (checked after the put, so an invalidation racing the put drops it either way)
+     * @param localKey - L1 key of the entry
+     * @param value - value read from L2
+     * @param stamp - stamp of the key taken before the read
+     */
+    private void putLocal(String localKey, Object value, long stamp) {
+        local.put(localKey, value);
+        if (stamp(localKey) != stamp) {
+            local.invalidate(localKey);
+        }
+    }
+
+    /**
+     * @return number of invalidations of the stamp of a key, whole cache ones included
+     */
+    private long stamp(String localKey) {
+        return clears.get() + stamps.get(stampOf(localKey));
+    }
+
+    private static int stampOf(String localKey) {
+        return Math.floorMod(localKey.hashCode(), STAMPS);
+    }
+
+    /**
+     * L1 keys are the string form of the cache keys, the same sent on the invalidations
+     */
+    static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private Counter gets(MeterRegistry registry, String level, String result) {
+        return Counter.builder("cache.near.gets")
+                .tag("cache", name)
+                .tag("level", level)
+                .tag("result", result)
+                .description("Lookups on each level of the near cache")
+                .register(registry);
+    }
+
+    private void hitRatio(MeterRegistry registry, String level, Counter hits, Counter misses) {
+        Gauge.builder("cache.near.hit.ratio", () -> {
+                    double total = hits.count() + misses.count();
+                    return total == 0 ? 0 : hits.count() / total;
+                })
+                .tag("cache", name)
+                .tag("level", level)
+                .description("Ratio of the lookups served by each level of the near cache")
+                .register(registry);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.devicesapi.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache manager that puts an in-process near cache in front of the chosen redis caches
+ * (the other caches are served by redis alone)
+ * All the caches coalesce the concurrent loads of the same key (see SingleFlightCache)
+ * It also keeps the near caches of all the nodes coherent, through redis pub/sub:
+ * - every local put / evict is published as an invalidation of the changed keys
+ * - invalidations published by the other nodes drop the matching local entries
+ */
+@Slf4j
+public class NearCacheManager implements CacheManager, MessageListener {
+
+    /**
+     * channel of the near cache invalidations
+     */
+    public static final String INVALIDATION_TOPIC = "devicesapi:cache:invalidations";
+
+    /**
+     * key that invalidates all the entries of a cache
+     */
+    static final String ALL_KEYS = "*";
+
+    /**
+     * maximum number of keys sent on a single invalidation message
+     */
+    static final int INVALIDATION_CHUNK = 1000;
+
+    private static final String SEPARATOR = "|";
+    private static final String KEY_SEPARATOR = ",";
+
+    /**
+     * identifies this node, so it ignores its own invalidations
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final RedisCacheManager remote;
+    private final StringRedisTemplate redis;
+    private final MeterRegistry registry;
+    private final Set<String> nearCacheNames;
+    private final long maxSize;
+    private final Duration ttl;
+    private final double refreshBeta;
+    private final Map<String, NearCache> nearCaches = new ConcurrentHashMap<>();
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public NearCacheManager(RedisCacheManager remote,
+                            StringRedisTemplate redis,
+                            MeterRegistry registry,
+                            Set<String> nearCacheNames,
+                            long maxSize,
+                            Duration ttl,
+                            double refreshBeta) {
+        this.remote = remote;
+        this.redis = redis;
+        this.registry = registry;
+        this.nearCacheNames = Set.copyOf(nearCacheNames);
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.refreshBeta = refreshBeta;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, n -> {
+            RedisCache redisCache = (RedisCache) remote.getCache(n);
+            Cache cache = nearCacheNames.contains(n)
+                    ? nearCaches.computeIfAbsent(n, c -> new NearCache(redisCache, this, maxSize, ttl, registry))
+                    : redisCache;
+            return new SingleFlightCache(cache,
+                    redisCache.getCacheConfiguration().getTtlFunction(),
+                    refreshBeta,
+                    maxSize,
+                    registry);
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+
+    /**
+     * drops a set of entries from the near cache of all the nodes
+     * (used by the writers that change the redis cache directly)
+     * @param name - name of the cache
+     * @param keys - keys of the changed entries
+     */
+    public void invalidate(String name, Collection<?> keys) {
+        if (!nearCacheNames.contains(name) || keys.isEmpty()) {
+            return;
+        }
+        List<String> localKeys = keys.stream().map(NearCache::localKey).toList();
+        getCache(name);
+        nearCaches.get(name).invalidateLocal(localKeys);
+        publish(name, localKeys);
+    }
+
+    /**
+     * publishes the invalidation of a set of keys to the other nodes
+     * (a failed publish is only logged, the ttl of L1 bounds the staleness)
+     * @param name - name of the cache
+     * @param keys - changed keys
+     */
+    void publish(String name, List<String> keys) {
+        try {
+            for (int from = 0; from < keys.size(); from += INVALIDATION_CHUNK) {
+                List<String> chunk = keys.subList(from, Math.min(from + INVALIDATION_CHUNK, keys.size()));
+                redis.convertAndSend(INVALIDATION_TOPIC,
+                        nodeId + SEPARATOR + name + SEPARATOR + String.join(KEY_SEPARATOR, chunk));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not publish the invalidation of {} {} keys: {}", keys.size(), name, e.getMessage());
+        }
+    }
+
+    /**
+     * applies the invalidations published by the other nodes
+     * @param message - nodeId|cacheName|key1,key2,...
+     * @param pattern - subscribed channel
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length < 3 || parts[0].equals(nodeId)) {
+            return;
+        }
+        NearCache cache = nearCaches.get(parts[1]);
+        if (cache != null) {
+            cache.invalidateLocal(Arrays.asList(parts[2].split(KEY_SEPARATOR)));
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.devicesapi.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache decorator that coalesces the loads of missing entries (@Cacheable(sync = true))
+ * - only one loader runs per key, the concurrent callers of the same key wait for its result
+ *   (other keys are not blocked, unlike the cache wide lock of a synchronized get)
+ * - entries loaded here are refreshed early, with a probability that grows as they get closer
+ *   to expire and with the time they took to load (XFetch), so hot keys are reloaded before they
+ *   expire, instead of all their callers missing at once; the caller that draws the refresh
+ *   reloads the entry with its own loader (on its thread, through its whole interceptor chain),
+ *   the other callers keep getting the cached value meanwhile
+ * - a loaded value fills the cache without broadcasting an invalidation (it's not a change),
+ *   and only if its key was not evicted or rewritten here while it was loading (tracked by write
+ *   stamps, bumped under the same lock as the fill), nor rewritten on another node for a refresh
+ */
+@Slf4j
+public class SingleFlightCache implements Cache {
+
+    /**
+     * number of write stamps (and locks), the keys are spread over them by hash
+     */
+    static final int STAMPS = 1024;
+
+    private final Cache delegate;
+    private final RedisCacheWriter.TtlFunction ttlFunction;
+    private final double beta;
+
+    /**
+     * loads in progress, per key
+     */
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * writes (put / evict) of the keys of each stamp, and clears of the whole cache
+     */
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMPS);
+    private final AtomicLong clears = new AtomicLong();
+    private final Lock[] locks = new Lock[STAMPS];
+
+    /**
+     * load time and expiration of the entries loaded by this node
+     */
+    private final com.github.benmanes.caffeine.cache.Cache<String, Load> loads;
+
+    private final Counter coalesced;
+    private final Counter earlyRefreshes;
+    private final Timer loadTimer;
+
+    /**
+     * @param delegate - decorated cache
+     * @param ttlFunction - ttl of the entries on the decorated cache
+     * @param beta - early refresh eagerness (0 disables, 1 is the usual, > 1 refreshes earlier)
+     * @param maxTracked - maximum number of keys tracked for early refresh
+     * @param registry - metrics registry
+     */
+    public SingleFlightCache(Cache delegate,
+                             RedisCacheWriter.TtlFunction ttlFunction,
+                             double beta,
+                             long maxTracked,
+                             MeterRegistry registry) {
+        this.delegate = delegate;
+        this.ttlFunction = ttlFunction;
+        this.beta = beta;
+        for (int i = 0; i < STAMPS; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.loads = Caffeine.newBuilder()
+                .maximumSize(maxTracked)
+                .build();
+        this.coalesced = Counter.builder("cache.loads.coalesced")
+                .tag("cache", delegate.getName())
+                .description("Callers that waited for the load of another caller, instead of loading")
+                .register(registry);
+        this.earlyRefreshes = Counter.builder("cache.loads.early.refresh")
+                .tag("cache", delegate.getName())
+                .description("Entries refreshed before expiring")
+                .register(registry);
+        this.loadTimer = Timer.builder("cache.load")
+                .tag("cache", delegate.getName())
+                .description("Time to load the missing (or refreshed) entries")
+                .register(registry);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = delegate.get(key);
+        if (cached == null || cached.get() == null) {
+            return (T) load(key, valueLoader, null);
+        }
+        if (!refreshEarly(key)) {
+            return (T) cached.get();
+        }
+        try {
+            return (T) load(key, valueLoader, cached.get());
+        } catch (ValueRetrievalException e) {
+            log.warn("Early refresh of {} {} failed: {}", getName(), key, e.getCause().getMessage());
+            return (T) cached.get();
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        write(String.valueOf(key), () -> delegate.put(key, value));
+    }
+
+    @Override
+    public void evict(Object key) {
+        String flightKey = String.valueOf(key);
+        loads.invalidate(flightKey);
+        write(flightKey, () -> delegate.evict(key));
+    }
+
+    @Override
+    public void clear() {
+        clears.incrementAndGet();
+        loads.invalidateAll();
+        delegate.clear();
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    /**
+     * loads an entry, or waits for the load already in progress for the same key
+     * @param key - key of the entry
+     * @param valueLoader - loads the value (the cached method)
+     * @param refreshed - cached value being refreshed (loaded even if cached), null on a miss
+     * @return loaded value
+     * @throws ValueRetrievalException wrapping the loader failure, on the loader and all the waiters
+     */
+    private Object load(Object key, Callable<?> valueLoader, Object refreshed) {
+        String flightKey = String.valueOf(key);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(flightKey, flight);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw new ValueRetrievalException(key, valueLoader, e.getCause());
+            }
+        }
+        try {
+            long stamp = stamp(flightKey);
+            Object value = refreshed == null ? cachedValue(key) : null;
+            if (value == null) {
+                long start = System.nanoTime();
+                value = valueLoader.call();
+                long loadNanos = System.nanoTime() - start;
+                loadTimer.record(loadNanos, TimeUnit.NANOSECONDS);
+                if (value != null && fill(key, flightKey, value, stamp, refreshed)) {
+                    track(flightKey, key, value, loadNanos);
+                }
+            }
+            flight.complete(value);
+            return value;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    /**
+     * caches a loaded value, on the near cache without broadcasting an invalidation,
+     * unless its key was written here since the load started or, for a refresh,
+     * the cached value changed (rewritten on another node)
+     * @param stamp - stamp of the key taken before the load
+     * @param refreshed - cached value being refreshed, null on a miss
+     * @return true if the value was cached
+     */
+    private boolean fill(Object key, String flightKey, Object value, long stamp, Object refreshed) {
+        Lock lock = locks[stampOf(flightKey)];
+        long cleared;
+        lock.lock();
+        try {
+            cleared = clears.get();
+            if (stamp(flightKey) != stamp
+                    || refreshed != null && !Objects.equals(cachedValue(key), refreshed)) {
+                return false;
+            }
+            if (delegate instanceof NearCache nearCache) {
+                nearCache.fill(key, value);
+            } else {
+                delegate.put(key, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+        // a clear doesn't take the locks, so one racing the fill is undone here
+        if (clears.get() != cleared) {
+            delegate.evict(key);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * writes an entry, stamping its key under the lock of the fills,
+     * so a load started before the write can't overwrite it
+     */
+    private void write(String flightKey, Runnable write) {
+        int stampOf = stampOf(flightKey);
+        Lock lock = locks[stampOf];
+        lock.lock();
+        try {
+            stamps.incrementAndGet(stampOf);
+            write.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of writes of the stamp of a key, whole cache clears included
+     */
+    private long stamp(String flightKey) {
+        return clears.get() + stamps.get(stampOf(flightKey));
+    }
+
+    private static int stampOf(String flightKey) {
+        return Math.floorMod(flightKey.hashCode(), STAMPS);
+    }
+
+    /**
+     * the entry may have been cached by a load that finished right before this one started
+     */
+    private Object cachedValue(Object key) {
+        ValueWrapper cached = delegate.get(key);
+        return cached == null ? null : cached.get();
+    }
+
+    private void track(String flightKey, Object key, Object value, long loadNanos) {
+        Duration ttl = ttlFunction.getTimeToLive(key, value);
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            return;
+        }
+        loads.put(flightKey, new Load(loadNanos, System.nanoTime() + ttl.toNanos()));
+    }
+
+    /**
+     * draws whether a cached entry is refreshed now, with a probability that grows as it gets
+     * close to expire: now - loadTime * beta * ln(random) >= expiration
+     * @return true if the caller has to refresh it
+     */
+    private boolean refreshEarly(Object key) {
+        if (beta <= 0) {
+            return false;
+        }
+        String flightKey = String.valueOf(key);
+        Load load = loads.getIfPresent(flightKey);
+        if (load == null || inFlight.containsKey(flightKey)) {
+            return false;
+        }
+        double gap = load.nanos() * beta * -Math.log(ThreadLocalRandom.current().nextDouble());
+        if (System.nanoTime() + gap < load.expiresAt()) {
+            return false;
+        }
+        loads.invalidate(flightKey);
+        earlyRefreshes.increment();
+        return true;
+    }
+
+    /**
+     * @param nanos - time the entry took to load
+     * @param expiresAt - nano time the entry expires at
+     */
+    record Load(long nanos, long expiresAt) {}
+}
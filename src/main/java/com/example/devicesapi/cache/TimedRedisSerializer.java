@@ -0,0 +1,46 @@
+package com.example.devicesapi.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Serializer decorator that times the serialization of the values of a cache
+ * (cache.serialization{cache, operation=serialize|deserialize})
+ */
+public class TimedRedisSerializer<T> implements RedisSerializer<T> {
+
+    private final RedisSerializer<T> delegate;
+    private final Timer serialize;
+    private final Timer deserialize;
+
+    public TimedRedisSerializer(RedisSerializer<T> delegate, String cacheName, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.serialize = timer(registry, cacheName, "serialize");
+        this.deserialize = timer(registry, cacheName, "deserialize");
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        return serialize.record(() -> delegate.serialize(value));
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        return deserialize.record(() -> delegate.deserialize(bytes));
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return delegate.getTargetType();
+    }
+
+    private static Timer timer(MeterRegistry registry, String cacheName, String operation) {
+        return Timer.builder("cache.serialization")
+                .tag("cache", cacheName)
+                .tag("operation", operation)
+                .description("Time to (de)serialize the cached values")
+                .register(registry);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.devicesapi.cli;
+
+import com.example.devicesapi.dtos.DeviceDataFormat;
+import com.example.devicesapi.dtos.DeviceImportResponse;
+import com.example.devicesapi.services.DevicesImportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Command line bulk import of devices, run instead of the API:
+ *   java -jar devicesapi.jar --spring.main.web-application-type=none \
+ *        --devices.import.file=catalog.csv [--devices.import.format=ndjson]
+ * (the format defaults to the file extension)
+ * The application exits when the import ends, with status 0 on success
+ */
+@Component
+@ConditionalOnProperty(name = "devices.import.file")
+@Slf4j
+public class DevicesImportCommand implements ApplicationRunner {
+
+    private final DevicesImportService importSvc;
+    private final ConfigurableApplicationContext context;
+    private final Path file;
+    private final String format;
+
+    public DevicesImportCommand(DevicesImportService importSvc,
+                                ConfigurableApplicationContext context,
+                                @Value("${devices.import.file}") String file,
+                                @Value("${devices.import.format:}") String format) {
+        this.importSvc = importSvc;
+        this.context = context;
+        this.file = Path.of(file);
+        this.format = format;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        DeviceDataFormat dataFormat = DeviceDataFormat.from(format.isBlank() ? extensionOf(file) : format);
+        DeviceImportResponse report;
+        try (InputStream in = Files.newInputStream(file)) {
+            report = importSvc.importDevices(dataFormat, in);
+        }
+        log.info("Import of {} : {} rows, {} imported, {} rejected, {} rows/s",
+                file, report.total(), report.imported(), report.rejected(), report.rowsPerSecond());
+        report.rejections().forEach(r ->
+                log.info("- line {} [{},{},{}] : {}", r.line(), r.name(), r.brand(), r.state(), r.reason()));
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+
+    private static String extensionOf(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+}
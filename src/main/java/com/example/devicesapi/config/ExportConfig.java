@@ -0,0 +1,31 @@
+package com.example.devicesapi.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executor of the streamed exports, apart from the shared application task executor
+ * - at most max-concurrent exports run at once, each one holding a db connection
+ *   (and its cursor) for as long as the client takes to read it
+ * - up to queue-capacity exports wait for a free slot; beyond that they're rejected,
+ *   so a burst of exports can't starve the cache refreshes and the async writes
+ */
+@Configuration
+public class ExportConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolTaskExecutor exportExecutor(@Value("${devices.export.max-concurrent:4}") int maxConcurrent,
+                                                 @Value("${devices.export.queue-capacity:0}") int queueCapacity,
+                                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setVirtualThreads(virtualThreads);
+        executor.setThreadNamePrefix("export-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.devicesapi.config;
+
+import com.example.devicesapi.cache.NearCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * In-process (L1) cache in front of the redis "devices" cache,
+ * with coalesced loads and early refreshes on all the caches
+ * The near cache manager is the primary one, so it's the one used by the
+ * cache annotations; the redis cache manager stays available for direct use
+ */
+@Configuration
+public class NearCacheConfig {
+
+    @Value("${cache.near.max-size:10000}")
+    private long maxSize;
+
+    @Value("${cache.near.ttl:30s}")
+    private Duration ttl;
+
+    @Value("${cache.early-refresh.beta:1.0}")
+    private double refreshBeta;
+
+    @Bean
+    @Primary
+    public NearCacheManager nearCacheManager(RedisCacheManager redisCacheManager,
+                                             StringRedisTemplate stringRedisTemplate,
+                                             MeterRegistry registry) {
+        return new NearCacheManager(redisCacheManager, stringRedisTemplate, registry,
+                Set.of(RedisConfig.DEVICES_CACHE), maxSize, ttl, refreshBeta);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer nearCacheInvalidationContainer(
+            RedisConnectionFactory connectionFactory,
+            NearCacheManager nearCacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(nearCacheManager, new ChannelTopic(NearCacheManager.INVALIDATION_TOPIC));
+        return container;
+    }
+}
@@ -1,10 +1,15 @@
 package com.example.devicesapi.config;
 
-import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.example.devicesapi.cache.DeviceResponseSerializer;
+import com.example.devicesapi.cache.TimedRedisSerializer;
+import com.example.devicesapi.dtos.CursorPageResponse;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.dtos.PageResponse;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.annotation.PostConstruct;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
@@ -16,27 +21,53 @@ import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
-import redis.clients.jedis.Jedis;
 
 import java.io.Serializable;
 import java.time.Duration;
+import java.util.List;
 
 @Configuration
 @AutoConfigureAfter(RedisAutoConfiguration.class)
 @EnableCaching
 public class RedisConfig {
 
+	/**
+	 * name of the cache of single devices, keyed by id
+	 */
+	public static final String DEVICES_CACHE = "devices";
+
+	/**
+	 * namespace of the cache keys, part of the prefix of every cache entry
+	 * Bump it on any change to the cached types or to their serializers:
+	 * the new release then reads and writes a fresh set of keys, and the entries
+	 * of the previous release (still used by its nodes during a rolling deploy)
+	 * are left to expire by ttl, instead of flushing the whole cache on boot
+	 */
+	public static final String CACHE_NAMESPACE = "devicesapi:v2:";
+
+	/**
+	 * names of the caches of device lists, keyed by filters, page and sort
+	 * (one per result type: offset pages, plain lists and keyset pages)
+	 */
+	public static final String DEVICE_PAGES_CACHE = "devicePages";
+	public static final String DEVICE_LISTS_CACHE = "deviceLists";
+	public static final String DEVICE_CURSOR_PAGES_CACHE = "deviceCursorPages";
+
 //	@Autowired
 //	private CacheManager cacheManager;
 
-	@Value("${spring.data.redis.host}")
-	private String redisHost;
+	@Value("${cache.default.ttl:5m}")
+	private Duration defaultTtl;
+
+	@Value("${cache.devices.ttl:5m}")
+	private Duration devicesTtl;
 
-	@Value("${spring.data.redis.port}")
-	private int redisPort;
+	@Value("${cache.device-lists.ttl:1m}")
+	private Duration deviceListsTtl;
 
 	@Bean
 	public RedisTemplate<String, Serializable> redisCacheTemplate(LettuceConnectionFactory redisConnectionFactory) {
@@ -47,44 +78,91 @@ public class RedisConfig {
 		return template;
 	}
 
+    /**
+     * default configuration of the caches: string keys (on the versioned namespace)
+     * and json values (with type info, records included)
+     * @param mapper - application object mapper, copied to add the type info
+     * @return cache configuration
+     */
     @Bean
     public RedisCacheConfiguration cacheConfiguration(ObjectMapper mapper) {
         return RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(5))
+                .computePrefixWith(cacheName -> CACHE_NAMESPACE + cacheName + "::")
+                .entryTtl(defaultTtl)
                 .disableCachingNullValues()
 				.serializeKeysWith(
 						RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(
-                        RedisSerializationContext.SerializationPair
-                                .fromSerializer(new GenericJackson2JsonRedisSerializer(mapper)));
+                        RedisSerializationContext.SerializationPair.fromSerializer(jsonSerializer(mapper)));
     }
 
+    /**
+     * cache manager of the redis caches
+     * - the "devices" cache stores the devices on their compact binary form
+     * - the device lists caches store json of their (known) result type
+     * - any other cache uses the default (json) configuration
+     * statistics are enabled, so hits, misses, puts and removals are exposed as metrics,
+     * as well as the time to (de)serialize the values of each cache
+     * @param redisConnectionFactory - redis connections
+     * @param cacheConfiguration - default configuration of the caches
+     * @param mapper - application object mapper
+     * @param registry - metrics registry
+     * @return redis cache manager
+     */
     @Bean
-    public RedisCacheManager cacheManager(LettuceConnectionFactory redisConnectionFactory) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.enable(JsonGenerator.Feature.IGNORE_UNKNOWN);
-        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
-        //objectMapper.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
-        objectMapper.activateDefaultTyping(objectMapper.getPolymorphicTypeValidator(), ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
-
-        RedisSerializer<Object> serializer = new GenericJackson2JsonRedisSerializer(objectMapper);
-
-        RedisCacheConfiguration.defaultCacheConfig()
-                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
-                .entryTtl(Duration.ofMinutes(1));
-
+    public RedisCacheManager cacheManager(LettuceConnectionFactory redisConnectionFactory,
+                                          RedisCacheConfiguration cacheConfiguration,
+                                          ObjectMapper mapper,
+                                          MeterRegistry registry) {
+        TypeFactory types = mapper.getTypeFactory();
         return RedisCacheManager.builder(redisConnectionFactory)
-                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig())
+                .cacheDefaults(cacheConfiguration)
+                .enableStatistics()
+                .withCacheConfiguration(DEVICES_CACHE, timedConfiguration(cacheConfiguration.entryTtl(devicesTtl),
+                        DEVICES_CACHE, new DeviceResponseSerializer(), registry))
+                .withCacheConfiguration(DEVICE_PAGES_CACHE, timedConfiguration(cacheConfiguration.entryTtl(deviceListsTtl),
+                        DEVICE_PAGES_CACHE, new Jackson2JsonRedisSerializer<>(mapper,
+                                types.constructParametricType(PageResponse.class, DeviceResponse.class)), registry))
+                .withCacheConfiguration(DEVICE_LISTS_CACHE, timedConfiguration(cacheConfiguration.entryTtl(deviceListsTtl),
+                        DEVICE_LISTS_CACHE, new Jackson2JsonRedisSerializer<>(mapper,
+                                types.constructCollectionType(List.class, DeviceResponse.class)), registry))
+                .withCacheConfiguration(DEVICE_CURSOR_PAGES_CACHE, timedConfiguration(cacheConfiguration.entryTtl(deviceListsTtl),
+                        DEVICE_CURSOR_PAGES_CACHE, new Jackson2JsonRedisSerializer<>(mapper,
+                                types.constructParametricType(CursorPageResponse.class, DeviceResponse.class)), registry))
                 .build();
     }
 
-	@PostConstruct
-	public void clearCache() {
-		System.out.println("In Clear Cache");
-		Jedis jedis = new Jedis(redisHost, redisPort, 1000);
-		jedis.flushAll();
-		jedis.close();
-	}
+    /**
+     * configuration of a cache with its own (timed) value serializer
+     * (the device lists caches store json of a single known type)
+     * @param cacheConfiguration - base configuration of the cache
+     * @param cacheName - name of the cache
+     * @param serializer - serializer of the cached values
+     * @param registry - metrics registry
+     * @return cache configuration
+     */
+    private static <T> RedisCacheConfiguration timedConfiguration(RedisCacheConfiguration cacheConfiguration,
+                                                                  String cacheName,
+                                                                  RedisSerializer<T> serializer,
+                                                                  MeterRegistry registry) {
+        return cacheConfiguration.serializeValuesWith(
+                RedisSerializationContext.SerializationPair
+                        .fromSerializer(new TimedRedisSerializer<>(serializer, cacheName, registry)));
+    }
+
+    /**
+     * json with type info (records included), tolerating unknown properties
+     * @param mapper - application object mapper, copied to add the type info
+     * @return json serializer
+     */
+    private static RedisSerializer<Object> jsonSerializer(ObjectMapper mapper) {
+        ObjectMapper objectMapper = mapper.copy();
+        objectMapper.enable(JsonGenerator.Feature.IGNORE_UNKNOWN);
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return GenericJackson2JsonRedisSerializer.builder()
+                .objectMapper(objectMapper)
+                .defaultTyping(true)
+                .build();
+    }
 
 }
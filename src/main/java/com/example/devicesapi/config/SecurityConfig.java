@@ -1,6 +1,9 @@
 package com.example.devicesapi.config;
 
 import com.example.devicesapi.security.ApiKeyAuthFilter;
+import com.example.devicesapi.security.ApiRateLimitFilter;
+import com.example.devicesapi.security.ApiRateLimiter;
+import com.example.devicesapi.security.ApiTokenService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
@@ -29,7 +32,9 @@ public class SecurityConfig {
     @Order(1)
     SecurityFilterChain apiKeyChain(
             HttpSecurity http,
-            AuthenticationManager authenticationManager
+            AuthenticationManager authenticationManager,
+            ApiTokenService tokenService,
+            ApiRateLimiter rateLimiter
     ) throws Exception {
 
         return http
@@ -39,9 +44,13 @@ public class SecurityConfig {
                         session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
                 .addFilterBefore(
-                        new ApiKeyAuthFilter(authenticationManager),
+                        new ApiKeyAuthFilter(authenticationManager, tokenService),
                         UsernamePasswordAuthenticationFilter.class
                 )
+                .addFilterAfter(
+                        new ApiRateLimitFilter(rateLimiter),
+                        ApiKeyAuthFilter.class
+                )
                 .authorizeHttpRequests(auth ->
                         auth.anyRequest().authenticated()
                 )
@@ -58,8 +67,11 @@ public class SecurityConfig {
         return http
                 .securityMatcher("/**")
                 .httpBasic(Customizer.withDefaults())
-                .authorizeHttpRequests(auth ->
-                        auth.anyRequest().authenticated()
+                // the admin API is called by (stateless) clients, not by browser forms
+                .csrf(csrf -> csrf.ignoringRequestMatchers("/admin/**"))
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers("/admin/**").hasRole("ADMIN")
+                        .anyRequest().authenticated()
                 )
                 .build();
     }
@@ -0,0 +1,39 @@
+package com.example.devicesapi.controllers;
+
+import com.example.devicesapi.dtos.ApiTokenResponse;
+import com.example.devicesapi.exceptions.InvalidOperationException;
+import com.example.devicesapi.security.ApiKeyAuthenticationToken;
+import com.example.devicesapi.security.ApiTokenService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Exchange of the API key and secret for a short lived access token
+ */
+@RestController
+@RequestMapping("/api/auth")
+public class ApiTokenController {
+
+    private final ApiTokenService tokenService;
+
+    public ApiTokenController(ApiTokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    /**
+     * POST token - Issues an access token for the client of the API-Key and API-Secret headers
+     * (an access token can't be exchanged for another one)
+     * @param auth - authenticated client
+     * @return ApiTokenResponse with the token, to send as "Authorization: Bearer <token>"
+     */
+    @PostMapping("/token")
+    public ResponseEntity<ApiTokenResponse> token(Authentication auth) {
+        if (!(auth instanceof ApiKeyAuthenticationToken client) || !client.hasSecret()) {
+            throw new InvalidOperationException("Access tokens are only issued for the API-Key and API-Secret");
+        }
+        return ResponseEntity.ok(tokenService.issue(client.getKey()));
+    }
+}
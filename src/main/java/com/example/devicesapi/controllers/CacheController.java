@@ -0,0 +1,105 @@
+package com.example.devicesapi.controllers;
+
+import com.example.devicesapi.dtos.CacheEntryInfo;
+import com.example.devicesapi.dtos.CacheEvictionResponse;
+import com.example.devicesapi.dtos.CacheInfo;
+import com.example.devicesapi.dtos.CacheWarmupResponse;
+import com.example.devicesapi.services.CacheAdminService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Admin API of the caches (basic auth, ADMIN role)
+ */
+@RestController
+@RequestMapping("/admin/caches")
+public class CacheController {
+
+    private final CacheAdminService svc;
+
+    public CacheController(CacheAdminService svc) {
+        this.svc = svc;
+    }
+
+    /**
+     * GET - Fetches the configuration and statistics of all the caches
+     * @return list of CacheInfo
+     */
+    @GetMapping
+    public ResponseEntity<List<CacheInfo>> getCaches() {
+        return ResponseEntity.ok(svc.getCaches());
+    }
+
+    /**
+     * GET {name} - Fetches the configuration and statistics of a cache
+     * @param name - name of the cache
+     * @return CacheInfo
+     */
+    @GetMapping("/{name}")
+    public ResponseEntity<CacheInfo> getCache(@PathVariable String name) {
+        return ResponseEntity.ok(svc.getCache(name));
+    }
+
+    /**
+     * GET {name}/entries - Lists the keys of a cache
+     * @param name - name of the cache
+     * @param prefix - optional prefix of the keys
+     * @param limit - maximum number of keys
+     * @return list of CacheEntryInfo, with the keys and their remaining ttl
+     */
+    @GetMapping("/{name}/entries")
+    public ResponseEntity<List<CacheEntryInfo>> getEntries(
+            @PathVariable String name,
+            @RequestParam(required = false) String prefix,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return ResponseEntity.ok(svc.getEntries(name, Optional.ofNullable(prefix), limit));
+    }
+
+    /**
+     * GET {name}/entries/{key} - Fetches a cache entry
+     * @param name - name of the cache
+     * @param key - key of the entry
+     * @return CacheEntryInfo with the value and remaining ttl
+     */
+    @GetMapping("/{name}/entries/{key}")
+    public ResponseEntity<CacheEntryInfo> getEntry(@PathVariable String name, @PathVariable String key) {
+        return ResponseEntity.ok(svc.getEntry(name, key));
+    }
+
+    /**
+     * DELETE {name}/entries/{key} - Evicts a cache entry
+     * @param name - name of the cache
+     * @param key - key of the entry
+     */
+    @DeleteMapping("/{name}/entries/{key}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void evict(@PathVariable String name, @PathVariable String key) {
+        svc.evict(name, key);
+    }
+
+    /**
+     * DELETE {name}/entries - Evicts the entries with keys starting with a prefix (all, without it)
+     * @param name - name of the cache
+     * @param prefix - optional prefix of the keys
+     * @return CacheEvictionResponse with the number of evicted entries
+     */
+    @DeleteMapping("/{name}/entries")
+    public ResponseEntity<CacheEvictionResponse> evictAll(
+            @PathVariable String name,
+            @RequestParam(required = false) String prefix) {
+        return ResponseEntity.ok(svc.evictAll(name, Optional.ofNullable(prefix)));
+    }
+
+    /**
+     * POST warmup - Caches the most accessed devices
+     * @return CacheWarmupResponse with the number of cached devices
+     */
+    @PostMapping("/warmup")
+    public ResponseEntity<CacheWarmupResponse> warmup() {
+        return ResponseEntity.ok(svc.warmup());
+    }
+}
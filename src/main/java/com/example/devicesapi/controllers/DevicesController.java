@@ -1,73 +1,184 @@
 package com.example.devicesapi.controllers;
 
+import com.example.devicesapi.cache.HotKeyTracker;
 import com.example.devicesapi.dtos.*;
+import com.example.devicesapi.exceptions.ServiceUnavailableException;
+import com.example.devicesapi.services.DeviceStateWriteBehind;
+import com.example.devicesapi.services.DevicesBatchService;
+import com.example.devicesapi.services.DevicesExportService;
+import com.example.devicesapi.services.DevicesImportService;
 import com.example.devicesapi.services.DevicesService;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/devices")
 public class DevicesController extends DevicesControllerBase {
 
-    public DevicesController(DevicesService svc) {
+    private final DevicesBatchService batchSvc;
+    private final DevicesExportService exportSvc;
+    private final DevicesImportService importSvc;
+    private final DeviceStateWriteBehind stateWrites;
+    private final HotKeyTracker hotKeys;
+    private final Executor exportExecutor;
+    private final Duration exportTimeout;
+
+    public DevicesController(DevicesService svc,
+                             DevicesBatchService batchSvc,
+                             DevicesExportService exportSvc,
+                             DevicesImportService importSvc,
+                             DeviceStateWriteBehind stateWrites,
+                             HotKeyTracker hotKeys,
+                             @Qualifier("exportExecutor") Executor exportExecutor,
+                             @Value("${devices.export.timeout:30m}") Duration exportTimeout) {
         super(svc);
+        this.batchSvc = batchSvc;
+        this.exportSvc = exportSvc;
+        this.importSvc = importSvc;
+        this.stateWrites = stateWrites;
+        this.hotKeys = hotKeys;
+        this.exportExecutor = exportExecutor;
+        this.exportTimeout = exportTimeout;
     }
 
 
     /**
      * POST - Creates a new device
-     * @return DeviceResponse with the new device content
+     * @return DeviceResponse with the new device content (and its version as ETag)
      */
     @PostMapping
     public ResponseEntity<DeviceResponse> create(@Valid @RequestBody DeviceCreateRequest req) {
         var created = svc.create(req);
-        return new ResponseEntity<>(created, HttpStatus.CREATED);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .eTag(eTagOf(created))
+                .body(created);
+    }
+
+    /**
+     * POST batch - Creates a batch of new devices
+     * each device is created or rejected on its own
+     * @param reqs - list of DeviceCreateRequest with the new devices data
+     * @return DeviceBatchResponse with the outcome of each device
+     * (201 when all were created, 207 otherwise)
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<DeviceBatchResponse> createAll(@RequestBody List<DeviceCreateRequest> reqs) {
+        var result = batchSvc.createAll(reqs);
+        HttpStatus status = result.failed() == 0 ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return new ResponseEntity<>(result, status);
+    }
+
+    /**
+     * POST import - Bulk loads a stream of devices
+     * valid rows are imported, invalid or duplicated ones are rejected
+     * @param format - csv (default, with header: name,brand,state) or ndjson
+     * @param body - devices data
+     * @return DeviceImportResponse with the counts, throughput and rejected rows
+     */
+    @PostMapping("/import")
+    public ResponseEntity<DeviceImportResponse> importDevices(
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            InputStream body) throws IOException {
+        return ResponseEntity.ok(importSvc.importDevices(DeviceDataFormat.from(format), body));
     }
 
     /**
      * PUT {id} - Fully update an existing device.
      * @param id - identifies the device to be updated
+     * @param ifMatch - optional ETag of the device version the update is based on
      * @param req - DeviceUpdateRequest instance with the new data
      * @return DeviceResponse with the update device content
+     * (412 when the device no longer has the If-Match version)
      */
     @PutMapping("/{id}")
-    public ResponseEntity<DeviceResponse> replace(@PathVariable UUID id, @Valid @RequestBody DeviceUpdateRequest req) {
-        var updated = svc.update(id, req);
-        return ResponseEntity.ok(updated);
+    public ResponseEntity<DeviceResponse> replace(
+            @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody DeviceUpdateRequest req) {
+        var updated = svc.update(id, req, versionsOf(ifMatch));
+        return ResponseEntity.ok().eTag(eTagOf(updated)).body(updated);
     }
 
     /**
      * PATCH {id} - Partially updates an existing device.
+     * with the write-behind on, state only updates are applied to the cache
+     * and written to the db a moment later (coalesced with the following ones)
      * @param id - identifies the device to be updated
+     * @param ifMatch - optional ETag of the device version the update is based on
      * @param req - DeviceUpdateRequest instance with the new data
      * @return DeviceResponse with the update device content
+     * (412 when the device no longer has the If-Match version)
      */
     @PatchMapping("/{id}")
-    public ResponseEntity<DeviceResponse> partialUpdate(@PathVariable UUID id, @RequestBody DevicePatchRequest req) {
-        var updated = svc.partialUpdate(id, req);
-        return ResponseEntity.ok(updated);
+    public ResponseEntity<DeviceResponse> partialUpdate(
+            @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody DevicePatchRequest req) {
+        var updated = stateWrites.accepts(req)
+                ? stateWrites.updateState(id, req.state().get(), versionsOf(ifMatch))
+                : svc.partialUpdate(id, req, versionsOf(ifMatch));
+        return ResponseEntity.ok().eTag(eTagOf(updated)).body(updated);
+    }
+
+    /**
+     * PATCH state - Moves a set of devices to a new state
+     * the devices are the ones with the ids on the body or, without ids,
+     * the ones matching the filters (from works as the state filter)
+     * @param req - DeviceStateTransitionRequest with the ids and the new state
+     * @return DeviceStateTransitionResponse with the ids of the moved devices
+     */
+    @PatchMapping("/state")
+    public ResponseEntity<DeviceStateTransitionResponse> transitionAll(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) @DateTimeFormat(pattern="yyyy-MM-dd'T'HH-mm-ss") LocalDateTime startDateTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern="yyyy-MM-dd'T'HH-mm-ss") LocalDateTime endDateTime,
+            @Valid @RequestBody DeviceStateTransitionRequest req) {
+        return ResponseEntity.ok(
+                batchSvc.transitionAll(
+                    req,
+                    Optional.ofNullable(name),
+                    Optional.ofNullable(brand),
+                    Optional.ofNullable(startDateTime),
+                    Optional.ofNullable(endDateTime)));
     }
 
     /**
      * GET {id} - Fetches a single device w/ id
+     * the device version is returned as ETag, so a request with
+     * a matching If-None-Match gets a 304 without body
      * @param id - identifies the device to be fetched
      * @return DeviceResponse with the fetched device content
      */
     @GetMapping("/{id}")
     public ResponseEntity<DeviceResponse> getOne(@PathVariable UUID id) {
-        return ResponseEntity.ok(svc.getOne(id));
+        var device = svc.getOne(id);
+        // only existing devices are tracked, not the unknown ids of scanners
+        hotKeys.record(id);
+        return ResponseEntity.ok().eTag(eTagOf(device)).body(device);
     }
 
     /**
@@ -98,6 +209,94 @@ public class DevicesController extends DevicesControllerBase {
                     pageable));
     }
 
+    /**
+     * GET ?limit= - Fetches devices with keyset (cursor) pagination,
+     * with the same optional filters of the offset based listing
+     * @param after - optional cursor returned as next by the previous page
+     * @param limit - maximum number of devices on the page
+     * @return page of DeviceResponse with the cursor of the following page
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<CursorPageResponse<DeviceResponse>> getAllAfter(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) String state,
+            @RequestParam(required = false) String after,
+            @RequestParam(value = "limit") int limit,
+            @RequestParam(required = false) @DateTimeFormat(pattern="yyyy-MM-dd'T'HH-mm-ss") LocalDateTime startDateTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern="yyyy-MM-dd'T'HH-mm-ss") LocalDateTime endDateTime,
+            @RequestParam  (defaultValue = "true") boolean ascending) {
+        return ResponseEntity.ok(
+                svc.getDevicesAfter(
+                    Optional.ofNullable(name),
+                    Optional.ofNullable(brand),
+                    Optional.ofNullable(state),
+                    Optional.ofNullable(startDateTime),
+                    Optional.ofNullable(endDateTime),
+                    Optional.ofNullable(after),
+                    limit,
+                    ascending));
+    }
+
+    /**
+     * GET export - Streams all the devices, with the same optional filters of the listing
+     * the whole catalog outlives the default async timeout,
+     * so the export has a timeout of its own (devices.export.timeout)
+     * exports run on an executor of their own, bounded: a 503 is returned while it's full
+     * @param format - ndjson (default) or csv
+     * @return streamed body with one device per line
+     */
+    @GetMapping("/export")
+    public ResponseEntity<ResponseBodyEmitter> export(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) String state,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(pattern="yyyy-MM-dd'T'HH-mm-ss") LocalDateTime startDateTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern="yyyy-MM-dd'T'HH-mm-ss") LocalDateTime endDateTime,
+            @RequestParam  (defaultValue = "true") boolean ascending) {
+        DeviceDataFormat exportFormat = DeviceDataFormat.from(format);
+        ResponseBodyEmitter body = new ResponseBodyEmitter(exportTimeout.toMillis());
+        try {
+            exportExecutor.execute(() -> {
+                try (OutputStream out = new EmitterOutputStream(body)) {
+                    exportSvc.export(
+                            exportFormat,
+                            Optional.ofNullable(name),
+                            Optional.ofNullable(brand),
+                            Optional.ofNullable(state),
+                            Optional.ofNullable(startDateTime),
+                            Optional.ofNullable(endDateTime),
+                            ascending,
+                            out);
+                    body.complete();
+                } catch (Exception e) {
+                    body.completeWithError(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Too many exports in progress, retry later");
+        }
+        return ResponseEntity.ok()
+                .contentType(exportFormat.mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"devices." + exportFormat.extension + "\"")
+                .body(body);
+    }
+
+    /**
+     * GET search - Fetches the devices with names containing or similar to a term
+     * @param q - text to search on the devices names
+     * @param limit - maximum number of devices to return
+     * @return list of DeviceResponse, the most similar first
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<DeviceResponse>> search(
+            @RequestParam String q,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return ResponseEntity.ok(svc.search(q, limit));
+    }
+
     /**
      * DELETE {id} - eliminates a particular device w/ id
      * @param id - identifies the device to be deleted
@@ -107,4 +306,30 @@ public class DevicesController extends DevicesControllerBase {
     public void delete(@PathVariable UUID id) {
         svc.delete(id);
     }
-}
\ No newline at end of file
+
+    /**
+     * builds the (strong) ETag of a device, from its version
+     * @param device - device content
+     * @return quoted version
+     */
+    private static String eTagOf(DeviceResponse device) {
+        return "\"" + device.version() + "\"";
+    }
+
+    /**
+     * extracts the expected versions from an If-Match header, a list of ETags
+     * (quotes are dropped and * is kept to match any version; weak ETags never
+     * match on If-Match, so they're ignored, and a list of only weak ones fails)
+     * @param ifMatch - If-Match header value
+     * @return versions the device must have one of, if any
+     */
+    private static Optional<List<String>> versionsOf(String ifMatch) {
+        return Optional.ofNullable(ifMatch)
+                .filter(v -> !v.isBlank())
+                .map(v -> Arrays.stream(v.split(","))
+                        .map(String::trim)
+                        .filter(tag -> !tag.isEmpty() && !tag.startsWith("W/"))
+                        .map(tag -> tag.replace("\"", ""))
+                        .toList());
+    }
+}
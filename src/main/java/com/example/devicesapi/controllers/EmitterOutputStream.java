@@ -0,0 +1,34 @@
+package com.example.devicesapi.controllers;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * OutputStream over a ResponseBodyEmitter, for the streamed responses needing a timeout of their own
+ * - each write is sent right away, as raw bytes (callers are expected to buffer)
+ * - sends block while the client reads, so the memory used does not depend on the response size
+ */
+class EmitterOutputStream extends OutputStream {
+
+    private final ResponseBodyEmitter emitter;
+
+    EmitterOutputStream(ResponseBodyEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        emitter.send(new byte[]{(byte) b}, MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length > 0) {
+            emitter.send(Arrays.copyOfRange(bytes, offset, offset + length), MediaType.APPLICATION_OCTET_STREAM);
+        }
+    }
+}
@@ -87,6 +87,36 @@ public class GlobalExceptionHandler {
         return getErrorResponse(ex, request, HttpStatus.CONFLICT, null);
     }
 
+    /**
+     * handles all exceptions caused by unmet request preconditions
+     * (If-Match with an outdated version)
+     *
+     * @param ex throwed exception
+     * @param request http request
+     * @return Response w/ ErrorInfo
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ErrorInfo> handlePreconditionFailed(
+            PreconditionFailedException ex,
+            HttpServletRequest request) {
+        return getErrorResponse(ex, request, HttpStatus.PRECONDITION_FAILED, null);
+    }
+
+    /**
+     * handles all exceptions caused by a temporary lack of capacity
+     * (all the export slots taken)
+     *
+     * @param ex throwed exception
+     * @param request http request
+     * @return Response w/ ErrorInfo
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ErrorInfo> handleServiceUnavailable(
+            ServiceUnavailableException ex,
+            HttpServletRequest request) {
+        return getErrorResponse(ex, request, HttpStatus.SERVICE_UNAVAILABLE, null);
+    }
+
     /**
      * handles all exceptions related with failed resource selection
      *
@@ -0,0 +1,11 @@
+package com.example.devicesapi.dtos;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing an access token (to send as "Authorization: Bearer <token>") to the API client
+ */
+public record ApiTokenResponse(
+    String accessToken,
+    String tokenType,
+    long expiresIn
+) {}
@@ -0,0 +1,16 @@
+package com.example.devicesapi.dtos;
+
+import lombok.Builder;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing a cache entry to the admin client
+ * - ttlSeconds is the time the entry still has to live (-1 without expiration)
+ * - value is only filled when a single entry is inspected
+ */
+@Builder
+public record CacheEntryInfo(
+    String key,
+    Long ttlSeconds,
+    Object value
+) {}
@@ -0,0 +1,10 @@
+package com.example.devicesapi.dtos;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing the outcome of a cache eviction to the admin client
+ */
+public record CacheEvictionResponse(
+    String cache,
+    long entries
+) {}
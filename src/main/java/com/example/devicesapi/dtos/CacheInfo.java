@@ -0,0 +1,19 @@
+package com.example.devicesapi.dtos;
+
+import lombok.Builder;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing the configuration and statistics of a cache to the admin client
+ * - statistics are counted by this node, since it started
+ */
+@Builder
+public record CacheInfo(
+    String name,
+    String keyPrefix,
+    Long ttlSeconds,
+    long hits,
+    long misses,
+    long puts,
+    long removals
+) {}
@@ -0,0 +1,10 @@
+package com.example.devicesapi.dtos;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing the outcome of a cache warmup to the admin client
+ */
+public record CacheWarmupResponse(
+    String cache,
+    int devices
+) {}
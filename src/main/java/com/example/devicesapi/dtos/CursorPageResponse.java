@@ -0,0 +1,17 @@
+package com.example.devicesapi.dtos;
+
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing a keyset paginated list of results to client
+ * - next is the cursor to request the following page (null on the last page)
+ * - intentionally without totals, to avoid counting the whole result set
+ */
+@Builder
+public record CursorPageResponse<T>(
+    List<T> content,
+    String next
+) {}
@@ -0,0 +1,18 @@
+package com.example.devicesapi.dtos;
+
+import lombok.Builder;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing the outcome of a single device of a batch creation to client
+ * - index is the position of the device on the request
+ * - status is the http status the device would get on a single creation
+ * - device is only present when created, error only when rejected
+ */
+@Builder
+public record DeviceBatchItem(
+    int index,
+    int status,
+    DeviceResponse device,
+    String error
+) {}
@@ -0,0 +1,17 @@
+package com.example.devicesapi.dtos;
+
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing the outcome of a batch creation to client
+ * - one item per requested device, in the request order
+ */
+@Builder
+public record DeviceBatchResponse(
+    int created,
+    int failed,
+    List<DeviceBatchItem> items
+) {}
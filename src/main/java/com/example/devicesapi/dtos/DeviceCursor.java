@@ -0,0 +1,60 @@
+package com.example.devicesapi.dtos;
+
+import com.example.devicesapi.exceptions.InvalidFieldValueException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Keyset pagination position
+ * Identifies the last device returned on a page by its (creationTime, id) pair,
+ * so that the next page starts right after it, without offsets
+ * - exposed to the clients as an opaque (url safe base64) token
+ */
+public record DeviceCursor(
+    OffsetDateTime createdAt,
+    UUID id
+) {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * builds the cursor pointing to a particular device
+     * @param device - last device of the current page
+     * @return cursor positioned on that device
+     */
+    public static DeviceCursor of(DeviceResponse device) {
+        return new DeviceCursor(device.createdAt(), device.id());
+    }
+
+    /**
+     * converts the cursor to the opaque token returned to the API caller
+     * @return encoded cursor
+     */
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * rebuilds a cursor from the token provided by the API caller
+     * @param token - encoded cursor
+     * @return decoded cursor
+     * @throws InvalidFieldValueException if the token is not a valid cursor
+     */
+    public static DeviceCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(SEPARATOR);
+            return new DeviceCursor(
+                    OffsetDateTime.parse(raw.substring(0, sep)),
+                    UUID.fromString(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidFieldValueException("after", token);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.devicesapi.dtos;
+
+import com.example.devicesapi.exceptions.InvalidFieldValueException;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Formats of the bulk device data exchanged with the clients (exports and imports)
+ */
+public enum DeviceDataFormat {
+    NDJSON(MediaType.APPLICATION_NDJSON, "ndjson"),
+    CSV(new MediaType("text", "csv", StandardCharsets.UTF_8), "csv");
+
+    public final MediaType mediaType;
+    public final String extension;
+
+    DeviceDataFormat(MediaType mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public static DeviceDataFormat from(String _format) {
+        try {
+            return DeviceDataFormat.valueOf(_format.toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new InvalidFieldValueException("format", _format);
+        }
+    }
+}
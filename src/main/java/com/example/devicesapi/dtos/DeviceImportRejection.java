@@ -0,0 +1,17 @@
+package com.example.devicesapi.dtos;
+
+import lombok.Builder;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing a row rejected by an import to client
+ * - line is the position of the row on the imported data (header excluded)
+ */
+@Builder
+public record DeviceImportRejection(
+    long line,
+    String name,
+    String brand,
+    String state,
+    String reason
+) {}
@@ -0,0 +1,20 @@
+package com.example.devicesapi.dtos;
+
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing the outcome of a bulk import to client
+ * - rejections lists the first rejected rows (rejected holds the full count)
+ */
+@Builder
+public record DeviceImportResponse(
+    long total,
+    long imported,
+    long rejected,
+    long elapsedMillis,
+    long rowsPerSecond,
+    List<DeviceImportRejection> rejections
+) {}
@@ -16,5 +16,6 @@ public record DeviceResponse (
     String name,
     String brand,
     String state,
-    OffsetDateTime createdAt
+    OffsetDateTime createdAt,
+    Long version
 ) implements Serializable {}
\ No newline at end of file
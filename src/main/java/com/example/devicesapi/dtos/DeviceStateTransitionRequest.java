@@ -0,0 +1,24 @@
+package com.example.devicesapi.dtos;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.Builder;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing the data of a bulk state transition
+ * - ids : devices to move (when absent, the devices are selected by filters)
+ * - state : new state of the devices
+ * - from : optional current state the devices must be in to be moved
+ */
+@Builder
+public record DeviceStateTransitionRequest(
+    List<UUID> ids,
+    @NotBlank(message = "State is required")
+    @Size(min = 6, max = 9, message = "State valid values: \"AVAILABLE\", \"IN_USE\", \"INACTIVE\"")
+    String state,
+    String from
+) {}
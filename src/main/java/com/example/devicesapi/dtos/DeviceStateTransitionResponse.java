@@ -0,0 +1,18 @@
+package com.example.devicesapi.dtos;
+
+import lombok.Builder;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DTO Pattern (Data Transfer Object)
+ * Passing the outcome of a bulk state transition to client
+ * - ids of the devices actually moved to the new state
+ */
+@Builder
+public record DeviceStateTransitionResponse(
+    String state,
+    int updated,
+    List<UUID> ids
+) {}
@@ -7,7 +7,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
 
 import java.io.Serializable;
 import java.time.OffsetDateTime;
@@ -16,10 +18,11 @@ import java.util.UUID;
 @Data
 @Builder
 @Entity
-@Table(name = "devices")
+@Table(name = "devices",
+        uniqueConstraints = @UniqueConstraint(name = "uq_device_name_brand", columnNames = {"name", "brand"}))
 @AllArgsConstructor
 @NoArgsConstructor
-public class Device {
+public class Device implements Persistable<UUID> {
     @Id
     @Column(updatable = false, nullable = false)
     private UUID id;
@@ -37,6 +40,21 @@ public class Device {
     @Column(name = "creation_time", nullable = false, updatable = false)
     private OffsetDateTime createdAt;
 
+    /**
+     * optimistic locking version, incremented on each update
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    /**
+     * the id is assigned by the application, so it cannot tell new devices apart;
+     * this flag lets save() persist new devices with a single insert (no select + merge)
+     */
+    @Transient
+    @EqualsAndHashCode.Exclude
+    private boolean newEntity;
+
     public enum State implements Serializable {
         AVAILABLE,
         IN_USE,
@@ -52,6 +70,24 @@ public class Device {
 
     }
 
+    /**
+     * states if the device was not yet persisted
+     * @return true for devices created and not yet saved
+     */
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    /**
+     * once stored or loaded from the db, the device is no longer new
+     */
+    @PostPersist
+    @PostLoad
+    void markNotNew() {
+        newEntity = false;
+    }
+
     /**
      * determines the state where a device can't be updated or deleted
      * @return boolean stating that the device is locked
@@ -117,6 +153,8 @@ public class Device {
                 .brand(_brand)
                 .state(_state)
                 .createdAt(OffsetDateTime.now())
+                .version(0L)
+                .newEntity(true)
                 .build();
     }
 
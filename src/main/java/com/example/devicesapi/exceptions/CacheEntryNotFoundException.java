@@ -0,0 +1,11 @@
+package com.example.devicesapi.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_FOUND)
+public class CacheEntryNotFoundException extends ResourceNotFoundException {
+    public CacheEntryNotFoundException(String name, String key) {
+        super("Cache("+name+") entry("+key+") not found");
+    }
+}
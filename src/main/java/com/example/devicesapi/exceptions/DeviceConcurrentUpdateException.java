@@ -0,0 +1,13 @@
+package com.example.devicesapi.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class DeviceConcurrentUpdateException extends InvalidOperationException {
+    public DeviceConcurrentUpdateException(UUID id) {
+        super("Device("+id+") was concurrently updated");
+    }
+}
@@ -8,6 +8,6 @@ import java.util.UUID;
 @ResponseStatus(value = HttpStatus.NOT_FOUND)
 public class DeviceNotFoundException extends ResourceNotFoundException {
     public DeviceNotFoundException(UUID id) {
-        super("Device("+id+") not found");
+        super("Device("+id+") not found", false);
     }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.example.devicesapi.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+@ResponseStatus(value = HttpStatus.PRECONDITION_FAILED)
+public class DeviceVersionMismatchException extends PreconditionFailedException {
+    public DeviceVersionMismatchException(UUID id, String expected, Long current) {
+        super("Device("+id+") version is "+current+", not "+expected);
+    }
+}
@@ -8,4 +8,12 @@ public class ResourceNotFoundException extends RuntimeException {
     public ResourceNotFoundException(String message) {
         super(message);
     }
+
+    /**
+     * @param message - error message
+     * @param writableStackTrace - false for the expected (frequent) misses, to skip filling the stack trace
+     */
+    protected ResourceNotFoundException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
\ No newline at end of file
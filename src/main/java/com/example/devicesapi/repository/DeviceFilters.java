@@ -0,0 +1,46 @@
+package com.example.devicesapi.repository;
+
+import com.example.devicesapi.entities.Device;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Selection of the filtered device lists, shared by every repository that renders it
+ * (JPA specification on DevicesRepository.byFilters, SQL on the bulk state transition
+ * and on the reactive read path)
+ * - name: contained in the device name, case insensitive
+ * - brand: prefix of the device brand, case insensitive
+ * - state: exact state
+ * - startDate / endDate: inclusive bounds of the creation time
+ * blank values are ignored, as absent ones
+ */
+public record DeviceFilters(
+    Optional<String> namePattern,
+    Optional<String> brandPattern,
+    Optional<Device.State> state,
+    Optional<LocalDateTime> startDate,
+    Optional<LocalDateTime> endDate
+) {
+
+    /**
+     * @param name  - when present, only devices with a name containing it
+     * @param brand - when present, only devices with a brand starting with it
+     * @param state - when present, only devices on that state
+     * @param startDate - when present, only devices created since then
+     * @param endDate - when present, only devices created until then
+     * @return filters, with the LIKE patterns (lower case) of name and brand
+     */
+    public static DeviceFilters of(Optional<String> name,
+                                   Optional<String> brand,
+                                   Optional<String> state,
+                                   Optional<LocalDateTime> startDate,
+                                   Optional<LocalDateTime> endDate) {
+        return new DeviceFilters(
+                name.filter(n -> !n.isBlank()).map(n -> "%" + n.toLowerCase() + "%"),
+                brand.filter(b -> !b.isBlank()).map(b -> b.toLowerCase() + "%"),
+                state.filter(s -> !s.isBlank()).map(Device.State::from),
+                startDate,
+                endDate);
+    }
+}
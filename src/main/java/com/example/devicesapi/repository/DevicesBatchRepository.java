@@ -0,0 +1,206 @@
+package com.example.devicesapi.repository;
+
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.entities.Device;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Set based data operations over many devices at once
+ * - plain jdbc, to use statement batching, array parameters and returning clauses
+ *   not available through the JPA repository
+ */
+@Repository
+public class DevicesBatchRepository {
+
+    /**
+     * number of inserts sent to the db per jdbc batch
+     */
+    static final int BATCH_SIZE = 500;
+
+    static final String FIND_EXISTING_SQL = """
+            SELECT d.name, d.brand
+            FROM devices d
+            JOIN unnest(?::text[], ?::text[]) AS k(name, brand)
+              ON d.name = k.name AND d.brand = k.brand
+            """;
+
+    static final String FIND_IDS_SQL = "SELECT id FROM devices WHERE id = ANY(?::uuid[])";
+
+    static final String INSERT_SQL = """
+            INSERT INTO devices(id, name, brand, state, creation_time)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT ON CONSTRAINT uq_device_name_brand DO NOTHING
+            """;
+
+    /**
+     * moves devices to a new state, skipping the ones already on it
+     * and, when from is set, the ones not currently on that state
+     * (state changes are allowed on locked devices, as on Device.updateState)
+     */
+    static final String UPDATE_STATE_SQL = """
+            UPDATE devices SET state = ?, version = version + 1
+            WHERE id = ANY(?::uuid[])
+              AND state <> ?
+              AND (?::varchar IS NULL OR state = ?::varchar)
+            RETURNING id
+            """;
+
+    /**
+     * moves the devices matching a set of filters (appended to it) to a new state,
+     * skipping the ones already on it
+     */
+    static final String UPDATE_FILTERED_STATE_SQL = """
+            UPDATE devices SET state = ?, version = version + 1
+            WHERE state <> ?""";
+
+    /**
+     * applies the latest state of a set of devices, with the version it got when it was changed
+     * devices meanwhile updated to that version (or a later one) are skipped
+     */
+    static final String APPLY_STATES_SQL = """
+            UPDATE devices d SET state = s.state, version = s.version
+            FROM unnest(?::uuid[], ?::varchar[], ?::bigint[]) AS s(id, state, version)
+            WHERE d.id = s.id
+              AND d.version < s.version
+            RETURNING d.id
+            """;
+
+    /**
+     * device identification
+     */
+    public record Identification(String name, String brand) {}
+
+    private final JdbcTemplate jdbc;
+
+    public DevicesBatchRepository(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * locates, in a single query, which of the identifications are already in use
+     * @param identifications - (name, brand) pairs to check
+     * @return the subset of identifications already used by existing devices
+     */
+    public Set<Identification> findExisting(Collection<Identification> identifications) {
+        if (identifications.isEmpty()) {
+            return Set.of();
+        }
+        String[] names = identifications.stream().map(Identification::name).toArray(String[]::new);
+        String[] brands = identifications.stream().map(Identification::brand).toArray(String[]::new);
+        return new HashSet<>(jdbc.query(FIND_EXISTING_SQL,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("text", names));
+                    ps.setArray(2, ps.getConnection().createArrayOf("text", brands));
+                },
+                (rs, rowNum) -> new Identification(rs.getString(1), rs.getString(2))));
+    }
+
+    /**
+     * inserts the devices through jdbc batches, on a single transaction
+     * devices whose identification was taken meanwhile (concurrent creations) are skipped
+     * @param devices - new devices to insert
+     * @return ids of the devices actually inserted
+     */
+    @Transactional
+    public Set<UUID> insertAll(List<Device> devices) {
+        if (devices.isEmpty()) {
+            return Set.of();
+        }
+        jdbc.batchUpdate(INSERT_SQL, devices, BATCH_SIZE, (ps, device) -> {
+            ps.setObject(1, device.getId());
+            ps.setString(2, device.getName());
+            ps.setString(3, device.getBrand());
+            ps.setString(4, device.getState().name());
+            ps.setObject(5, device.getCreatedAt());
+        });
+        // the rewritten batches report no per row counts, so the skipped rows are found by id
+        UUID[] ids = devices.stream().map(Device::getId).toArray(UUID[]::new);
+        return new HashSet<>(jdbc.query(FIND_IDS_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids)),
+                (rs, rowNum) -> rs.getObject(1, UUID.class)));
+    }
+
+    /**
+     * moves a set of devices to a new state, on a single update statement
+     * @param ids - devices to move
+     * @param state - new state
+     * @param from - when present, only the devices currently on this state are moved
+     * @return ids of the devices actually moved
+     */
+    @Transactional
+    public List<UUID> updateState(List<UUID> ids, Device.State state, Optional<Device.State> from) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        UUID[] idsArray = ids.toArray(UUID[]::new);
+        String fromName = from.map(Enum::name).orElse(null);
+        return jdbc.query(UPDATE_STATE_SQL,
+                ps -> {
+                    ps.setString(1, state.name());
+                    ps.setArray(2, ps.getConnection().createArrayOf("uuid", idsArray));
+                    ps.setString(3, state.name());
+                    ps.setString(4, fromName);
+                    ps.setString(5, fromName);
+                },
+                (rs, rowNum) -> rs.getObject(1, UUID.class));
+    }
+
+    /**
+     * stores the (write-behind) state of a set of devices, on a single update statement
+     * @param devices - devices with their new state and version
+     * @return ids of the devices actually updated
+     */
+    @Transactional
+    public Set<UUID> applyStates(Collection<DeviceResponse> devices) {
+        if (devices.isEmpty()) {
+            return Set.of();
+        }
+        UUID[] ids = devices.stream().map(DeviceResponse::id).toArray(UUID[]::new);
+        String[] states = devices.stream().map(DeviceResponse::state).toArray(String[]::new);
+        Long[] versions = devices.stream().map(DeviceResponse::version).toArray(Long[]::new);
+        return new HashSet<>(jdbc.query(APPLY_STATES_SQL,
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("uuid", ids));
+                    ps.setArray(2, ps.getConnection().createArrayOf("varchar", states));
+                    ps.setArray(3, ps.getConnection().createArrayOf("bigint", versions));
+                },
+                (rs, rowNum) -> rs.getObject(1, UUID.class)));
+    }
+
+    /**
+     * moves all the devices matching the filters to a new state, on a single update statement
+     * (the filters are the same selection of DevicesRepository.byFilters, rendered as SQL)
+     * @param filters - devices selection
+     * @param state - new state
+     * @return ids of the devices actually moved
+     */
+    @Transactional
+    public List<UUID> updateState(DeviceFilters filters, Device.State state) {
+        StringBuilder sql = new StringBuilder(UPDATE_FILTERED_STATE_SQL);
+        List<Object> params = new ArrayList<>(List.of(state.name(), state.name()));
+        filters.namePattern().ifPresent(n -> condition(sql, params, " AND lower(name) LIKE ?", n));
+        filters.brandPattern().ifPresent(b -> condition(sql, params, " AND lower(brand) LIKE ?", b));
+        filters.state().ifPresent(s -> condition(sql, params, " AND state = ?", s.name()));
+        filters.startDate().ifPresent(d -> condition(sql, params, " AND creation_time >= ?", d));
+        filters.endDate().ifPresent(d -> condition(sql, params, " AND creation_time <= ?", d));
+        sql.append(" RETURNING id");
+        return jdbc.query(sql.toString(),
+                (rs, rowNum) -> rs.getObject(1, UUID.class),
+                params.toArray());
+    }
+
+    private static void condition(StringBuilder sql, List<Object> params, String condition, Object value) {
+        sql.append(condition);
+        params.add(value);
+    }
+}
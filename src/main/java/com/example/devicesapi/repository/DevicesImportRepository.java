@@ -0,0 +1,190 @@
+package com.example.devicesapi.repository;
+
+import com.example.devicesapi.dtos.DeviceImportRejection;
+import com.example.devicesapi.entities.Device;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk load of devices through the PostgreSQL COPY protocol
+ * - rows are copied into a staging table private to the transaction
+ *   (malformed input is copied as a rejected row, instead of aborting the copy)
+ * - validated, deduplicated and merged into devices with set based statements
+ * - all on a single transaction: either the whole merge is applied or none of it
+ */
+@Repository
+public class DevicesImportRepository {
+
+    /**
+     * maximum number of rejected rows detailed on the outcome
+     */
+    static final int MAX_REJECTIONS = 1000;
+
+    static final String CREATE_STAGING_SQL = """
+            CREATE TEMP TABLE devices_import (
+                line   BIGINT GENERATED ALWAYS AS IDENTITY,
+                name   TEXT,
+                brand  TEXT,
+                state  TEXT,
+                reason TEXT
+            ) ON COMMIT DROP
+            """;
+
+    /**
+     * copies csv rows without header, with an optional rejection reason
+     * (rows that could not even be parsed)
+     */
+    public static final String COPY_ROWS_SQL =
+            "COPY devices_import (name, brand, state, reason) FROM STDIN WITH (FORMAT csv)";
+
+    /**
+     * same rules of DeviceCreateRequest, applied in order (first failing rule wins)
+     */
+    static final List<String> VALIDATION_SQL = List.of(
+            rejectWhere("name IS NULL OR btrim(name) = ''", "Device name is required"),
+            rejectWhere("length(name) NOT BETWEEN 3 AND 50", "Device name must be 3-50 characters"),
+            rejectWhere("brand IS NULL OR btrim(brand) = ''", "Brand is required"),
+            rejectWhere("length(brand) NOT BETWEEN 3 AND 50", "Brand must be 3-50 characters"),
+            rejectWhere("state IS NULL OR state NOT IN (" + Arrays.stream(Device.State.values())
+                            .map(s -> "'" + s.name() + "'")
+                            .collect(Collectors.joining(",")) + ")",
+                    "State valid values: \"AVAILABLE\", \"IN_USE\", \"INACTIVE\""),
+            """
+            UPDATE devices_import i SET reason = 'Duplicated (name, brand) on line ' || f.line
+            FROM devices_import f
+            WHERE i.reason IS NULL AND f.reason IS NULL
+              AND f.name = i.name AND f.brand = i.brand AND f.line < i.line
+            """,
+            """
+            UPDATE devices_import i SET reason = 'Duplicated (name, brand) of an existing device'
+            WHERE i.reason IS NULL
+              AND EXISTS (SELECT 1 FROM devices d WHERE d.name = i.name AND d.brand = i.brand)
+            """
+    );
+
+    /**
+     * inserts the valid rows, marking as rejected the ones taken meanwhile by concurrent creations
+     */
+    static final String MERGE_SQL = """
+            WITH inserted AS (
+                INSERT INTO devices (id, name, brand, state, creation_time)
+                SELECT gen_random_uuid(), name, brand, state, now()
+                FROM devices_import
+                WHERE reason IS NULL
+                ORDER BY line
+                ON CONFLICT ON CONSTRAINT uq_device_name_brand DO NOTHING
+                RETURNING name, brand
+            )
+            UPDATE devices_import i SET reason = 'Duplicated (name, brand) of an existing device'
+            WHERE i.reason IS NULL
+              AND NOT EXISTS (SELECT 1 FROM inserted n WHERE n.name = i.name AND n.brand = i.brand)
+            """;
+
+    /**
+     * ids of the imported devices (rows still without a rejection reason, after the merge)
+     */
+    static final String IMPORTED_IDS_SQL = """
+            SELECT d.id
+            FROM devices_import i
+            JOIN devices d ON d.name = i.name AND d.brand = i.brand
+            WHERE i.reason IS NULL
+            """;
+
+    /**
+     * number of imported ids read and handed over at once
+     */
+    static final int IDS_CHUNK = 10_000;
+
+    static final String COUNT_REJECTED_SQL = "SELECT count(*) FROM devices_import WHERE reason IS NOT NULL";
+
+    static final String REJECTIONS_SQL =
+            "SELECT line, name, brand, state, reason FROM devices_import WHERE reason IS NOT NULL ORDER BY line LIMIT ?";
+
+    /**
+     * feeds the staging table through the COPY api
+     */
+    @FunctionalInterface
+    public interface CopyLoader {
+        /**
+         * @param copyManager - COPY api of the transaction connection
+         * @return number of copied rows
+         */
+        long load(CopyManager copyManager) throws SQLException, IOException;
+    }
+
+    /**
+     * outcome of an import
+     */
+    public record Outcome(long total, long imported, long rejected, List<DeviceImportRejection> rejections) {}
+
+    private final JdbcTemplate jdbc;
+    private final DataSource dataSource;
+
+    public DevicesImportRepository(JdbcTemplate jdbc, DataSource dataSource) {
+        this.jdbc = jdbc;
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * imports a set of devices
+     * @param loader - copies the rows into the staging table
+     * @param importedIds - receives the ids of the imported devices, chunk by chunk (before the commit)
+     * @return number of copied, imported and rejected rows
+     */
+    @Transactional
+    public Outcome importDevices(CopyLoader loader, Consumer<List<UUID>> importedIds) throws SQLException, IOException {
+        jdbc.execute(CREATE_STAGING_SQL);
+        CopyManager copyManager = DataSourceUtils.getConnection(dataSource)
+                .unwrap(PGConnection.class)
+                .getCopyAPI();
+        long total = loader.load(copyManager);
+        VALIDATION_SQL.forEach(jdbc::update);
+        jdbc.update(MERGE_SQL);
+        List<UUID> ids = new ArrayList<>(IDS_CHUNK);
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(IMPORTED_IDS_SQL);
+            ps.setFetchSize(IDS_CHUNK);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            ids.add(rs.getObject(1, UUID.class));
+            if (ids.size() == IDS_CHUNK) {
+                importedIds.accept(List.copyOf(ids));
+                ids.clear();
+            }
+        });
+        if (!ids.isEmpty()) {
+            importedIds.accept(List.copyOf(ids));
+        }
+        long rejected = jdbc.queryForObject(COUNT_REJECTED_SQL, Long.class);
+        List<DeviceImportRejection> rejections = jdbc.query(REJECTIONS_SQL,
+                (rs, rowNum) -> new DeviceImportRejection(
+                        rs.getLong("line"),
+                        rs.getString("name"),
+                        rs.getString("brand"),
+                        rs.getString("state"),
+                        rs.getString("reason")),
+                MAX_REJECTIONS);
+        return new Outcome(total, total - rejected, rejected, rejections);
+    }
+
+    private static String rejectWhere(String condition, String reason) {
+        return "UPDATE devices_import SET reason = '" + reason.replace("'", "''") + "'"
+                + " WHERE reason IS NULL AND (" + condition + ")";
+    }
+}
@@ -1,13 +1,17 @@
 package com.example.devicesapi.repository;
 
 
+import com.example.devicesapi.dtos.DeviceCursor;
 import com.example.devicesapi.entities.Device;
 import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -19,33 +23,97 @@ import java.util.UUID;
  * - hides data storage particularities, streamlining changes of the data provider
  *  */
 public interface DevicesRepository extends
-        JpaRepository<Device, UUID>, JpaSpecificationExecutor<Device> {
+        JpaRepository<Device, UUID>, JpaSpecificationExecutor<Device>, DevicesStreamRepository {
+
+    /**
+     * db constraint ensuring that the device identification (name, brand) is unique
+     */
+    String UNIQUE_IDENTIFICATION = "uq_device_name_brand";
 
     List<Device> findDeviceByNameAndBrand(String name, String brand);
 
+    /**
+     * searches devices by name, containing the term or similar to it,
+     * ranked by the trigram similarity (both conditions served by idx_device_name_trgm)
+     * @param term - searched text
+     * @param escapedTerm - searched text, with its LIKE wildcards escaped
+     * @param limit - maximum number of devices to return
+     * @return matching devices, most similar first
+     */
+    @Query(value = """
+            SELECT * FROM devices
+            WHERE lower(name) LIKE '%' || lower(:escapedTerm) || '%'
+               OR lower(name) % lower(:term)
+            ORDER BY similarity(lower(name), lower(:term)) DESC, id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Device> searchByName(String term, String escapedTerm, int limit);
+
+    /**
+     * specification of the filtered device lists (see DeviceFilters)
+     */
     static Specification<Device> byFilters(Optional<String> name,
                                            Optional<String> brand,
                                            Optional<String> state,
                                            Optional<LocalDateTime> startDate,
                                            Optional<LocalDateTime> endDate) {
+        DeviceFilters filters = DeviceFilters.of(name, brand, state, startDate, endDate);
         return (root, query, builder) -> {
             List<Predicate> predicates = new ArrayList<>();
-            name.filter(n -> !n.isBlank())
+            filters.namePattern()
                     .ifPresent(n ->
-                            predicates.add(builder.like(builder.lower(root.get("name")), "%"+n.toLowerCase()+"%")));
-            brand.filter(b -> !b.isBlank())
+                            predicates.add(builder.like(builder.lower(root.get("name")), n)));
+            filters.brandPattern()
                     .ifPresent(b ->
-                            predicates.add(builder.like(builder.lower(root.get("brand")), b.toLowerCase()+"%")));
-            state.filter(s -> !s.isBlank())
+                            predicates.add(builder.like(builder.lower(root.get("brand")), b)));
+            filters.state()
                     .ifPresent(s ->
-                            predicates.add(builder.equal(root.get("state"), Device.State.from(s))));
-            startDate
-                .ifPresent(d ->
-                        predicates.add(builder.greaterThanOrEqualTo(root.get("createdAt"), startDate.get())));
-            endDate
+                            predicates.add(builder.equal(root.get("state"), s)));
+            filters.startDate()
+                    .ifPresent(d ->
+                            predicates.add(builder.greaterThanOrEqualTo(root.get("createdAt"), d)));
+            filters.endDate()
                     .ifPresent(d ->
-                            predicates.add(builder.lessThanOrEqualTo(root.get("createdAt"), endDate.get())));
-        return builder.and(predicates.toArray(new Predicate[predicates.size()]));
+                            predicates.add(builder.lessThanOrEqualTo(root.get("createdAt"), d)));
+            return builder.and(predicates.toArray(new Predicate[predicates.size()]));
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * keyset condition selecting the devices placed after the cursor,
+     * in (creationTime, id) order
+     * the redundant creationTime bound keeps the condition usable by the
+     * (creation_time, id) index
+     * @param cursor - position of the last device of the previous page
+     * @param ascending - direction of the pagination
+     * @return specification to be combined with the filters
+     */
+    static Specification<Device> afterCursor(DeviceCursor cursor, boolean ascending) {
+        return (root, query, builder) -> {
+            var createdAt = root.<OffsetDateTime>get("createdAt");
+            var id = root.<UUID>get("id");
+            if (ascending) {
+                return builder.and(
+                        builder.greaterThanOrEqualTo(createdAt, cursor.createdAt()),
+                        builder.or(
+                                builder.greaterThan(createdAt, cursor.createdAt()),
+                                builder.greaterThan(id, cursor.id())));
+            }
+            return builder.and(
+                    builder.lessThanOrEqualTo(createdAt, cursor.createdAt()),
+                    builder.or(
+                            builder.lessThan(createdAt, cursor.createdAt()),
+                            builder.lessThan(id, cursor.id())));
+        };
+    }
+
+    /**
+     * total order used by the keyset pagination (creationTime, id)
+     * @param ascending - direction of the pagination
+     * @return sort definition
+     */
+    static Sort keysetSort(boolean ascending) {
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return Sort.by(direction, "createdAt", "id");
+    }
+}
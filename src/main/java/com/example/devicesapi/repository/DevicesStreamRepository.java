@@ -0,0 +1,22 @@
+package com.example.devicesapi.repository;
+
+import com.example.devicesapi.entities.Device;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+/**
+ * Streaming reads of devices, fragment of DevicesRepository
+ * - rows are fetched from a db cursor, in chunks, as the stream is consumed
+ * - must be consumed (and closed) inside a transaction
+ */
+public interface DevicesStreamRepository {
+
+    /**
+     * number of rows fetched from the cursor per round trip
+     */
+    int STREAM_FETCH_SIZE = 1000;
+
+    Stream<Device> streamAll(Specification<Device> spec, Sort sort);
+}
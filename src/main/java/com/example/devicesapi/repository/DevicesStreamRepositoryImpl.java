@@ -0,0 +1,46 @@
+package com.example.devicesapi.repository;
+
+import com.example.devicesapi.entities.Device;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+public class DevicesStreamRepositoryImpl implements DevicesStreamRepository {
+
+    private final EntityManager em;
+
+    public DevicesStreamRepositoryImpl(EntityManager em) {
+        this.em = em;
+    }
+
+    /**
+     * streams the devices matching the specification
+     * each device is detached as it is read, so the persistence context
+     * (and the heap) does not grow with the result size
+     * @param spec - devices selection
+     * @param sort - devices order
+     * @return stream of read-only devices
+     */
+    @Override
+    public Stream<Device> streamAll(Specification<Device> spec, Sort sort) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Device> query = builder.createQuery(Device.class);
+        Root<Device> root = query.from(Device.class);
+        query.select(root)
+                .where(spec.toPredicate(root, query, builder))
+                .orderBy(toOrders(sort, root, builder));
+        return em.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .peek(em::detach);
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
@@ -12,12 +13,20 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
+/**
+ * Authenticates the API clients by their access token ("Authorization: Bearer <token>")
+ * or by their API key and secret
+ */
 public class ApiKeyAuthFilter extends OncePerRequestFilter {
 
+    static final String BEARER_PREFIX = "Bearer ";
+
     private final AuthenticationManager authenticationManager;
+    private final ApiTokenService tokenService;
 
-    public ApiKeyAuthFilter(AuthenticationManager authenticationManager) {
+    public ApiKeyAuthFilter(AuthenticationManager authenticationManager, ApiTokenService tokenService) {
         this.authenticationManager = authenticationManager;
+        this.tokenService = tokenService;
     }
 
     @Override
@@ -27,18 +36,25 @@ public class ApiKeyAuthFilter extends OncePerRequestFilter {
             FilterChain chain
     ) throws IOException, ServletException {
 
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
         String apiKey = request.getHeader("API-Key");
         String apiSecret = request.getHeader("API-Secret");
 
-        if (apiKey != null && apiSecret != null &&
-                SecurityContextHolder.getContext().getAuthentication() == null) {
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
 
             try {
-                Authentication auth = authenticationManager.authenticate(
-                        new ApiKeyAuthenticationToken(apiKey, apiSecret)
-                );
-
-                SecurityContextHolder.getContext().setAuthentication(auth);
+                Authentication auth = null;
+                if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+                    // signed token: MAC check only, no BCrypt nor client lookup
+                    auth = tokenService.authenticate(authorization.substring(BEARER_PREFIX.length()).trim());
+                } else if (apiKey != null && apiSecret != null) {
+                    auth = authenticationManager.authenticate(
+                            new ApiKeyAuthenticationToken(apiKey, apiSecret)
+                    );
+                }
+                if (auth != null) {
+                    SecurityContextHolder.getContext().setAuthentication(auth);
+                }
 
             } catch (AuthenticationException ex) {
                 response.sendError(HttpServletResponse.SC_UNAUTHORIZED, ex.getMessage());
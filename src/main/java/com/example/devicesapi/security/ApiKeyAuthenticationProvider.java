@@ -1,5 +1,10 @@
 package com.example.devicesapi.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.Authentication;
@@ -8,16 +13,58 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Authenticates the API clients by key and secret
+ * - the clients are indexed by key, once: the configured clients are bound at startup,
+ *   so adding, removing or rotating the secret of a client requires a restart
+ *   (which also drops every cached verification)
+ * - the BCrypt check runs once per key and secret: successful verifications are kept
+ *   on a bounded, short lived cache, keyed by a HMAC of key and secret
+ *   (with a random per process key, so the secrets are not kept in memory)
+ */
 @Component
 public class ApiKeyAuthenticationProvider implements AuthenticationProvider {
 
-    private final ApiKeyProperties props;
+    static final String MAC_ALGORITHM = "HmacSHA256";
+
     private final PasswordEncoder encoder = new BCryptPasswordEncoder();
+    private final SecretKeySpec cacheKey;
+    private final Map<String, ApiKeyProperties.Client> clients;
+    private final Cache<String, String> verified;
+
+    private final Counter cachedHits;
+    private final Counter verifications;
+    private final Counter rejections;
 
-    public ApiKeyAuthenticationProvider(ApiKeyProperties props) {
-        this.props = props;
+    public ApiKeyAuthenticationProvider(ApiKeyProperties props,
+                                        MeterRegistry registry,
+                                        @Value("${spring.security.api-keys.verification-cache.max-size:10000}") long maxSize,
+                                        @Value("${spring.security.api-keys.verification-cache.ttl:5m}") Duration ttl) {
+        this.clients = (props.clients() == null ? List.<ApiKeyProperties.Client>of() : props.clients()).stream()
+                .collect(Collectors.toUnmodifiableMap(
+                        ApiKeyProperties.Client::key, Function.identity(), (first, second) -> first));
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.cacheKey = new SecretKeySpec(key, MAC_ALGORITHM);
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(ttl.isZero() ? 0 : maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.cachedHits = verifications(registry, "cached");
+        this.verifications = verifications(registry, "verified");
+        this.rejections = verifications(registry, "rejected");
     }
 
     @Override
@@ -25,13 +72,20 @@ public class ApiKeyAuthenticationProvider implements AuthenticationProvider {
         var token = (ApiKeyAuthenticationToken) auth;
         String tokenKey = token.getKey();
         String tokenSecret = token.getSecret();
-        var client = props.clients().stream()
-                .filter(c -> c.key().equals(tokenKey))
-                .findFirst()
-                .orElseThrow(() -> new BadCredentialsException("Invalid API key"));
-        var clientKey = client.key();
+        var client = clients.get(tokenKey);
+        if (client == null) {
+            rejections.increment();
+            throw new BadCredentialsException("Invalid API key");
+        }
         var clientHash = client.secretHash();
-        if (!encoder.matches(tokenSecret, clientHash)) {
+        String verification = verificationKey(tokenKey, tokenSecret);
+        if (clientHash.equals(verified.getIfPresent(verification))) {
+            cachedHits.increment();
+        } else if (encoder.matches(tokenSecret, clientHash)) {
+            verifications.increment();
+            verified.put(verification, clientHash);
+        } else {
+            rejections.increment();
             throw new BadCredentialsException("Invalid API secret");
         }
         return new ApiKeyAuthenticationToken(
@@ -46,4 +100,29 @@ public class ApiKeyAuthenticationProvider implements AuthenticationProvider {
         return ApiKeyAuthenticationToken.class.isAssignableFrom(authentication);
     }
 
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    /**
+     * @return keyed hash of the key and secret pair
+     */
+    private String verificationKey(String key, String secret) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(cacheKey);
+            mac.update(key.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Base64.getEncoder().encodeToString(mac.doFinal(secret.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " unavailable", e);
+        }
+    }
+
+    private static Counter verifications(MeterRegistry registry, String result) {
+        return Counter.builder("auth.api-key.verifications")
+                .tag("result", result)
+                .description("API key authentications, by outcome")
+                .register(registry);
+    }
 }
@@ -26,6 +26,13 @@ public class ApiKeyAuthenticationToken extends AbstractAuthenticationToken {
         super.setAuthenticated(true);
     }
 
+    /**
+     * client authenticated by an access token (without its secret)
+     */
+    public ApiKeyAuthenticationToken(String apiKey, Collection<? extends GrantedAuthority> authorities) {
+        this(apiKey, null, authorities);
+    }
+
     @Override
     public Object getCredentials() {
         return this.apiSecret;
@@ -37,7 +44,14 @@ public class ApiKeyAuthenticationToken extends AbstractAuthenticationToken {
     }
 
     public String getSecret() {
-        return this.apiSecret.toString();
+        return this.apiSecret;
+    }
+
+    /**
+     * @return true if the client presented its secret (not just an access token)
+     */
+    public boolean hasSecret() {
+        return this.apiSecret != null;
     }
     public String getKey() {
         return this.apiKey.toString();
@@ -4,8 +4,23 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.util.List;
 
+/**
+ * API clients, with their rate limits
+ * @param clients - configured clients
+ * @param rateLimit - limit of the clients without one of their own (none when absent)
+ */
 @ConfigurationProperties(prefix = "spring.security.api-keys")
-public record ApiKeyProperties(List<Client> clients) {
+public record ApiKeyProperties(List<Client> clients, RateLimit rateLimit) {
 
-    public record Client(String key, String secretHash) {}
+    /**
+     * @param rateLimit - limit of this client (the default one when absent)
+     */
+    public record Client(String key, String secretHash, RateLimit rateLimit) {}
+
+    /**
+     * token bucket limit
+     * @param requestsPerSecond - sustained rate
+     * @param burst - requests allowed at once, above the sustained rate
+     */
+    public record RateLimit(double requestsPerSecond, int burst) {}
 }
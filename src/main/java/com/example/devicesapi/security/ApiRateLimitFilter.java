@@ -0,0 +1,49 @@
+package com.example.devicesapi.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Admission control of the authenticated API clients
+ * requests over the client rate limit get a 429, with the seconds to wait on Retry-After
+ */
+public class ApiRateLimitFilter extends OncePerRequestFilter {
+
+    private final ApiRateLimiter rateLimiter;
+
+    public ApiRateLimitFilter(ApiRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain chain
+    ) throws IOException, ServletException {
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth instanceof ApiKeyAuthenticationToken client && client.isAuthenticated()) {
+            Optional<Duration> wait = rateLimiter.tryAcquire(client.getKey());
+            if (wait.isPresent()) {
+                long seconds = Math.max(1, (wait.get().toMillis() + 999) / 1000);
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+                response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Rate limit exceeded");
+                return;
+            }
+        }
+
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.devicesapi.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per client token buckets, keyed by API key
+ * - each bucket is a single atomic long (the GCRA form of a token bucket:
+ *   the time at which it will be full again), updated by CAS, so no locks are taken
+ * - limits come from the client configuration, or the default one
+ *   (clients without any limit are not throttled)
+ * - throttled requests are counted per client, tagged with a short hash of the key
+ *   (the key is half of the credential, so it's kept out of the exported metrics)
+ */
+@Component
+public class ApiRateLimiter {
+
+    private final Map<String, ApiKeyProperties.RateLimit> limits = new ConcurrentHashMap<>();
+    private final ApiKeyProperties.RateLimit defaultLimit;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final MeterRegistry registry;
+    private final LongSupplier nanoClock;
+
+    public ApiRateLimiter(ApiKeyProperties props, MeterRegistry registry) {
+        this(props, registry, System::nanoTime);
+    }
+
+    ApiRateLimiter(ApiKeyProperties props, MeterRegistry registry, LongSupplier nanoClock) {
+        if (props.clients() != null) {
+            props.clients().stream()
+                    .filter(client -> client.rateLimit() != null)
+                    .forEach(client -> limits.putIfAbsent(client.key(), client.rateLimit()));
+        }
+        this.defaultLimit = props.rateLimit();
+        this.registry = registry;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * takes a token from the bucket of a client
+     * @param apiKey - key of the client
+     * @return empty if the request is allowed, otherwise the time until a token is available
+     */
+    public Optional<Duration> tryAcquire(String apiKey) {
+        Bucket bucket = buckets.computeIfAbsent(apiKey, this::bucket);
+        if (bucket == null) {
+            return Optional.empty();
+        }
+        long wait = bucket.tryAcquire(nanoClock.getAsLong());
+        if (wait <= 0) {
+            return Optional.empty();
+        }
+        bucket.throttled.increment();
+        return Optional.of(Duration.ofNanos(wait));
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    /**
+     * @return bucket of the client, or null when it has no limit
+     */
+    private Bucket bucket(String apiKey) {
+        ApiKeyProperties.RateLimit limit = limits.getOrDefault(apiKey, defaultLimit);
+        if (limit == null || limit.requestsPerSecond() <= 0) {
+            return null;
+        }
+        Counter throttled = Counter.builder("api.requests.throttled")
+                .tag("client", clientTag(apiKey))
+                .description("Requests rejected for exceeding the client rate limit")
+                .register(registry);
+        return new Bucket(limit, nanoClock.getAsLong(), throttled);
+    }
+
+    /**
+     * @return first 8 bytes of the SHA-256 of the key, as hex: stable per client, without exposing the key
+     */
+    static String clientTag(String apiKey) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(apiKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    /**
+     * token bucket of a client
+     */
+    static final class Bucket {
+
+        /**
+         * time to refill one token
+         */
+        private final long interval;
+
+        /**
+         * time to refill the whole bucket (burst tokens)
+         */
+        private final long capacity;
+
+        /**
+         * time at which the bucket will be full again (past times: it's full)
+         */
+        private final AtomicLong fullAt;
+
+        private final Counter throttled;
+
+        Bucket(ApiKeyProperties.RateLimit limit, long now, Counter throttled) {
+            this.interval = Math.max(1, (long) (1e9 / limit.requestsPerSecond()));
+            this.capacity = interval * Math.max(1, limit.burst());
+            this.fullAt = new AtomicLong(now);
+            this.throttled = throttled;
+        }
+
+        /**
+         * @param now - current time (nanos)
+         * @return 0 if a token was taken, otherwise the time until one is available
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + interval;
+                long exceeded = next - now - capacity;
+                if (exceeded > 0) {
+                    return exceeded;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.devicesapi.security;
+
+import com.example.devicesapi.dtos.ApiTokenResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Short lived access tokens, exchanged once for the API key and secret
+ * - token: base64url(key \n expiry epoch second) . base64url(HMAC-SHA256 of the first part)
+ * - verified with a constant time MAC comparison, without BCrypt nor any client lookup,
+ *   so a token stays valid until it expires, even if its client is removed
+ * - signed with spring.security.api-tokens.signing-key (base64), shared by all the nodes;
+ *   without it a random key is generated, and tokens are only valid on the issuing node
+ */
+@Slf4j
+@Component
+public class ApiTokenService {
+
+    static final String MAC_ALGORITHM = "HmacSHA256";
+    static final String TOKEN_TYPE = "Bearer";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec signingKey;
+    private final Duration ttl;
+    private final Clock clock;
+
+    public ApiTokenService(@Value("${spring.security.api-tokens.signing-key:}") String signingKey,
+                           @Value("${spring.security.api-tokens.ttl:15m}") Duration ttl) {
+        this(signingKey, ttl, Clock.systemUTC());
+    }
+
+    ApiTokenService(String signingKey, Duration ttl, Clock clock) {
+        byte[] key;
+        if (signingKey == null || signingKey.isBlank()) {
+            log.warn("No API tokens signing key configured: tokens are only valid on this node");
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        } else {
+            key = Base64.getDecoder().decode(signingKey);
+        }
+        this.signingKey = new SecretKeySpec(key, MAC_ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /**
+     * issues a token for an authenticated client
+     * @param apiKey - key of the client
+     * @return ApiTokenResponse with the token and its lifetime
+     */
+    public ApiTokenResponse issue(String apiKey) {
+        long expiresAt = clock.instant().plus(ttl).getEpochSecond();
+        String payload = ENCODER.encodeToString((apiKey + "\n" + expiresAt).getBytes(StandardCharsets.UTF_8));
+        String token = payload + "." + ENCODER.encodeToString(mac(payload));
+        return new ApiTokenResponse(token, TOKEN_TYPE, ttl.toSeconds());
+    }
+
+    /**
+     * verifies a token
+     * @param token - token issued by this service (on any node sharing the signing key)
+     * @return authenticated ApiKeyAuthenticationToken of the client
+     * @throws BadCredentialsException, if the token is malformed, forged or expired
+     */
+    public ApiKeyAuthenticationToken authenticate(String token) {
+        int dot = token.indexOf('.');
+        if (dot < 1) {
+            throw invalid();
+        }
+        String payload = token.substring(0, dot);
+        byte[] signature;
+        String[] fields;
+        try {
+            signature = DECODER.decode(token.substring(dot + 1));
+            fields = new String(DECODER.decode(payload), StandardCharsets.UTF_8).split("\n", -1);
+        } catch (IllegalArgumentException e) {
+            throw invalid();
+        }
+        if (!MessageDigest.isEqual(mac(payload), signature) || fields.length != 2) {
+            throw invalid();
+        }
+        long expiresAt;
+        try {
+            expiresAt = Long.parseLong(fields[1]);
+        } catch (NumberFormatException e) {
+            throw invalid();
+        }
+        if (clock.instant().getEpochSecond() >= expiresAt) {
+            throw new BadCredentialsException("Expired API token");
+        }
+        return new ApiKeyAuthenticationToken(fields[0], List.of(new SimpleGrantedAuthority("ROLE_API")));
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private byte[] mac(String payload) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(signingKey);
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " unavailable", e);
+        }
+    }
+
+    private static BadCredentialsException invalid() {
+        return new BadCredentialsException("Invalid API token");
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.annotations.TrackExecution;
+import com.example.devicesapi.cache.NearCacheManager;
+import com.example.devicesapi.config.RedisConfig;
+import com.example.devicesapi.dtos.CacheEntryInfo;
+import com.example.devicesapi.dtos.CacheEvictionResponse;
+import com.example.devicesapi.dtos.CacheInfo;
+import com.example.devicesapi.dtos.CacheWarmupResponse;
+import com.example.devicesapi.exceptions.CacheEntryNotFoundException;
+import com.example.devicesapi.exceptions.CacheNotFoundException;
+import com.example.devicesapi.exceptions.InvalidFieldValueException;
+import com.example.devicesapi.exceptions.InvalidOperationException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Inspection and maintenance of the caches, for the admin API
+ * Evictions go through the cache manager used by the application,
+ * so the near caches of all the nodes are invalidated too
+ */
+@Service
+public class CacheAdminService {
+
+    /**
+     * upper bound of the number of listed entries
+     */
+    public static final int MAX_ENTRIES = 1000;
+
+    /**
+     * keys scanned / deleted per redis command
+     */
+    static final int CHUNK = 1000;
+
+    private final NearCacheManager cacheManager;
+    private final RedisCacheManager redisCacheManager;
+    private final StringRedisTemplate redis;
+    private final ObjectProvider<DevicesCacheWarmup> warmup;
+
+    public CacheAdminService(NearCacheManager cacheManager,
+                             RedisCacheManager redisCacheManager,
+                             StringRedisTemplate redis,
+                             ObjectProvider<DevicesCacheWarmup> warmup) {
+        this.cacheManager = cacheManager;
+        this.redisCacheManager = redisCacheManager;
+        this.redis = redis;
+        this.warmup = warmup;
+    }
+
+    /**
+     * @return configuration and statistics of all the caches
+     */
+    public List<CacheInfo> getCaches() {
+        return redisCacheManager.getCacheNames().stream()
+                .sorted()
+                .map(this::getCache)
+                .toList();
+    }
+
+    /**
+     * @param name - name of the cache
+     * @return configuration and statistics of the cache
+     */
+    public CacheInfo getCache(String name) {
+        RedisCache cache = redisCache(name);
+        CacheStatistics stats = cache.getStatistics();
+        Duration ttl = cache.getCacheConfiguration().getTtlFunction().getTimeToLive(name, null);
+        return CacheInfo.builder()
+                .name(name)
+                .keyPrefix(keyPrefix(cache))
+                .ttlSeconds(ttl == null ? null : ttl.toSeconds())
+                .hits(stats.getHits())
+                .misses(stats.getMisses())
+                .puts(stats.getPuts())
+                .removals(stats.getDeletes())
+                .build();
+    }
+
+    /**
+     * lists the keys of a cache (and their remaining ttl)
+     * @param name - name of the cache
+     * @param prefix - when present, only keys starting with it are listed
+     * @param limit - maximum number of keys
+     * @return cache entries, without values
+     */
+    @TrackExecution
+    public List<CacheEntryInfo> getEntries(String name, Optional<String> prefix, int limit) {
+        if (limit < 1 || limit > MAX_ENTRIES)
+            throw new InvalidFieldValueException("limit", String.valueOf(limit));
+        String keyPrefix = keyPrefix(redisCache(name));
+        List<String> keys = scan(keyPrefix, prefix, limit);
+        List<Object> ttls = redis.executePipelined((RedisCallback<Object>) connection -> {
+            keys.forEach(key -> connection.keyCommands().ttl(key.getBytes(StandardCharsets.UTF_8)));
+            return null;
+        });
+        List<CacheEntryInfo> entries = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            entries.add(CacheEntryInfo.builder()
+                    .key(keys.get(i).substring(keyPrefix.length()))
+                    .ttlSeconds((Long) ttls.get(i))
+                    .build());
+        }
+        return entries;
+    }
+
+    /**
+     * @param name - name of the cache
+     * @param key - key of the entry
+     * @return the entry, with its value (read from redis as is, without touching the near cache
+     *         nor counting as a hit or miss on the cache statistics)
+     */
+    public CacheEntryInfo getEntry(String name, String key) {
+        RedisCache cache = redisCache(name);
+        byte[] redisKey = (keyPrefix(cache) + key).getBytes(StandardCharsets.UTF_8);
+        byte[] value = redis.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(redisKey));
+        if (value == null)
+            throw new CacheEntryNotFoundException(name, key);
+        return CacheEntryInfo.builder()
+                .key(key)
+                .ttlSeconds(redis.getExpire(keyPrefix(cache) + key))
+                .value(cache.getCacheConfiguration().getValueSerializationPair().read(ByteBuffer.wrap(value)))
+                .build();
+    }
+
+    /**
+     * evicts a single entry
+     * @param name - name of the cache
+     * @param key - key of the entry
+     */
+    @TrackExecution
+    public void evict(String name, String key) {
+        redisCache(name);
+        cacheManager.getCache(name).evict(key);
+    }
+
+    /**
+     * evicts all the entries with keys starting with a prefix (or all, without it)
+     * @param name - name of the cache
+     * @param prefix - prefix of the keys to evict
+     * @return number of evicted entries
+     */
+    @TrackExecution
+    public CacheEvictionResponse evictAll(String name, Optional<String> prefix) {
+        String keyPrefix = keyPrefix(redisCache(name));
+        long evicted = 0;
+        List<String> keys;
+        do {
+            keys = scan(keyPrefix, prefix, CHUNK);
+            if (!keys.isEmpty()) {
+                Long deleted = redis.delete(keys);
+                evicted += deleted == null ? 0 : deleted;
+                cacheManager.invalidate(name, keys.stream().map(k -> k.substring(keyPrefix.length())).toList());
+            }
+        } while (keys.size() == CHUNK);
+        return new CacheEvictionResponse(name, evicted);
+    }
+
+    /**
+     * caches the hottest devices, as on startup
+     * @return number of cached devices
+     */
+    @TrackExecution
+    public CacheWarmupResponse warmup() {
+        DevicesCacheWarmup devicesWarmup = warmup.getIfAvailable();
+        if (devicesWarmup == null)
+            throw new InvalidOperationException("Cache warmup is disabled");
+        return new CacheWarmupResponse(RedisConfig.DEVICES_CACHE, devicesWarmup.warmup());
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private RedisCache redisCache(String name) {
+        if (!redisCacheManager.getCacheNames().contains(name))
+            throw new CacheNotFoundException(name);
+        return (RedisCache) redisCacheManager.getCache(name);
+    }
+
+    private static String keyPrefix(RedisCache cache) {
+        return cache.getCacheConfiguration().getKeyPrefixFor(cache.getName());
+    }
+
+    /**
+     * scans the redis keys of a cache
+     * @param keyPrefix - prefix of all the keys of the cache
+     * @param prefix - optional prefix of the cache keys
+     * @param limit - maximum number of keys
+     * @return redis keys (with the cache prefix)
+     */
+    private List<String> scan(String keyPrefix, Optional<String> prefix, int limit) {
+        String pattern = escape(keyPrefix) + prefix.map(CacheAdminService::escape).orElse("") + "*";
+        List<String> keys = new ArrayList<>();
+        try (Cursor<String> cursor = redis.scan(ScanOptions.scanOptions().match(pattern).count(CHUNK).build())) {
+            while (cursor.hasNext() && keys.size() < limit) {
+                keys.add(cursor.next());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * escapes the glob special characters of a key pattern
+     */
+    private static String escape(String text) {
+        return text.replaceAll("([*?\\[\\]\\\\])", "\\\\$1");
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.devicesapi.services;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads csv records (RFC 4180) one by one from a character stream
+ * - fields are separated by commas and records by LF or CRLF
+ * - quoted fields may hold commas, doubled quotes and line breaks,
+ *   so a record can span several lines
+ * - an empty unquoted field is read as null (as COPY does), an empty quoted one as ""
+ */
+final class CsvRecordReader implements Closeable {
+
+    /**
+     * csv record
+     * @param fields - field values, in column order
+     * @param unterminated - true when a quoted field was still open at the end of the data
+     */
+    record CsvRecord(List<String> fields, boolean unterminated) {
+
+        /**
+         * @return true for an empty (or only blank) line
+         */
+        boolean isBlank() {
+            return fields.size() == 1 && (fields.getFirst() == null || fields.getFirst().isBlank());
+        }
+    }
+
+    private final PushbackReader in;
+
+    CsvRecordReader(Reader in) {
+        this.in = new PushbackReader(new BufferedReader(in, 64 * 1024), 1);
+    }
+
+    /**
+     * reads the next record
+     * @return the record, or null at the end of the data
+     */
+    CsvRecord read() throws IOException {
+        int c = in.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (c == '"' && !quoted && field.isEmpty()) {
+                quoted = true;
+                if (!readQuoted(field)) {
+                    fields.add(field.toString());
+                    return new CsvRecord(fields, true);
+                }
+            } else if (c == ',') {
+                fields.add(value(field, quoted));
+                field.setLength(0);
+                quoted = false;
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    skip('\n');
+                }
+                fields.add(value(field, quoted));
+                return new CsvRecord(fields, false);
+            } else {
+                // quotes inside unquoted fields (or after a closed quoted one) are kept as they are
+                field.append((char) c);
+            }
+            c = in.read();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    /**
+     * reads the content of a quoted field, up to its closing quote
+     * @param field - receives the unquoted content
+     * @return false if the data ends before the closing quote
+     */
+    private boolean readQuoted(StringBuilder field) throws IOException {
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c != '"') {
+                field.append((char) c);
+            } else if (skip('"')) {
+                field.append('"');
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * consumes the next char when it's the expected one
+     * @return true if it was consumed
+     */
+    private boolean skip(char expected) throws IOException {
+        int c = in.read();
+        if (c == expected) {
+            return true;
+        }
+        if (c != -1) {
+            in.unread(c);
+        }
+        return false;
+    }
+
+    private static String value(StringBuilder field, boolean quoted) {
+        return quoted || !field.isEmpty() ? field.toString() : null;
+    }
+}
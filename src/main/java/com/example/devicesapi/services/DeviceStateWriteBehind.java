@@ -0,0 +1,309 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.annotations.TrackExecution;
+import com.example.devicesapi.cache.DeviceListCacheKeys;
+import com.example.devicesapi.cache.NearCacheManager;
+import com.example.devicesapi.config.RedisConfig;
+import com.example.devicesapi.dtos.DevicePatchRequest;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.entities.Device;
+import com.example.devicesapi.exceptions.DeviceConcurrentUpdateException;
+import com.example.devicesapi.exceptions.DeviceNotFoundException;
+import com.example.devicesapi.exceptions.DeviceVersionMismatchException;
+import com.example.devicesapi.repository.DevicesBatchRepository;
+import com.example.devicesapi.repository.DevicesRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind of the state only patches (opt-in, devices.write-behind.enabled)
+ * - the new state is applied to the cache right away and queued in memory,
+ *   repeated updates of a device replacing the queued one (only the latest is written)
+ * - the queue is flushed to the db on a short interval, on a single statement per batch,
+ *   and drained on a graceful shutdown
+ * - any other read or write of a device on the db flushes its queued state first,
+ *   and the other writes hold the lock of the device until saved and cached,
+ *   so a state change is never queued on top of a version about to be replaced
+ * - with several nodes, a write of a device whose state is still queued on another one
+ *   (the shared cache has it on a later version than the db) is rejected as a concurrent update
+ * A queued state is lost if the node crashes before its flush, or if the device is meanwhile
+ * written to the same version by another node (its cached copy is then evicted).
+ */
+@Slf4j
+@Service
+public class DeviceStateWriteBehind {
+
+    /**
+     * number of locks serializing the updates of the same device
+     */
+    static final int STRIPES = 64;
+
+    private final DevicesRepository repo;
+    private final DevicesBatchRepository batchRepo;
+    private final DeviceListCacheKeys listKeys;
+    private final Cache devicesCache;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Map<UUID, DeviceResponse> pending = new ConcurrentHashMap<>();
+    private final Lock[] stripes = new Lock[STRIPES];
+    private final Lock flushLock = new ReentrantLock();
+    private volatile boolean accepting = true;
+
+    private final Counter coalesced;
+    private final Timer flushTimer;
+
+    public DeviceStateWriteBehind(DevicesRepository repo,
+                                  DevicesBatchRepository batchRepo,
+                                  DeviceListCacheKeys listKeys,
+                                  NearCacheManager cacheManager,
+                                  MeterRegistry registry,
+                                  @Value("${devices.write-behind.enabled:false}") boolean enabled,
+                                  @Value("${devices.write-behind.batch-size:1000}") int batchSize) {
+        this.repo = repo;
+        this.batchRepo = batchRepo;
+        this.listKeys = listKeys;
+        this.devicesCache = cacheManager.getCache(RedisConfig.DEVICES_CACHE);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        Gauge.builder("devices.write-behind.pending", pending, Map::size)
+                .description("Devices with a state not yet written to the db")
+                .register(registry);
+        this.coalesced = Counter.builder("devices.write-behind.coalesced")
+                .description("State updates replacing one still queued")
+                .register(registry);
+        this.flushTimer = Timer.builder("devices.write-behind.flush")
+                .description("Time to write a batch of queued states to the db")
+                .register(registry);
+    }
+
+    /**
+     * @param req - partial update request
+     * @return true if the update is handled here (write-behind on and only the state to change)
+     */
+    public boolean accepts(DevicePatchRequest req) {
+        return enabled && accepting
+                && req.name().isEmpty()
+                && req.brand().isEmpty()
+                && req.state().isPresent();
+    }
+
+    /**
+     * Changes the state of a device on the cache, queueing its write to the db
+     * The version is bumped as on a db update, so ETag / If-Match keep working
+     *
+     * @param id - id of the device to be updated
+     * @param state - new state
+     * @param expectedVersions - when present, versions the device must have one of (If-Match)
+     * @return DeviceResponse with the updated Device content
+     */
+    @TrackExecution
+    public DeviceResponse updateState(UUID id, String state, Optional<List<String>> expectedVersions) {
+        String newState = Device.State.from(state).name();
+        Lock lock = stripe(id);
+        lock.lock();
+        try {
+            DeviceResponse current = current(id);
+            expectedVersions
+                    .filter(vs -> !vs.contains("*"))
+                    .filter(vs -> !vs.contains(String.valueOf(current.version())))
+                    .ifPresent(vs -> {
+                        throw new DeviceVersionMismatchException(id, String.join(", ", vs), current.version());
+                    });
+            if (current.state().equals(newState)) {
+                return current;
+            }
+            DeviceResponse updated = DeviceResponse.builder()
+                    .id(current.id())
+                    .name(current.name())
+                    .brand(current.brand())
+                    .state(newState)
+                    .createdAt(current.createdAt())
+                    .version(versionOf(current) + 1)
+                    .build();
+            if (pending.put(id, updated) != null) {
+                coalesced.increment();
+            }
+            devicesCache.put(id, updated);
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs any other write of a device serialized with its state changes:
+     * its queued state is written first, and no state change is queued
+     * until the write is saved and cached (or evicted, once deleted)
+     *
+     * @param id - id of the device to be written
+     * @param write - the write, returning the saved device (null when deleted)
+     * @return the saved device
+     */
+    public DeviceResponse serialized(UUID id, Supplier<DeviceResponse> write) {
+        Lock lock = stripe(id);
+        lock.lock();
+        try {
+            flush(id);
+            DeviceResponse saved = write.get();
+            if (saved == null) {
+                devicesCache.evict(id);
+            } else {
+                devicesCache.put(id, saved);
+            }
+            return saved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks that a device read from the db has no state change queued on another node,
+     * which the shared cache then holds on a later version (writing it would lose that change)
+     *
+     * @param id - id of the device
+     * @param version - version of the device on the db
+     * @throws DeviceConcurrentUpdateException, if the cached device is ahead of the db
+     */
+    public void checkWritten(UUID id, Long version) {
+        DeviceResponse cached = devicesCache.get(id, DeviceResponse.class);
+        if (cached != null && versionOf(cached) > (version == null ? 0 : version)) {
+            throw new DeviceConcurrentUpdateException(id);
+        }
+    }
+
+    /**
+     * writes the queued state of a device, before it's read from the db
+     * @param id - id of the device
+     */
+    public void flush(UUID id) {
+        if (!pending.containsKey(id)) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            DeviceResponse device = pending.get(id);
+            if (device != null) {
+                write(List.of(device));
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * writes all the queued states, in batches
+     * a failed batch stays queued, to be retried on the next flush
+     */
+    @Scheduled(fixedDelayString = "${devices.write-behind.interval:200ms}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<DeviceResponse> queued = new ArrayList<>(pending.values());
+            for (int from = 0; from < queued.size(); from += batchSize) {
+                write(queued.subList(from, Math.min(from + batchSize, queued.size())));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to write {} queued device states: {}", pending.size(), e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * stops queueing new updates and writes the queued ones, on shutdown
+     * (after the web server stopped taking requests)
+     */
+    @PreDestroy
+    public void drain() {
+        accepting = false;
+        flush();
+        if (!pending.isEmpty()) {
+            log.error("{} device states were not written to the db", pending.size());
+        }
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private Lock stripe(UUID id) {
+        return stripes[Math.floorMod(id.hashCode(), STRIPES)];
+    }
+
+    /**
+     * latest state of a device: the queued one, the cached one or the one on the db
+     * @param id - id of the device
+     * @return the device
+     * @throws DeviceNotFoundException, if the device doesn't exist
+     */
+    private DeviceResponse current(UUID id) {
+        DeviceResponse device = pending.get(id);
+        if (device != null) {
+            return device;
+        }
+        device = devicesCache.get(id, DeviceResponse.class);
+        if (device != null) {
+            return device;
+        }
+        device = repo.findById(id)
+                .map(DevicesService::toDto)
+                .orElseThrow(() -> new DeviceNotFoundException(id));
+        devicesCache.put(id, device);
+        return device;
+    }
+
+    /**
+     * writes a batch of queued states, dequeuing the ones not replaced meanwhile
+     * the cached copies of the states superseded on the db are evicted,
+     * as they share their version with a different device there
+     * @param devices - queued devices
+     */
+    private void write(List<DeviceResponse> devices) {
+        long start = System.nanoTime();
+        Set<UUID> updated = batchRepo.applyStates(devices);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        devices.forEach(device -> pending.remove(device.id(), device));
+        if (!updated.isEmpty()) {
+            listKeys.invalidate();
+        }
+        List<UUID> superseded = devices.stream()
+                .map(DeviceResponse::id)
+                .filter(id -> !updated.contains(id))
+                .toList();
+        if (!superseded.isEmpty()) {
+            superseded.forEach(devicesCache::evict);
+            log.warn("{} of {} queued device states were superseded on the db: {}",
+                    superseded.size(), devices.size(), superseded);
+        }
+    }
+
+    private static long versionOf(DeviceResponse device) {
+        return device.version() == null ? 0 : device.version();
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.annotations.TrackExecution;
+import com.example.devicesapi.cache.DeviceIdFilter;
+import com.example.devicesapi.cache.DeviceListCacheKeys;
+import com.example.devicesapi.cache.DevicesCacheWriter;
+import com.example.devicesapi.dtos.DeviceBatchItem;
+import com.example.devicesapi.dtos.DeviceBatchResponse;
+import com.example.devicesapi.dtos.DeviceCreateRequest;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.dtos.DeviceStateTransitionRequest;
+import com.example.devicesapi.dtos.DeviceStateTransitionResponse;
+import com.example.devicesapi.entities.Device;
+import com.example.devicesapi.exceptions.InvalidDuplicatedValuesException;
+import com.example.devicesapi.exceptions.InvalidFieldValueException;
+import com.example.devicesapi.exceptions.InvalidNullValueException;
+import com.example.devicesapi.repository.DeviceFilters;
+import com.example.devicesapi.repository.DevicesBatchRepository;
+import com.example.devicesapi.repository.DevicesBatchRepository.Identification;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+public class DevicesBatchService {
+
+    /**
+     * upper bound of the number of devices on a single batch request
+     */
+    public static final int MAX_BATCH_SIZE = 5000;
+
+    /**
+     * Dependency injection of the batch repository, the cache writer,
+     * the keys of the cached lists, the filter of the existing ids, the write-behind
+     * of the states and the bean validator
+     */
+    private final DevicesBatchRepository batchRepo;
+    private final DevicesCacheWriter cacheWriter;
+    private final DeviceListCacheKeys listKeys;
+    private final DeviceIdFilter idFilter;
+    private final DeviceStateWriteBehind stateWrites;
+    private final Validator validator;
+
+    public DevicesBatchService(DevicesBatchRepository batchRepo,
+                               DevicesCacheWriter cacheWriter,
+                               DeviceListCacheKeys listKeys,
+                               DeviceIdFilter idFilter,
+                               DeviceStateWriteBehind stateWrites,
+                               Validator validator) {
+        this.batchRepo = batchRepo;
+        this.cacheWriter = cacheWriter;
+        this.listKeys = listKeys;
+        this.idFilter = idFilter;
+        this.stateWrites = stateWrites;
+        this.validator = validator;
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              public life cycle methods                                //
+    //---------------------------------------------------------------------------------------//
+
+    /**
+     * Creates a batch of new Devices, based on the values of the input DeviceCreateRequest list
+     * Each device is validated on its own, so an invalid one does not reject the others:
+     * - field values, as on a single creation
+     * - duplicates inside the batch
+     * - duplicates of existing devices, all checked on a single query
+     * The valid devices are inserted through jdbc batches and stored
+     * on the cache through a single pipeline
+     *
+     * @param reqs - list of DeviceCreateRequest with the values of the new devices
+     * @return DeviceBatchResponse with the outcome of each requested device
+     */
+    @TrackExecution
+    public DeviceBatchResponse createAll(List<DeviceCreateRequest> reqs) {
+        if (reqs == null || reqs.isEmpty())
+            throw new InvalidNullValueException("devices");
+        if (reqs.size() > MAX_BATCH_SIZE)
+            throw new InvalidFieldValueException("devices", reqs.size() + " items (max " + MAX_BATCH_SIZE + ")");
+
+        DeviceBatchItem[] items = new DeviceBatchItem[reqs.size()];
+        Map<Integer, Device> candidates = new LinkedHashMap<>();
+        Set<Identification> requested = new HashSet<>();
+        for (int i = 0; i < reqs.size(); i++) {
+            try {
+                Device device = toDevice(reqs.get(i));
+                if (!requested.add(identificationOf(device)))
+                    throw duplicated(device);
+                candidates.put(i, device);
+            } catch (InvalidFieldValueException e) {
+                items[i] = failed(i, e);
+            }
+        }
+
+        Set<Identification> existing = batchRepo.findExisting(requested);
+        List<Device> toInsert = new ArrayList<>();
+        candidates.forEach((i, device) -> {
+            if (existing.contains(identificationOf(device)))
+                items[i] = failed(i, duplicated(device));
+            else
+                toInsert.add(device);
+        });
+
+        Set<UUID> inserted = batchRepo.insertAll(toInsert);
+        idFilter.addAll(inserted);
+        List<DeviceResponse> created = new ArrayList<>();
+        candidates.forEach((i, device) -> {
+            if (items[i] != null)
+                return;
+            if (inserted.contains(device.getId())) {
+                DeviceResponse dto = DevicesService.toDto(device);
+                created.add(dto);
+                items[i] = DeviceBatchItem.builder()
+                        .index(i)
+                        .status(HttpStatus.CREATED.value())
+                        .device(dto)
+                        .build();
+            } else {
+                items[i] = failed(i, duplicated(device));
+            }
+        });
+        cacheWriter.putAll(created);
+        if (!created.isEmpty())
+            listKeys.invalidate();
+
+        return new DeviceBatchResponse(created.size(), reqs.size() - created.size(), Arrays.asList(items));
+    }
+
+    /**
+     * Moves a set of devices to a new state, on a single update statement
+     * The devices are the ones with the requested ids or, without ids,
+     * all the devices matching the filters (at least one is required)
+     * The moved devices are evicted from the cache, on a single pipeline
+     * (the states queued on the write-behind are written first)
+     *
+     * @param req - DeviceStateTransitionRequest with the ids, new state and optional current state
+     * @param name  - when present, only devices of that name are moved
+     * @param brand - when present, only devices of that brand are moved
+     * @return DeviceStateTransitionResponse with the ids of the moved devices
+     */
+    @TrackExecution
+    public DeviceStateTransitionResponse transitionAll(
+            DeviceStateTransitionRequest req,
+            Optional<String> name,
+            Optional<String> brand,
+            Optional<LocalDateTime> startDateTime,
+            Optional<LocalDateTime> endDateTime) {
+        Device.State state = Device.State.from(req.state());
+        Optional<String> from = Optional.ofNullable(req.from()).filter(f -> !f.isBlank());
+        stateWrites.flush();
+        List<UUID> moved;
+        if (req.ids() != null && !req.ids().isEmpty()) {
+            if (req.ids().size() > MAX_BATCH_SIZE)
+                throw new InvalidFieldValueException("ids", req.ids().size() + " items (max " + MAX_BATCH_SIZE + ")");
+            moved = batchRepo.updateState(req.ids(), state, from.map(Device.State::from));
+        } else {
+            boolean filtered = name.filter(n -> !n.isBlank()).isPresent()
+                    || brand.filter(b -> !b.isBlank()).isPresent()
+                    || from.isPresent()
+                    || startDateTime.isPresent()
+                    || endDateTime.isPresent();
+            if (!filtered)
+                throw new InvalidNullValueException("ids");
+            moved = batchRepo.updateState(DeviceFilters.of(name, brand, from, startDateTime, endDateTime), state);
+        }
+        cacheWriter.evictAll(moved);
+        if (!moved.isEmpty())
+            listKeys.invalidate();
+        return new DeviceStateTransitionResponse(state.name(), moved.size(), moved);
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    /**
+     * validates a creation request, with the same rules of a single creation,
+     * and builds the corresponding new device
+     * @param req - values of the new device
+     * @return new (not yet saved) device
+     * @throws InvalidFieldValueException if any value is invalid
+     */
+    private Device toDevice(DeviceCreateRequest req) {
+        if (req == null)
+            throw new InvalidNullValueException("device");
+        Set<ConstraintViolation<DeviceCreateRequest>> violations = validator.validate(req);
+        if (!violations.isEmpty()) {
+            throw new InvalidFieldValueException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        return Device.create(req.name(), req.brand(), Device.State.from(req.state()));
+    }
+
+    private static Identification identificationOf(Device device) {
+        return new Identification(device.getName(), device.getBrand());
+    }
+
+    private static InvalidDuplicatedValuesException duplicated(Device device) {
+        return new InvalidDuplicatedValuesException(
+                new String[]{"name", "brand"},
+                new String[]{device.getName(), device.getBrand()});
+    }
+
+    /**
+     * builds the outcome of a rejected device, with the status
+     * the same error would get on a single creation
+     * @param index - position of the device on the request
+     * @param e - rejection cause
+     * @return failed batch item
+     */
+    private static DeviceBatchItem failed(int index, InvalidFieldValueException e) {
+        HttpStatus status = (e instanceof InvalidDuplicatedValuesException)
+                ? HttpStatus.CONFLICT
+                : HttpStatus.BAD_REQUEST;
+        return DeviceBatchItem.builder()
+                .index(index)
+                .status(status.value())
+                .error(e.getMessage())
+                .build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.cache.DevicesCacheWriter;
+import com.example.devicesapi.cache.HotKeyTracker;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.repository.DevicesRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Warms the devices cache on startup, with the most accessed devices
+ * It runs before the application is ready, so the node only reports
+ * readiness (and gets traffic) once the hot devices are cached
+ * A failure is only logged: a cold cache is slower, not wrong
+ * The devices already cached are kept: they may have been written after the db read
+ */
+@Component
+@ConditionalOnProperty(name = "cache.warmup.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class DevicesCacheWarmup implements ApplicationRunner {
+
+    /**
+     * number of devices read from the db and written to the cache at once
+     */
+    static final int CHUNK = 500;
+
+    private final HotKeyTracker hotKeys;
+    private final DevicesRepository repo;
+    private final DevicesCacheWriter cacheWriter;
+    private final int size;
+
+    public DevicesCacheWarmup(HotKeyTracker hotKeys,
+                              DevicesRepository repo,
+                              DevicesCacheWriter cacheWriter,
+                              @Value("${cache.warmup.size:1000}") int size) {
+        this.hotKeys = hotKeys;
+        this.repo = repo;
+        this.cacheWriter = cacheWriter;
+        this.size = size;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        warmup();
+    }
+
+    /**
+     * caches the hottest devices not yet on the cache
+     * @return number of devices read for the cache (the ones already cached are kept)
+     */
+    public int warmup() {
+        long start = System.nanoTime();
+        int cached = 0;
+        try {
+            List<UUID> ids = hotKeys.hottest(size);
+            for (int from = 0; from < ids.size(); from += CHUNK) {
+                List<DeviceResponse> devices = repo.findAllById(ids.subList(from, Math.min(from + CHUNK, ids.size())))
+                        .stream()
+                        .map(DevicesService::toDto)
+                        .toList();
+                cacheWriter.putAllAbsent(devices);
+                cached += devices.size();
+            }
+            log.info("Cache warmed with {} hot devices in {} ms", cached, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Cache warmup failed after {} devices: {}", cached, e.getMessage());
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.annotations.TrackExecution;
+import com.example.devicesapi.dtos.DeviceDataFormat;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.entities.Device;
+import com.example.devicesapi.repository.DevicesRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.example.devicesapi.repository.DevicesRepository.byFilters;
+import static com.example.devicesapi.repository.DevicesRepository.keysetSort;
+
+@Service
+public class DevicesExportService {
+
+    static final String CSV_HEADER = "id,name,brand,state,createdAt\n";
+
+    /**
+     * Dependency injection of the repository and the json writer
+     */
+    private final DevicesRepository repo;
+    private final ObjectWriter jsonWriter;
+
+    public DevicesExportService(DevicesRepository repo, ObjectMapper mapper) {
+        this.repo = repo;
+        this.jsonWriter = mapper.writerFor(DeviceResponse.class);
+    }
+
+    /**
+     * exports all the devices matching the filters, in creation order
+     * The devices are read from a db cursor and written one by one to the output,
+     * so the memory used does not depend on the number of exported devices
+     * (the transaction keeps the cursor open while the devices are written)
+     *
+     * @param format - output format
+     * @param name  - when present, indicates that only devices of that name should be exported
+     * @param brand - when present, indicates that only devices of that brand should be exported
+     * @param state - when present, indicates that only devices on that state should be exported
+     * @param ascending - order of the devices by creation time
+     * @param out - output to write the devices to
+     */
+    @TrackExecution
+    @Transactional(readOnly = true)
+    public void export(
+            DeviceDataFormat format,
+            Optional<String> name,
+            Optional<String> brand,
+            Optional<String> state,
+            Optional<LocalDateTime> startDateTime,
+            Optional<LocalDateTime> endDateTime,
+            boolean ascending,
+            OutputStream out) throws IOException {
+        OutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        if (format == DeviceDataFormat.CSV) {
+            buffered.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+        }
+        try (Stream<Device> devices = repo.streamAll(
+                byFilters(name, brand, state, startDateTime, endDateTime),
+                keysetSort(ascending))) {
+            devices.map(DevicesService::toDto)
+                    .forEach(device -> write(format, device, buffered));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        buffered.flush();
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private void write(DeviceDataFormat format, DeviceResponse device, OutputStream out) {
+        try {
+            if (format == DeviceDataFormat.NDJSON) {
+                out.write(jsonWriter.writeValueAsBytes(device));
+                out.write('\n');
+            } else {
+                out.write(toCsv(device).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String toCsv(DeviceResponse device) {
+        return device.id() + ","
+                + csvField(device.name()) + ","
+                + csvField(device.brand()) + ","
+                + device.state() + ","
+                + device.createdAt() + "\n";
+    }
+
+    /**
+     * quotes a free text field when it holds separators, quotes or line breaks
+     * @param value - field value
+     * @return csv field
+     */
+    private static String csvField(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
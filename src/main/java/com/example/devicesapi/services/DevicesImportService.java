@@ -0,0 +1,210 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.annotations.TrackExecution;
+import com.example.devicesapi.cache.DeviceIdFilter;
+import com.example.devicesapi.cache.DeviceListCacheKeys;
+import com.example.devicesapi.dtos.DeviceCreateRequest;
+import com.example.devicesapi.dtos.DeviceDataFormat;
+import com.example.devicesapi.dtos.DeviceImportResponse;
+import com.example.devicesapi.repository.DevicesImportRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+@Service
+@Slf4j
+public class DevicesImportService {
+
+    /**
+     * Dependency injection of the import repository, the keys of the cached lists,
+     * the filter of the existing ids and the json reader
+     */
+    private final DevicesImportRepository importRepo;
+    private final DeviceListCacheKeys listKeys;
+    private final DeviceIdFilter idFilter;
+    private final ObjectReader jsonReader;
+
+    public DevicesImportService(DevicesImportRepository importRepo,
+                                DeviceListCacheKeys listKeys,
+                                DeviceIdFilter idFilter,
+                                ObjectMapper mapper) {
+        this.importRepo = importRepo;
+        this.listKeys = listKeys;
+        this.idFilter = idFilter;
+        this.jsonReader = mapper.readerFor(DeviceCreateRequest.class);
+    }
+
+    /**
+     * Imports a stream of devices, in csv (header + name,brand,state columns, as exported)
+     * or ndjson (one DeviceCreateRequest per line)
+     * The rows are loaded through COPY, validated with the same rules of
+     * a single creation and merged in a single transaction.
+     * Invalid and duplicated rows are rejected, without rejecting the others.
+     * (the imported devices are not cached, they'll be cached when fetched)
+     *
+     * @param format - format of the data
+     * @param in - data to import
+     * @return DeviceImportResponse with the counts, throughput and rejected rows
+     */
+    @TrackExecution
+    public DeviceImportResponse importDevices(DeviceDataFormat format, InputStream in) throws IOException {
+        long start = System.nanoTime();
+        DevicesImportRepository.Outcome outcome;
+        try {
+            outcome = importRepo.importDevices(format == DeviceDataFormat.CSV
+                    ? copyManager -> copyCsv(copyManager, in)
+                    : copyManager -> copyNdjson(copyManager, in),
+                    idFilter::addAll);
+        } catch (SQLException e) {
+            throw new IOException("Import failed: " + e.getMessage(), e);
+        }
+        if (outcome.imported() > 0) {
+            listKeys.invalidate();
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        long rowsPerSecond = outcome.total() * 1000 / elapsedMillis;
+        log.info("Imported {} of {} devices ({} rejected) in {} ms : {} rows/s",
+                outcome.imported(), outcome.total(), outcome.rejected(), elapsedMillis, rowsPerSecond);
+        return new DeviceImportResponse(
+                outcome.total(),
+                outcome.imported(),
+                outcome.rejected(),
+                elapsedMillis,
+                rowsPerSecond,
+                outcome.rejections());
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    /**
+     * reads the csv records and streams them to COPY as (name, brand, state) rows
+     * The columns are located by the header (so an export, with its extra columns, can be imported)
+     * or else taken as the first three ones; records with a different number of fields
+     * than the header are copied as rejected rows
+     * @param copyManager - COPY api of the import transaction
+     * @param in - csv data
+     * @return number of copied rows
+     */
+    private long copyCsv(CopyManager copyManager, InputStream in) throws SQLException, IOException {
+        CopyIn copyIn = copyManager.copyIn(DevicesImportRepository.COPY_ROWS_SQL);
+        try (PGCopyOutputStream out = new PGCopyOutputStream(copyIn, 64 * 1024);
+             CsvRecordReader reader = new CsvRecordReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            CsvRecordReader.CsvRecord header = reader.read();
+            if (header != null) {
+                int[] columns = columnsOf(header.fields());
+                int width = Math.max(header.fields().size(), columns.length);
+                CsvRecordReader.CsvRecord record;
+                while ((record = reader.read()) != null) {
+                    if (record.isBlank()) {
+                        continue;
+                    }
+                    out.write(toCopyRow(record, width, columns).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return out.endCopy();
+        }
+    }
+
+    /**
+     * converts each ndjson line to a csv row and streams it to COPY
+     * lines that are not valid json are copied as rejected rows
+     * @param copyManager - COPY api of the import transaction
+     * @param in - ndjson data
+     * @return number of copied rows
+     */
+    private long copyNdjson(CopyManager copyManager, InputStream in) throws SQLException, IOException {
+        return copyLines(copyManager, DevicesImportRepository.COPY_ROWS_SQL, in, this::toCopyRow);
+    }
+
+    /**
+     * streams the (non blank) lines of the data to COPY, each one converted to a csv row
+     * @param copyManager - COPY api of the import transaction
+     * @param sql - COPY statement
+     * @param in - data
+     * @param toRow - converts a line to a csv row
+     * @return number of copied rows
+     */
+    private static long copyLines(CopyManager copyManager, String sql, InputStream in,
+                                  Function<String, String> toRow) throws SQLException, IOException {
+        CopyIn copyIn = copyManager.copyIn(sql);
+        try (PGCopyOutputStream out = new PGCopyOutputStream(copyIn, 64 * 1024);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                out.write(toRow.apply(line).getBytes(StandardCharsets.UTF_8));
+            }
+            return out.endCopy();
+        }
+    }
+
+    private String toCopyRow(String line) {
+        try {
+            DeviceCreateRequest req = jsonReader.readValue(line);
+            return copyField(req.name()) + "," + copyField(req.brand()) + "," + copyField(req.state()) + ",\n";
+        } catch (JsonProcessingException e) {
+            return ",,," + copyField("Invalid json line") + "\n";
+        }
+    }
+
+    /**
+     * converts a csv record to a COPY row, or to a rejected row when it's malformed
+     * @param record - csv record
+     * @param width - number of fields of each record (the ones of the header, at least 3)
+     * @param columns - positions of the name, brand and state fields
+     * @return csv row
+     */
+    private static String toCopyRow(CsvRecordReader.CsvRecord record, int width, int[] columns) {
+        List<String> fields = record.fields();
+        if (record.unterminated()) {
+            return ",,," + copyField("Unterminated quoted csv field") + "\n";
+        }
+        if (fields.size() != width) {
+            return ",,," + copyField("Malformed csv record: " + fields.size() + " fields, expected " + width) + "\n";
+        }
+        return copyField(fields.get(columns[0])) + ","
+                + copyField(fields.get(columns[1])) + ","
+                + copyField(fields.get(columns[2])) + ",\n";
+    }
+
+    /**
+     * locates the name, brand and state columns on the csv header
+     * @param header - header fields
+     * @return positions of the name, brand and state fields (0, 1, 2 if the header doesn't name them all)
+     */
+    private static int[] columnsOf(List<String> header) {
+        List<String> names = header.stream()
+                .map(name -> name == null ? "" : name.strip().toLowerCase())
+                .toList();
+        int[] columns = {names.indexOf("name"), names.indexOf("brand"), names.indexOf("state")};
+        return Arrays.stream(columns).anyMatch(column -> column < 0) ? new int[]{0, 1, 2} : columns;
+    }
+
+    /**
+     * quotes a csv field for COPY, keeping null values unquoted (read as NULL)
+     * @param value - field value
+     * @return csv field
+     */
+    private static String copyField(String value) {
+        return value == null ? "" : "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
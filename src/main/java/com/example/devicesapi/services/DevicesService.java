@@ -2,17 +2,27 @@ package com.example.devicesapi.services;
 
 
 import com.example.devicesapi.annotations.TrackExecution;
+import com.example.devicesapi.cache.DeviceIdFilter;
+import com.example.devicesapi.cache.DeviceListCacheKeys;
+import com.example.devicesapi.config.RedisConfig;
 import com.example.devicesapi.dtos.*;
 import com.example.devicesapi.entities.Device;
 import com.example.devicesapi.entities.Device.State;
+import com.example.devicesapi.exceptions.DeviceConcurrentUpdateException;
 import com.example.devicesapi.exceptions.DeviceNotFoundException;
+import com.example.devicesapi.exceptions.DeviceVersionMismatchException;
 import com.example.devicesapi.exceptions.InvalidDeleteException;
 import com.example.devicesapi.exceptions.InvalidDuplicatedValuesException;
+import com.example.devicesapi.exceptions.InvalidFieldValueException;
 import com.example.devicesapi.exceptions.InvalidNullValueException;
 import com.example.devicesapi.repository.DevicesRepository;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.cache.annotation.*;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -28,13 +38,28 @@ import static com.example.devicesapi.repository.DevicesRepository.*;
 public class DevicesService {
 
     /**
-     * Dependency injection of the repository
+     * upper bound of the page size on keyset pagination
+     */
+    public static final int MAX_PAGE_LIMIT = 1000;
+
+    /**
+     * Dependency injection of the repository, the keys of the cached lists,
+     * the filter of the existing ids and the write-behind of the states
      *
      */
     private final DevicesRepository repo;
+    private final DeviceListCacheKeys listKeys;
+    private final DeviceIdFilter idFilter;
+    private final DeviceStateWriteBehind stateWrites;
 
-    public DevicesService(DevicesRepository repo) {
+    public DevicesService(DevicesRepository repo,
+                          DeviceListCacheKeys listKeys,
+                          DeviceIdFilter idFilter,
+                          DeviceStateWriteBehind stateWrites) {
         this.repo = repo;
+        this.listKeys = listKeys;
+        this.idFilter = idFilter;
+        this.stateWrites = stateWrites;
     }
 
     //---------------------------------------------------------------------------------------//
@@ -44,9 +69,10 @@ public class DevicesService {
     /**
      * Creates a new Device, based on the values of the input DeviceCreateRequest
      * first it validates if the State value is valid and
-     * if the device identification (name+brand) is not null and unique
+     * if the device identification (name+brand) is not null
      * if it is ok, creates a new device providing a random uuid and the current date
      * At the end, saves the Device on the db, through the repo
+     * (the identification uniqueness is enforced by the db)
      *
      * @param req - DataCreateRequest with the provided values for the new device
      * @return DeviceResponse with the new Device content
@@ -56,58 +82,60 @@ public class DevicesService {
     public DeviceResponse create(DeviceCreateRequest req) {
         validateIdentification(req.name(),req.brand());
         State state = Device.State.from(req.state());
-        Device device = repo.save(
+        Device device = saveDevice(
                 Device.create(req.name(), req.brand(), state));
+        idFilter.addAll(List.of(device.getId()));
         return toDto(device);
     }
 
     /**
      * Fully Updates an existent device
-     * At the end, saves the Device on the db, through the repo
+     * At the end, saves the Device on the db, through the repo,
+     * serialized with the (write-behind) state changes of the device, which caches it
      *
      * @param id - id of the device to be updated
      * @param req - DeviceUpdateRequest with the provided values for the update
+     * @param expectedVersions - when present, versions the device must have one of (If-Match)
      * @return DeviceResponse with the updated Device content
      */
     @TrackExecution
-    @CachePut(value="devices", key="#result.id()")
-    public DeviceResponse update(UUID id, DeviceUpdateRequest req) {
-        var device = findDevice(id);
-        validateDuplicates(device, req.name(), req.brand());
-        device.updateName(req.name());
-        device.updateBrand(req.brand());
-        device.updateState(req.state());
-        return toDto(repo.save(device));
+    public DeviceResponse update(UUID id, DeviceUpdateRequest req, Optional<List<String>> expectedVersions) {
+        return stateWrites.serialized(id, () -> {
+            var device = findWritableDevice(id);
+            validateVersion(device, expectedVersions);
+            device.updateName(req.name());
+            device.updateBrand(req.brand());
+            device.updateState(req.state());
+            return toDto(saveDevice(device));
+        });
     }
 
     /**
      * Partially updates an existent device
-     * At the end, saves the Device on the db, through the repo
+     * At the end, saves the Device on the db, through the repo,
+     * serialized with the (write-behind) state changes of the device, which caches it
      *
      * @param id - id of the device to be updated
      * @param req - DeviceUpdateRequest with the provided values for the update
+     * @param expectedVersions - when present, versions the device must have one of (If-Match)
      * @return DeviceResponse with the updated Device content
      */
     @TrackExecution
-    @CachePut(value="devices", key="#result.id()")
-    public DeviceResponse partialUpdate(UUID id, DevicePatchRequest req) {
-        var device = findDevice(id);
-        req.name()
-            .filter(name -> !name.equals(device.getName()))
-            .ifPresent(name -> {
-                validateDuplicates(device, name, device.getBrand());
-                device.updateName(name);
-            });
-        req.brand()
-            .filter(brand -> !brand.equals(device.getBrand()))
-            .ifPresent(brand -> {
-                validateDuplicates(device, device.getName(), brand);
-                device.updateBrand(brand);
-            });
-        req.state()
-                .map(Device.State::from)
-                .ifPresent(device::updateState);
-        return toDto(repo.save(device));
+    public DeviceResponse partialUpdate(UUID id, DevicePatchRequest req, Optional<List<String>> expectedVersions) {
+        return stateWrites.serialized(id, () -> {
+            var device = findWritableDevice(id);
+            validateVersion(device, expectedVersions);
+            req.name()
+                .filter(name -> !name.equals(device.getName()))
+                .ifPresent(device::updateName);
+            req.brand()
+                .filter(brand -> !brand.equals(device.getBrand()))
+                .ifPresent(device::updateBrand);
+            req.state()
+                    .map(Device.State::from)
+                    .ifPresent(device::updateState);
+            return toDto(saveDevice(device));
+        });
     }
 
     /**
@@ -119,7 +147,7 @@ public class DevicesService {
      * @return DeviceResponse with the selected Device content
      */
     @TrackExecution
-    @Cacheable(value = "devices", key = "#id")
+    @Cacheable(value = "devices", key = "#id", sync = true)
     public DeviceResponse getOne(UUID id) {
         Device device = findDevice(id);
         return toDto(device);
@@ -136,8 +164,9 @@ public class DevicesService {
      * @return list of DeviceResponse corresponding to the selected Devices
      */
     @TrackExecution
-    //@Cacheable(cacheNames = "devices")
-    //@Cacheable(cacheNames = "devices")
+    @Cacheable(cacheNames = RedisConfig.DEVICE_PAGES_CACHE,
+            key = "@deviceListKeys.key(#name, #brand, #state, #startDateTime, #endDateTime, #pageable)",
+            sync = true)
     public PageResponse<DeviceResponse> getDevices(
             Optional<String> name,
             Optional<String> brand,
@@ -150,7 +179,7 @@ public class DevicesService {
                 pageable);
         List<DeviceResponse> devicesList = devicesPage.getContent()
                 .stream()
-                .map(this::toDto)
+                .map(DevicesService::toDto)
                 .toList();
         PageMetadata metadata = new PageMetadata(
                 devicesPage.getNumber(),
@@ -171,6 +200,9 @@ public class DevicesService {
      * @param pageable - provides info about the pagination
      * @return list of DeviceResponse corresponding to the selected Devices
      */
+    @Cacheable(cacheNames = RedisConfig.DEVICE_LISTS_CACHE,
+            key = "@deviceListKeys.key(#name, #brand, #state, #startDateTime, #endDateTime, #pageable)",
+            sync = true)
     public List<DeviceResponse> getAll(
             Optional<String> name,
             Optional<String> brand,
@@ -180,25 +212,102 @@ public class DevicesService {
             Pageable pageable) {
         return repo.findAll(byFilters(name,brand,state, startDateTime, endDateTime), pageable)
                 .stream()
-                .map(this::toDto)
+                .map(DevicesService::toDto)
                 .toList();
     }
 
+    /**
+     * fetches a keyset paginated list of devices, optionally filtered
+     * Each page starts right after the cursor (creationTime, id) of the previous one,
+     * so deep pages cost the same as the first one and no count query is issued
+     * One extra row is fetched to find out if there is a following page
+     *
+     * @param name  - when present, indicates that only devices of that name should be returned
+     * @param brand - when present, indicates that only devices of that brand should be returned
+     * @param state - when present, indicates that only devices on that state should be returned
+     * @param after - when present, cursor returned as next by the previous page
+     * @param limit - maximum number of devices to return
+     * @param ascending - order of the devices by creation time
+     * @return page of DeviceResponse with the cursor of the following page
+     */
+    @TrackExecution
+    @Cacheable(cacheNames = RedisConfig.DEVICE_CURSOR_PAGES_CACHE,
+            key = "@deviceListKeys.key(#name, #brand, #state, #startDateTime, #endDateTime, #after, #limit, #ascending)",
+            sync = true)
+    public CursorPageResponse<DeviceResponse> getDevicesAfter(
+            Optional<String> name,
+            Optional<String> brand,
+            Optional<String> state,
+            Optional<LocalDateTime> startDateTime,
+            Optional<LocalDateTime> endDateTime,
+            Optional<String> after,
+            int limit,
+            boolean ascending) {
+        if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+            throw new InvalidFieldValueException("limit", String.valueOf(limit));
+        }
+        Specification<Device> filters = byFilters(name, brand, state, startDateTime, endDateTime);
+        Specification<Device> spec = after
+                .filter(a -> !a.isBlank())
+                .map(DeviceCursor::decode)
+                .map(cursor -> filters.and(afterCursor(cursor, ascending)))
+                .orElse(filters);
+        List<DeviceResponse> devicesList = repo.findBy(spec, query -> query
+                        .sortBy(keysetSort(ascending))
+                        .limit(limit + 1)
+                        .all())
+                .stream()
+                .map(DevicesService::toDto)
+                .toList();
+        if (devicesList.size() <= limit) {
+            return new CursorPageResponse<>(devicesList, null);
+        }
+        List<DeviceResponse> pageList = devicesList.subList(0, limit);
+        return new CursorPageResponse<>(
+                pageList,
+                DeviceCursor.of(pageList.getLast()).encode());
+    }
 
+    /**
+     * searches devices whose name contains, or is similar to, the input term
+     * the results are ranked by similarity, the most similar first
+     * (% and _ on the term are searched as such, not as LIKE wildcards)
+     *
+     * @param term - text to search on the devices names
+     * @param limit - maximum number of devices to return
+     * @return list of DeviceResponse corresponding to the matching devices
+     */
+    @TrackExecution
+    public List<DeviceResponse> search(String term, int limit) {
+        if (term == null || term.isBlank())
+            throw new InvalidNullValueException("q");
+        if (limit < 1 || limit > MAX_PAGE_LIMIT)
+            throw new InvalidFieldValueException("limit", String.valueOf(limit));
+        String trimmed = term.trim();
+        return repo.searchByName(trimmed, likeEscaped(trimmed), limit)
+                .stream()
+                .map(DevicesService::toDto)
+                .toList();
+    }
 
     /**
      * fetches an existent device, from the input it
      * First It locates the device and checks if it can be deleted (not on Lock state)
+     * serialized with the (write-behind) state changes of the device, which evicts it
      * @param id - id of the device to be updated
      */
     @TrackExecution
-    @CacheEvict(value = "devices", key = "#id")
     public void delete(UUID id) {
-        var device = findDevice(id);
-        if (device.isLocked()) {
-            throw new InvalidDeleteException(id);
-        }
-        repo.delete(device);
+        stateWrites.serialized(id, () -> {
+            var device = findWritableDevice(id);
+            if (device.isLocked()) {
+                throw new InvalidDeleteException(id);
+            }
+            repo.delete(device);
+            idFilter.removed(id);
+            listKeys.invalidate();
+            return null;
+        });
     }
 
     //---------------------------------------------------------------------------------------//
@@ -207,11 +316,34 @@ public class DevicesService {
 
     /**
      * Locates a device with the arg Id
+     * ids known to be absent are rejected without a db lookup
+     * and a state still queued on the write-behind is written first
      * @param id - id of the device to find
      * @return the located device
      */
     private Device findDevice(UUID id) {
-        return repo.findById(id).orElseThrow(() -> new DeviceNotFoundException(id));
+        DeviceIdFilter.Lookup lookup = idFilter.lookup(id);
+        if (lookup == DeviceIdFilter.Lookup.ABSENT) {
+            throw new DeviceNotFoundException(id);
+        }
+        stateWrites.flush(id);
+        return repo.findById(id).orElseThrow(() -> {
+            idFilter.recordAbsent(id, lookup);
+            return new DeviceNotFoundException(id);
+        });
+    }
+
+    /**
+     * Locates a device to be written, which must not have a state change
+     * still queued on another node
+     * @param id - id of the device to find
+     * @return the located device
+     * @throws DeviceConcurrentUpdateException, if its state change is not yet on the db
+     */
+    private Device findWritableDevice(UUID id) {
+        Device device = findDevice(id);
+        stateWrites.checkWritten(id, device.getVersion());
+        return device;
     }
 
     /**
@@ -220,20 +352,20 @@ public class DevicesService {
      * @param device - the device to be converted
      * @return DeviceResponse
      */
-    private DeviceResponse toDto(Device device) {
+    static DeviceResponse toDto(Device device) {
         return DeviceResponse.builder()
                 .id(device.getId())
                 .brand(device.getBrand())
                 .name(device.getName())
                 .state(device.getState().name())
                 .createdAt(device.getCreatedAt())
+                .version(device.getVersion())
                 .build();
     }
 
 
     /**
      * Checks if the identification values (name, brand) are valid (not null)
-     * and that there isn't already a device with that identification
      * @param name - name of the device
      * @param brand - brand of the device
      */
@@ -242,26 +374,75 @@ public class DevicesService {
             throw new InvalidNullValueException("name");
         if (brand == null || brand.isBlank())
             throw new InvalidNullValueException("brand");
-        validateDuplicates(null, name, brand);
     }
 
     /**
-     * Checks for device duplicates, by locating an existing device with the input name and brand
-     * @param dev - device to be updated
-     * @param name - name of the device to be located
-     * @param brand - brand of the device to be located
-     * @throws InvalidDuplicatedValuesException, if it exists a duplicate
+     * Escapes the LIKE wildcards (and the escape character itself) of a user supplied text
+     * @param text - text to be matched literally
+     * @return text to be embedded on a LIKE pattern (with the default \ escape of postgres)
+     */
+    static String likeEscaped(String text) {
+        return text.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    /**
+     * Checks if the device still has the version the caller based its update on
+     * @param device - device to be updated
+     * @param expectedVersions - versions expected by the caller (absent or * to skip the check)
+     * @throws DeviceVersionMismatchException, if the device was meanwhile changed
      */
-    private void validateDuplicates(Device dev, String name, String brand) {
-        repo.findDeviceByNameAndBrand(name, brand).stream()
-                .filter(existing -> !existing.equals(dev))
-                .findAny()
-                .ifPresent(d -> {
-                    throw new InvalidDuplicatedValuesException(
-                            new String[]{"name", "brand"},
-                            new String[]{name, brand}
-                    );
+    private void validateVersion(Device device, Optional<List<String>> expectedVersions) {
+        expectedVersions
+                .filter(vs -> !vs.contains("*"))
+                .filter(vs -> !vs.contains(String.valueOf(device.getVersion())))
+                .ifPresent(vs -> {
+                    throw new DeviceVersionMismatchException(device.getId(), String.join(", ", vs), device.getVersion());
                 });
     }
 
+    /**
+     * Saves a device, flushing it to have the (name, brand) uniqueness
+     * and the optimistic lock version checked by the db
+     * Once saved, the cached lists are invalidated
+     * @param device - device to be saved
+     * @return the saved device
+     * @throws InvalidDuplicatedValuesException, if it exists a duplicate
+     * @throws DeviceConcurrentUpdateException, if the device was updated since it was read
+     */
+    private Device saveDevice(Device device) {
+        try {
+            Device saved = repo.saveAndFlush(device);
+            listKeys.invalidate();
+            return saved;
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new DeviceConcurrentUpdateException(device.getId());
+        } catch (DataIntegrityViolationException e) {
+            if (violates(e, UNIQUE_IDENTIFICATION)) {
+                throw new InvalidDuplicatedValuesException(
+                        new String[]{"name", "brand"},
+                        new String[]{device.getName(), device.getBrand()}
+                );
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Checks if a db exception was caused by the violation of a particular constraint
+     * @param e - exception thrown by the repo
+     * @param constraint - name of the constraint
+     * @return true if the constraint was violated
+     */
+    private static boolean violates(DataIntegrityViolationException e, String constraint) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException cve
+                    && constraint.equalsIgnoreCase(cve.getConstraintName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
@@ -0,0 +1,2 @@
+-- supports the keyset pagination on (creation_time, id)
+CREATE INDEX idx_device_creation_time_id ON devices(creation_time, id);
@@ -0,0 +1,4 @@
+-- trigram index to serve the substring (like '%x%') and similarity searches on the device name
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_device_name_trgm ON devices USING gin (lower(name) gin_trgm_ops);
@@ -0,0 +1,14 @@
+-- indexes matching the optional filters of DevicesRepository.byFilters, and its creation_time sort
+-- name  : lower(name) like '%x%'           -> idx_device_name_trgm (V5)
+-- brand : lower(brand) like 'x%'           -> expression index, pattern ops (prefix like on any collation)
+-- state : state = x  (+ sort)              -> composite (state, creation_time)
+-- range : creation_time between x and y    -> idx_device_creation_time_id (V4) and brin
+-- sort  : creation_time, id                -> idx_device_creation_time_id (V4)
+
+CREATE INDEX idx_device_brand_lower ON devices (lower(brand) text_pattern_ops, creation_time);
+
+CREATE INDEX idx_device_state_creation_time ON devices (state, creation_time);
+DROP INDEX idx_device_state;
+
+-- devices are appended in creation order, so a tiny brin index covers wide range scans
+CREATE INDEX idx_device_creation_time_brin ON devices USING brin (creation_time);
@@ -0,0 +1,2 @@
+-- the device identification (name, brand) is unique, enforced by the db instead of pre-check queries
+ALTER TABLE devices ADD CONSTRAINT uq_device_name_brand UNIQUE (name, brand);
@@ -0,0 +1,2 @@
+-- optimistic locking version, exposed to the clients as the device ETag
+ALTER TABLE devices ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
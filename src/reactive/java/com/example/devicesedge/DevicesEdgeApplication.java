@@ -0,0 +1,24 @@
+package com.example.devicesedge;
+
+import com.example.devicesapi.security.ApiKeyProperties;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+
+/**
+ * Reactive (WebFlux + R2DBC) read only node of the devices API
+ * - serves the GET endpoints of /api/devices without blocking threads,
+ *   for many concurrent (and slow) clients per node
+ * - reads the same db and shares the redis devices cache with the servlet nodes
+ * - built with the reactive maven profile: mvn -Preactive package
+ */
+@SpringBootApplication
+@EnableConfigurationProperties(ApiKeyProperties.class)
+public class DevicesEdgeApplication {
+
+    public static void main(String[] args) {
+        SpringApplication app = new SpringApplication(DevicesEdgeApplication.class);
+        app.setAdditionalProfiles("reactive");
+        app.run(args);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.devicesedge;
+
+import com.example.devicesapi.cache.DeviceResponseSerializer;
+import com.example.devicesapi.config.RedisConfig;
+import com.example.devicesapi.dtos.DeviceResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Non blocking lookups of the devices cache shared with the servlet nodes
+ * - same keys (namespace + cache name + id) and binary values of RedisConfig
+ * - misses are loaded and stored with the devices cache ttl, unless another node stored it meanwhile
+ * - read only otherwise: updates (and their evictions) are done by the servlet nodes
+ * - redis failures are served as misses, as the servlet nodes do
+ */
+@Slf4j
+@Component
+public class EdgeDevicesCache {
+
+    static final String KEY_PREFIX = RedisConfig.CACHE_NAMESPACE + RedisConfig.DEVICES_CACHE + "::";
+
+    private final ReactiveRedisTemplate<String, DeviceResponse> redis;
+    private final Duration ttl;
+    private final Counter hits;
+    private final Counter misses;
+
+    public EdgeDevicesCache(ReactiveRedisConnectionFactory connectionFactory,
+                            MeterRegistry registry,
+                            @Value("${cache.devices.ttl:5m}") Duration ttl) {
+        this.redis = new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext
+                .<String, DeviceResponse>newSerializationContext(new StringRedisSerializer())
+                .value(new DeviceResponseSerializer())
+                .build());
+        this.ttl = ttl;
+        this.hits = lookups(registry, "hit");
+        this.misses = lookups(registry, "miss");
+    }
+
+    /**
+     * @param id - id of the device
+     * @param loader - loads the device on a miss
+     * @return the cached device, or the loaded one (then cached)
+     */
+    public Mono<DeviceResponse> get(UUID id, Supplier<Mono<DeviceResponse>> loader) {
+        String key = KEY_PREFIX + id;
+        return redis.opsForValue().get(key)
+                .onErrorResume(e -> {
+                    log.warn("Devices cache unavailable: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .doOnNext(device -> hits.increment())
+                .switchIfEmpty(Mono.defer(() -> {
+                    misses.increment();
+                    return loader.get().flatMap(device -> redis.opsForValue()
+                            .setIfAbsent(key, device, ttl)
+                            .onErrorReturn(false)
+                            .thenReturn(device));
+                }));
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("devices.edge.cache.lookups")
+                .tag("result", result)
+                .description("Device lookups on the shared cache, by outcome")
+                .register(registry);
+    }
+}
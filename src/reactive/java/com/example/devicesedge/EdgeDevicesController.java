@@ -0,0 +1,150 @@
+package com.example.devicesedge;
+
+import com.example.devicesapi.dtos.CursorPageResponse;
+import com.example.devicesapi.dtos.DeviceCursor;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.exceptions.DeviceNotFoundException;
+import com.example.devicesapi.exceptions.InvalidFieldValueException;
+import com.example.devicesapi.exceptions.InvalidNullValueException;
+import com.example.devicesapi.repository.DeviceFilters;
+import com.example.devicesapi.services.DevicesService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Non blocking variant of the GET endpoints of DevicesController
+ * - same paths, parameters, filters and responses
+ * - the export is streamed as NDJSON, written as the rows arrive and as the client reads them
+ */
+@RestController
+@RequestMapping("/api/devices")
+public class EdgeDevicesController {
+
+    private final EdgeDevicesRepository repo;
+    private final EdgeDevicesCache cache;
+
+    public EdgeDevicesController(EdgeDevicesRepository repo, EdgeDevicesCache cache) {
+        this.repo = repo;
+        this.cache = cache;
+    }
+
+    /**
+     * GET {id} - Fetches a single device w/ id, from the shared cache when there
+     * @param id - identifies the device to be fetched
+     * @return DeviceResponse with the fetched device content, with its version as ETag
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<DeviceResponse>> getOne(@PathVariable UUID id) {
+        return cache.get(id, () -> repo.findById(id))
+                .switchIfEmpty(Mono.error(() -> new DeviceNotFoundException(id)))
+                .map(device -> ResponseEntity.ok()
+                        .eTag("\"" + device.version() + "\"")
+                        .body(device));
+    }
+
+    /**
+     * GET ?limit= - Fetches devices with keyset (cursor) pagination, with the listing filters
+     * @param after - optional cursor returned as next by the previous page
+     * @param limit - maximum number of devices on the page
+     * @return page of DeviceResponse with the cursor of the following page
+     */
+    @GetMapping(params = "limit")
+    public Mono<CursorPageResponse<DeviceResponse>> getAllAfter(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) String state,
+            @RequestParam(required = false) String after,
+            @RequestParam(value = "limit") int limit,
+            @RequestParam(required = false) @DateTimeFormat(pattern="yyyy-MM-dd'T'HH-mm-ss") LocalDateTime startDateTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern="yyyy-MM-dd'T'HH-mm-ss") LocalDateTime endDateTime,
+            @RequestParam  (defaultValue = "true") boolean ascending) {
+        if (limit < 1 || limit > DevicesService.MAX_PAGE_LIMIT) {
+            return Mono.error(new InvalidFieldValueException("limit", String.valueOf(limit)));
+        }
+        Optional<DeviceCursor> cursor = Optional.ofNullable(after)
+                .filter(a -> !a.isBlank())
+                .map(DeviceCursor::decode);
+        return repo.findAll(filters(name, brand, state, startDateTime, endDateTime), cursor, ascending, limit + 1)
+                .collectList()
+                .map(devices -> page(devices, limit));
+    }
+
+    /**
+     * GET export - Streams all the devices as NDJSON, with the listing filters
+     * @return devices, one per line, as read from the db
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<DeviceResponse>> export(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) String state,
+            @RequestParam(required = false) @DateTimeFormat(pattern="yyyy-MM-dd'T'HH-mm-ss") LocalDateTime startDateTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern="yyyy-MM-dd'T'HH-mm-ss") LocalDateTime endDateTime,
+            @RequestParam  (defaultValue = "true") boolean ascending) {
+        Flux<DeviceResponse> devices = repo.findAll(
+                filters(name, brand, state, startDateTime, endDateTime), Optional.empty(), ascending, 0);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"devices.ndjson\"")
+                .body(devices);
+    }
+
+    /**
+     * GET search - Fetches the devices with names containing or similar to a term
+     * @param q - text to search on the devices names
+     * @param limit - maximum number of devices to return
+     * @return list of DeviceResponse, the most similar first
+     */
+    @GetMapping("/search")
+    public Flux<DeviceResponse> search(
+            @RequestParam String q,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        if (q.isBlank()) {
+            return Flux.error(new InvalidNullValueException("q"));
+        }
+        if (limit < 1 || limit > DevicesService.MAX_PAGE_LIMIT) {
+            return Flux.error(new InvalidFieldValueException("limit", String.valueOf(limit)));
+        }
+        return repo.searchByName(q.trim(), limit);
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private static DeviceFilters filters(String name, String brand, String state,
+                                         LocalDateTime startDateTime, LocalDateTime endDateTime) {
+        return DeviceFilters.of(
+                Optional.ofNullable(name),
+                Optional.ofNullable(brand),
+                Optional.ofNullable(state),
+                Optional.ofNullable(startDateTime),
+                Optional.ofNullable(endDateTime));
+    }
+
+    /**
+     * @param devices - up to limit + 1 devices, the extra one telling there's a following page
+     * @param limit - maximum number of devices on the page
+     * @return page with the cursor of the last device, when there's a following page
+     */
+    private static CursorPageResponse<DeviceResponse> page(List<DeviceResponse> devices, int limit) {
+        if (devices.size() <= limit) {
+            return new CursorPageResponse<>(devices, null);
+        }
+        List<DeviceResponse> pageList = devices.subList(0, limit);
+        return new CursorPageResponse<>(pageList, DeviceCursor.of(pageList.getLast()).encode());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.devicesedge;
+
+import com.example.devicesapi.dtos.DeviceCursor;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.repository.DeviceFilters;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Non blocking reads of the devices, through R2DBC
+ * - same selection of the servlet nodes (DeviceFilters, keyset order and search ranking)
+ * - rows are fetched in chunks, as the subscribers request them (backpressure)
+ */
+@Repository
+public class EdgeDevicesRepository {
+
+    /**
+     * rows fetched from the db at once
+     */
+    static final int FETCH_SIZE = 500;
+
+    static final String SELECT_SQL = "SELECT id, name, brand, state, creation_time, version FROM devices";
+
+    static final String SEARCH_SQL = SELECT_SQL + """
+             WHERE lower(name) LIKE '%' || lower(:escapedTerm) || '%'
+               OR lower(name) % lower(:term)
+            ORDER BY similarity(lower(name), lower(:term)) DESC, id
+            LIMIT :limit
+            """;
+
+    private final DatabaseClient db;
+
+    public EdgeDevicesRepository(DatabaseClient db) {
+        this.db = db;
+    }
+
+    /**
+     * @param id - id of the device
+     * @return the device, or empty when it doesn't exist
+     */
+    public Mono<DeviceResponse> findById(UUID id) {
+        return db.sql(SELECT_SQL + " WHERE id = :id")
+                .bind("id", id)
+                .map(EdgeDevicesRepository::toDto)
+                .one();
+    }
+
+    /**
+     * devices matching the filters, in keyset order (creationTime, id)
+     * @param filters - selection of the devices
+     * @param after - when present, only the devices placed after this cursor
+     * @param ascending - direction of the creation time order
+     * @param limit - maximum number of devices (0 for all)
+     * @return devices, streamed as requested
+     */
+    public Flux<DeviceResponse> findAll(DeviceFilters filters, Optional<DeviceCursor> after, boolean ascending, int limit) {
+        StringBuilder sql = new StringBuilder(SELECT_SQL).append(" WHERE true");
+        Map<String, Object> params = new LinkedHashMap<>();
+        filters.namePattern().ifPresent(n -> condition(sql, params, " AND lower(name) LIKE :name", "name", n));
+        filters.brandPattern().ifPresent(b -> condition(sql, params, " AND lower(brand) LIKE :brand", "brand", b));
+        filters.state().ifPresent(s -> condition(sql, params, " AND state = :state", "state", s.name()));
+        filters.startDate().ifPresent(d -> condition(sql, params, " AND creation_time >= :startDate", "startDate", d));
+        filters.endDate().ifPresent(d -> condition(sql, params, " AND creation_time <= :endDate", "endDate", d));
+        after.ifPresent(cursor -> {
+            // same keyset condition of DevicesRepository.afterCursor
+            String op = ascending ? ">" : "<";
+            sql.append(" AND creation_time ").append(op).append("= :afterTime")
+                    .append(" AND (creation_time ").append(op).append(" :afterTime OR id ").append(op).append(" :afterId)");
+            params.put("afterTime", toLocal(cursor));
+            params.put("afterId", cursor.id());
+        });
+        String direction = ascending ? "ASC" : "DESC";
+        sql.append(" ORDER BY creation_time ").append(direction).append(", id ").append(direction);
+        if (limit > 0) {
+            condition(sql, params, " LIMIT :limit", "limit", limit);
+        }
+        DatabaseClient.GenericExecuteSpec spec = db.sql(sql.toString())
+                .filter((statement, next) -> next.execute(statement.fetchSize(FETCH_SIZE)));
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            spec = spec.bind(param.getKey(), param.getValue());
+        }
+        return spec.map(EdgeDevicesRepository::toDto).all();
+    }
+
+    /**
+     * searches devices by name, as DevicesRepository.searchByName
+     * @param term - searched text
+     * @param limit - maximum number of devices to return
+     * @return matching devices, most similar first
+     */
+    public Flux<DeviceResponse> searchByName(String term, int limit) {
+        return db.sql(SEARCH_SQL)
+                .bind("term", term)
+                .bind("escapedTerm", likeEscaped(term))
+                .bind("limit", limit)
+                .map(EdgeDevicesRepository::toDto)
+                .all();
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private static void condition(StringBuilder sql, Map<String, Object> params, String clause, String name, Object value) {
+        sql.append(clause);
+        params.put(name, value);
+    }
+
+    /**
+     * escapes the LIKE wildcards of the search term, as DevicesService does
+     */
+    private static String likeEscaped(String text) {
+        return text.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    /**
+     * creation times are stored without time zone, on the zone of the servlet nodes (as JPA does)
+     */
+    private static LocalDateTime toLocal(DeviceCursor cursor) {
+        return cursor.createdAt().atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+
+    static DeviceResponse toDto(Readable row) {
+        return DeviceResponse.builder()
+                .id(row.get("id", UUID.class))
+                .name(row.get("name", String.class))
+                .brand(row.get("brand", String.class))
+                .state(row.get("state", String.class))
+                .createdAt(row.get("creation_time", LocalDateTime.class)
+                        .atZone(ZoneId.systemDefault())
+                        .toOffsetDateTime())
+                .version(row.get("version", Long.class))
+                .build();
+    }
+}
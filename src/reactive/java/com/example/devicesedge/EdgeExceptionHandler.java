@@ -0,0 +1,59 @@
+package com.example.devicesedge;
+
+import com.example.devicesapi.exceptions.ErrorInfo;
+import com.example.devicesapi.exceptions.InvalidFieldValueException;
+import com.example.devicesapi.exceptions.ResourceNotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.time.Instant;
+
+/**
+ * Same ErrorInfo responses of the servlet nodes (GlobalExceptionHandler), for the read errors
+ */
+@RestControllerAdvice
+public class EdgeExceptionHandler {
+
+    /**
+     * handles all exceptions caused by missing or invalid input values
+     * @param ex throwed exception
+     * @param request http request
+     * @return Response w/ ErrorInfo
+     */
+    @ExceptionHandler({InvalidFieldValueException.class, ServerWebInputException.class})
+    public ResponseEntity<ErrorInfo> handleInvalidValues(Exception ex, ServerHttpRequest request) {
+        return getErrorResponse(ex, request, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * handles all exceptions caused by attempts to access non-existent resources
+     * @param ex throwed exception
+     * @param request http request
+     * @return Response w/ ErrorInfo
+     */
+    @ExceptionHandler(ResourceNotFoundException.class)
+    public ResponseEntity<ErrorInfo> handleNotFound(ResourceNotFoundException ex, ServerHttpRequest request) {
+        return getErrorResponse(ex, request, HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * formats an error response
+     * @param ex throwed exception
+     * @param request http request
+     * @param status http status code
+     * @return Response w/ ErrorInfo
+     */
+    private ResponseEntity<ErrorInfo> getErrorResponse(Exception ex, ServerHttpRequest request, HttpStatus status) {
+        ErrorInfo info = new ErrorInfo(ex.getMessage(),
+                status.getReasonPhrase(),
+                status.value(),
+                request.getPath().value(),
+                Instant.now(),
+                null);
+        return new ResponseEntity<>(info, status);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.devicesedge;
+
+import com.example.devicesapi.security.ApiKeyAuthenticationToken;
+import com.example.devicesapi.security.ApiKeyProperties;
+import com.example.devicesapi.security.ApiRateLimiter;
+import com.example.devicesapi.security.ApiTokenService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.authentication.ServerAuthenticationEntryPointFailureHandler;
+import org.springframework.web.server.WebFilter;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Security of the reactive read nodes
+ * - only the access tokens of POST /api/auth/token (issued by the servlet nodes, with the shared signing key):
+ *   the BCrypt check of key and secret would block the event loop
+ * - same per client rate limits of the servlet nodes (each node with its own buckets)
+ */
+@Configuration
+@EnableWebFluxSecurity
+public class EdgeSecurityConfig {
+
+    static final String BEARER = "Bearer ";
+
+    @Bean
+    ApiTokenService apiTokenService(@Value("${spring.security.api-tokens.signing-key:}") String signingKey,
+                                    @Value("${spring.security.api-tokens.ttl:15m}") Duration ttl) {
+        return new ApiTokenService(signingKey, ttl);
+    }
+
+    @Bean
+    ApiRateLimiter apiRateLimiter(ApiKeyProperties props, MeterRegistry registry) {
+        return new ApiRateLimiter(props, registry);
+    }
+
+    @Bean
+    SecurityWebFilterChain apiTokenChain(ServerHttpSecurity http,
+                                         ApiTokenService tokenService,
+                                         ApiRateLimiter rateLimiter) {
+        ReactiveAuthenticationManager tokens = auth -> Mono.fromCallable(
+                () -> tokenService.authenticate((String) auth.getCredentials()));
+        AuthenticationWebFilter tokenFilter = new AuthenticationWebFilter(tokens);
+        tokenFilter.setServerAuthenticationConverter(exchange -> Mono
+                .justOrEmpty(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+                .filter(header -> header.startsWith(BEARER))
+                .map(header -> new PreAuthenticatedAuthenticationToken(null, header.substring(BEARER.length()))));
+        tokenFilter.setAuthenticationFailureHandler(new ServerAuthenticationEntryPointFailureHandler(
+                new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED)));
+
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .addFilterAt(tokenFilter, SecurityWebFiltersOrder.AUTHENTICATION)
+                .addFilterAfter(rateLimit(rateLimiter), SecurityWebFiltersOrder.AUTHENTICATION)
+                .authorizeExchange(auth -> auth
+                        .pathMatchers("/actuator/health/**").permitAll()
+                        .pathMatchers("/api/**").authenticated()
+                        .anyExchange().denyAll())
+                .exceptionHandling(ex -> ex
+                        .authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED)))
+                .build();
+    }
+
+    /**
+     * requests over the client rate limit get a 429, with the seconds to wait on Retry-After
+     */
+    private static WebFilter rateLimit(ApiRateLimiter rateLimiter) {
+        return (exchange, chain) -> ReactiveSecurityContextHolder.getContext()
+                .mapNotNull(context -> context.getAuthentication() instanceof ApiKeyAuthenticationToken client
+                        && client.isAuthenticated() ? client.getKey() : null)
+                .flatMap(key -> Mono.justOrEmpty(rateLimiter.tryAcquire(key)))
+                .flatMap(wait -> {
+                    long seconds = Math.max(1, (wait.toMillis() + 999) / 1000);
+                    exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                    exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+                    return exchange.getResponse().setComplete().thenReturn(true);
+                })
+                .switchIfEmpty(Mono.defer(() -> chain.filter(exchange).thenReturn(true)))
+                .then();
+    }
+}
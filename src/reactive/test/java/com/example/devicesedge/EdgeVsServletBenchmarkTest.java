@@ -0,0 +1,223 @@
+package com.example.devicesedge;
+
+import com.example.devicesapi.DevicesapiApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput of the GET endpoints on the servlet nodes vs the reactive (edge) nodes
+ * - starts both applications against the same postgres and redis containers
+ *   (the servlet one migrates the db and issues the access token used on both)
+ * - for each number of concurrent connections (benchmark.connections, default 1000,5000,10000)
+ *   every connection sends REQUESTS_PER_CONNECTION requests of each endpoint under test
+ * only runs on demand:
+ *   mvn -Preactive test -Dtest=EdgeVsServletBenchmarkTest -Dbenchmark=true [-Dbenchmark.connections=1000,10000]
+ */
+@Testcontainers
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class EdgeVsServletBenchmarkTest {
+
+    static final int[] CONNECTIONS = Arrays.stream(System.getProperty("benchmark.connections", "1000,5000,10000")
+                    .split(","))
+            .mapToInt(c -> Integer.parseInt(c.trim()))
+            .toArray();
+    static final int REQUESTS_PER_CONNECTION = 10;
+    static final List<String> ENDPOINTS = List.of(
+            "/api/devices/search?q=phone&limit=20",
+            "/api/devices?limit=100");
+    static final String API_KEY = "benchmark-key";
+    static final String API_SECRET = "benchmark-secret";
+    static final String SIGNING_KEY = signingKey();
+    static final Pattern ACCESS_TOKEN = Pattern.compile("\"access_?[Tt]oken\"\\s*:\\s*\"([^\"]+)\"");
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database");
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7.4.2"))
+            .withExposedPorts(6379);
+
+    record Result(String endpoint, int connections, double requestsPerSecond, double p99Ms, int errors) {}
+
+    @Test
+    void servletVsReactive() throws Exception {
+        Map<String, List<Result>> results = new LinkedHashMap<>();
+        try (ConfigurableApplicationContext servlet = start(new SpringApplicationBuilder(DevicesapiApplication.class),
+                servletProperties())) {
+            int servletPort = portOf(servlet);
+            String token = token(servletPort);
+            results.put("servlet", run(servletPort, token));
+            try (ConfigurableApplicationContext edge = start(new SpringApplicationBuilder(DevicesEdgeApplication.class)
+                    .profiles("reactive"), edgeProperties())) {
+                results.put("reactive", run(portOf(edge), token));
+            }
+        }
+
+        System.out.println("-".repeat(100));
+        System.out.printf("%-10s %-40s %12s %14s %10s %8s%n", "node", "endpoint", "connections", "requests/s", "p99 ms", "errors");
+        results.forEach((node, byEndpoint) -> byEndpoint.forEach(r ->
+                System.out.printf("%-10s %-40s %12d %14.1f %10.1f %8d%n",
+                        node, r.endpoint(), r.connections(), r.requestsPerSecond(), r.p99Ms(), r.errors())));
+        System.out.println("-".repeat(100));
+
+        assertThat(results.get("reactive")).allSatisfy(r -> assertThat(r.requestsPerSecond()).isPositive());
+    }
+
+    /**
+     * measures each endpoint at each number of connections
+     */
+    static List<Result> run(int port, String token) {
+        List<Result> results = new ArrayList<>();
+        for (String endpoint : ENDPOINTS) {
+            for (int connections : CONNECTIONS) {
+                results.add(load(port, token, endpoint, connections));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * each connection is a virtual thread of the client, sending its requests in sequence
+     */
+    static Result load(int port, String token, String endpoint, int connections) {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + endpoint))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        int total = connections * REQUESTS_PER_CONNECTION;
+        AtomicLongArray latencies = new AtomicLongArray(total);
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < connections; c++) {
+                int first = c * REQUESTS_PER_CONNECTION;
+                clients.submit(() -> {
+                    for (int i = 0; i < REQUESTS_PER_CONNECTION; i++) {
+                        long sent = System.nanoTime();
+                        try {
+                            if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies.set(first + i, System.nanoTime() - sent);
+                    }
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long[] sorted = new long[total];
+        for (int i = 0; i < total; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        return new Result(endpoint, connections, total * 1e9 / elapsed,
+                sorted[(int) (total * 0.99) - 1] / 1e6, errors.get());
+    }
+
+    /**
+     * exchanges the API key and secret for an access token, on the servlet node
+     */
+    static String token(int port) throws Exception {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/token"))
+                        .header("API-Key", API_KEY)
+                        .header("API-Secret", API_SECRET)
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        Matcher matcher = ACCESS_TOKEN.matcher(response.body());
+        assertThat(matcher.find()).isTrue();
+        return matcher.group(1);
+    }
+
+    static ConfigurableApplicationContext start(SpringApplicationBuilder builder, Map<String, Object> properties) {
+        // as command line arguments, so they take precedence over application.yaml
+        return builder.run(properties.entrySet().stream()
+                .map(p -> "--" + p.getKey() + "=" + p.getValue())
+                .toArray(String[]::new));
+    }
+
+    static int portOf(ConfigurableApplicationContext app) {
+        return ((WebServerApplicationContext) app).getWebServer().getPort();
+    }
+
+    static Map<String, Object> servletProperties() {
+        Map<String, Object> props = commonProperties();
+        props.put("spring.datasource.url", postgres.getJdbcUrl());
+        props.put("spring.datasource.username", postgres.getUsername());
+        props.put("spring.datasource.password", postgres.getPassword());
+        props.put("spring.security.user.name", "user");
+        props.put("spring.security.user.password", "xpto123");
+        props.put("spring.security.api-keys.clients[0].key", API_KEY);
+        props.put("spring.security.api-keys.clients[0].secret-hash", new BCryptPasswordEncoder().encode(API_SECRET));
+        props.put("server.tomcat.max-connections", 20000);
+        props.put("server.tomcat.accept-count", 1000);
+        return props;
+    }
+
+    static Map<String, Object> edgeProperties() {
+        Map<String, Object> props = commonProperties();
+        props.put("spring.r2dbc.url", "r2dbc:postgresql://" + postgres.getHost() + ":"
+                + postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + postgres.getDatabaseName());
+        props.put("spring.r2dbc.username", postgres.getUsername());
+        props.put("spring.r2dbc.password", postgres.getPassword());
+        return props;
+    }
+
+    static Map<String, Object> commonProperties() {
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put("server.port", 0);
+        props.put("spring.docker.compose.enabled", false);
+        props.put("spring.data.redis.host", redis.getHost());
+        props.put("spring.data.redis.port", redis.getMappedPort(6379));
+        props.put("spring.security.api-tokens.signing-key", SIGNING_KEY);
+        // no throttling: the limit under test is the server, not the client
+        props.put("spring.security.api-keys.rate-limit.requests-per-second", 0);
+        props.put("logging.level.root", "WARN");
+        return props;
+    }
+
+    static String signingKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return Base64.getEncoder().encodeToString(key);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.devicesapi;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput of the API with platform threads (Tomcat pool) vs virtual threads (virtual profile)
+ * - starts the application on each mode, against the same postgres and redis containers
+ * - for each number of concurrent connections (benchmark.connections, default 1000,5000,10000)
+ *   every connection sends REQUESTS_PER_CONNECTION uncached searches (blocking on jdbc)
+ * only runs on demand:
+ *   mvn test -Dtest=VirtualThreadsBenchmarkTest -Dbenchmark=true [-Dbenchmark.connections=1000,10000]
+ */
+@Testcontainers
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VirtualThreadsBenchmarkTest {
+
+    static final int[] CONNECTIONS = Arrays.stream(System.getProperty("benchmark.connections", "1000,5000,10000")
+                    .split(","))
+            .mapToInt(c -> Integer.parseInt(c.trim()))
+            .toArray();
+    static final int REQUESTS_PER_CONNECTION = 10;
+    static final String API_KEY = "benchmark-key";
+    static final String API_SECRET = "benchmark-secret";
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database");
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7.4.2"))
+            .withExposedPorts(6379);
+
+    record Result(double requestsPerSecond, double p99Ms, int errors) {}
+
+    @Test
+    void platformVsVirtualThreads() {
+        Map<String, List<Result>> results = new LinkedHashMap<>();
+        results.put("platform", run(false));
+        results.put("virtual", run(true));
+
+        System.out.println("-".repeat(80));
+        System.out.printf("%-10s %12s %14s %10s %8s%n", "mode", "connections", "requests/s", "p99 ms", "errors");
+        results.forEach((mode, byConnections) -> {
+            for (int i = 0; i < CONNECTIONS.length; i++) {
+                Result r = byConnections.get(i);
+                System.out.printf("%-10s %12d %14.1f %10.1f %8d%n",
+                        mode, CONNECTIONS[i], r.requestsPerSecond(), r.p99Ms(), r.errors());
+            }
+        });
+        System.out.println("-".repeat(80));
+
+        assertThat(results.get("virtual")).allSatisfy(r -> assertThat(r.requestsPerSecond()).isPositive());
+    }
+
+    /**
+     * starts the application on a mode and measures it at each number of connections
+     */
+    static List<Result> run(boolean virtual) {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(DevicesapiApplication.class);
+        if (virtual) {
+            builder.profiles("virtual");
+        }
+        // as command line arguments, so they take precedence over application.yaml
+        String[] args = properties().entrySet().stream()
+                .map(p -> "--" + p.getKey() + "=" + p.getValue())
+                .toArray(String[]::new);
+        try (ConfigurableApplicationContext app = builder.run(args)) {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            List<Result> results = new ArrayList<>();
+            for (int connections : CONNECTIONS) {
+                results.add(load(port, connections));
+            }
+            return results;
+        }
+    }
+
+    /**
+     * each connection is a virtual thread of the client, sending its requests in sequence
+     */
+    static Result load(int port, int connections) {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + port + "/api/devices/search?q=phone&limit=20"))
+                .header("API-Key", API_KEY)
+                .header("API-Secret", API_SECRET)
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        int total = connections * REQUESTS_PER_CONNECTION;
+        AtomicLongArray latencies = new AtomicLongArray(total);
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < connections; c++) {
+                int first = c * REQUESTS_PER_CONNECTION;
+                clients.submit(() -> {
+                    for (int i = 0; i < REQUESTS_PER_CONNECTION; i++) {
+                        long sent = System.nanoTime();
+                        try {
+                            if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies.set(first + i, System.nanoTime() - sent);
+                    }
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long[] sorted = new long[total];
+        for (int i = 0; i < total; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        return new Result(total * 1e9 / elapsed, sorted[(int) (total * 0.99) - 1] / 1e6, errors.get());
+    }
+
+    static Map<String, Object> properties() {
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put("server.port", 0);
+        props.put("spring.docker.compose.enabled", false);
+        props.put("spring.datasource.url", postgres.getJdbcUrl());
+        props.put("spring.datasource.username", postgres.getUsername());
+        props.put("spring.datasource.password", postgres.getPassword());
+        props.put("spring.data.redis.host", redis.getHost());
+        props.put("spring.data.redis.port", redis.getMappedPort(6379));
+        props.put("spring.security.user.name", "user");
+        props.put("spring.security.user.password", "xpto123");
+        props.put("spring.security.api-keys.clients[0].key", API_KEY);
+        props.put("spring.security.api-keys.clients[0].secret-hash", new BCryptPasswordEncoder().encode(API_SECRET));
+        // no throttling: the limit under test is the server, not the client
+        props.put("spring.security.api-keys.rate-limit.requests-per-second", 0);
+        props.put("server.tomcat.max-connections", 20000);
+        props.put("server.tomcat.accept-count", 1000);
+        props.put("logging.level.root", "WARN");
+        return props;
+    }
+}
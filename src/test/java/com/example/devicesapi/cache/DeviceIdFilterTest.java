@@ -0,0 +1,263 @@
+package com.example.devicesapi.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of the filter of device ids
+ * - sizing and bit positions
+ * - builds and syncs against a devices table and redis
+ * - every id might exist while the filter (or any of its keys) is missing or redis is down,
+ *   also when its bitmap was recreated by a creation after being lost
+ * - only the ids found on the filter count as false positives
+ */
+@Testcontainers
+class DeviceIdFilterTest {
+
+    static final long EXPECTED = 1_000;
+    static final double FPP = 0.01;
+
+    @Container
+    static GenericContainer<?> redisContainer = new GenericContainer<>(DockerImageName.parse("redis:7.4.2"))
+            .withExposedPorts(6379);
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+
+    static LettuceConnectionFactory connectionFactory;
+    static StringRedisTemplate redis;
+    static DriverManagerDataSource dataSource;
+    static JdbcTemplate jdbc;
+
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeAll
+    static void setUp() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redisContainer.getHost(), redisContainer.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redis = new StringRedisTemplate(connectionFactory);
+        dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE devices (id uuid PRIMARY KEY, creation_time timestamp NOT NULL)");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void clean() {
+        jdbc.update("DELETE FROM devices");
+        redis.delete(List.of(DeviceIdFilter.BITS_KEY, DeviceIdFilter.BUILDING_KEY,
+                DeviceIdFilter.META_KEY, DeviceIdFilter.LOCK_KEY));
+    }
+
+    @Test
+    void sizedForTheExpectedIdsAndFalsePositiveRate() {
+        DeviceIdFilter filter = filter(redis);
+        // m = -n ln(p) / ln(2)^2, k = m / n ln(2)
+        assertThat(filter.bits()).isEqualTo(9_586);
+        assertThat(filter.hashes()).isEqualTo(7);
+        for (int i = 0; i < 1_000; i++) {
+            UUID id = UUID.randomUUID();
+            long[] offsets = filter.offsets(id);
+            assertThat(offsets).hasSize(7).isEqualTo(filter.offsets(id));
+            assertThat(offsets).allSatisfy(offset -> assertThat(offset).isBetween(0L, filter.bits() - 1));
+        }
+    }
+
+    @Test
+    void everyIdMightExistUntilBuilt() {
+        DeviceIdFilter filter = filter(redis);
+        assertThat(filter.mightExist(UUID.randomUUID())).isTrue();
+    }
+
+    @Test
+    void syncBuildsTheFilterFromTheDb() {
+        List<UUID> ids = insert(500, Instant.now().minus(Duration.ofHours(1)));
+        DeviceIdFilter filter = filter(redis);
+        filter.sync();
+
+        assertThat(ids).allMatch(filter::mightExist);
+        assertThat(rejectedOf(filter, 1_000)).isGreaterThan(900);
+        assertThat(redis.hasKey(DeviceIdFilter.LOCK_KEY)).isFalse();
+    }
+
+    @Test
+    void syncAddsTheDevicesCreatedSinceThePreviousOne() {
+        insert(10, Instant.now().minus(Duration.ofHours(1)));
+        DeviceIdFilter filter = filter(redis);
+        filter.sync();
+        // created by a write that bypassed the filter
+        List<UUID> created = insert(10, Instant.now());
+        filter.sync();
+
+        assertThat(created).allMatch(filter::mightExist);
+    }
+
+    @Test
+    void createdIdsAreAddedRightAway() {
+        insert(10, Instant.now().minus(Duration.ofHours(1)));
+        DeviceIdFilter filter = filter(redis);
+        filter.sync();
+        List<UUID> created = List.of(UUID.randomUUID(), UUID.randomUUID());
+        filter.addAll(created);
+
+        assertThat(created).allMatch(filter::mightExist);
+    }
+
+    @Test
+    void removedAndAbsentIdsAreRejected() {
+        UUID deleted = insert(1, Instant.now()).getFirst();
+        UUID missing = UUID.randomUUID();
+        DeviceIdFilter filter = filter(redis);
+        filter.sync();
+        filter.removed(deleted);
+        filter.recordAbsent(missing, DeviceIdFilter.Lookup.MAYBE);
+
+        assertThat(filter.mightExist(deleted)).isFalse();
+        assertThat(filter.mightExist(missing)).isFalse();
+    }
+
+    @Test
+    void missingBitsFailOpenUntilRebuilt() {
+        List<UUID> ids = insert(100, Instant.now().minus(Duration.ofHours(1)));
+        DeviceIdFilter filter = filter(redis);
+        filter.sync();
+        // evicted from redis, while the meta data is still there
+        redis.delete(DeviceIdFilter.BITS_KEY);
+
+        assertThat(ids).allMatch(filter::mightExist);
+        assertThat(rejectedOf(filter, 100)).isZero();
+
+        filter.sync();
+        assertThat(ids).allMatch(filter::mightExist);
+        assertThat(rejectedOf(filter, 100)).isGreaterThan(90);
+    }
+
+    @Test
+    void bitmapRecreatedByACreationFailsOpenUntilRebuilt() {
+        List<UUID> ids = insert(100, Instant.now().minus(Duration.ofHours(1)));
+        DeviceIdFilter filter = filter(redis);
+        filter.sync();
+        // evicted from redis, and recreated holding only the id of a new device
+        redis.delete(DeviceIdFilter.BITS_KEY);
+        UUID created = UUID.randomUUID();
+        filter.addAll(List.of(created));
+
+        assertThat(redis.hasKey(DeviceIdFilter.BITS_KEY)).isTrue();
+        assertThat(ids).allMatch(filter::mightExist);
+        assertThat(filter.lookup(created)).isEqualTo(DeviceIdFilter.Lookup.UNFILTERED);
+
+        filter.sync();
+        assertThat(ids).allMatch(id -> filter.lookup(id) == DeviceIdFilter.Lookup.MAYBE);
+        assertThat(rejectedOf(filter, 100)).isGreaterThan(90);
+    }
+
+    @Test
+    void emptyTableBuildsAFilterRejectingEveryId() {
+        DeviceIdFilter filter = filter(redis);
+        filter.sync();
+
+        assertThat(filter.lookup(UUID.randomUUID())).isEqualTo(DeviceIdFilter.Lookup.ABSENT);
+    }
+
+    @Test
+    void onlyIdsFoundOnTheFilterAreFalsePositives() {
+        DeviceIdFilter filter = filter(redis);
+        UUID unfiltered = UUID.randomUUID();
+        filter.recordAbsent(unfiltered, filter.lookup(unfiltered));
+        assertThat(registry.get("devices.ids.false.positives").counter().count()).isZero();
+        assertThat(registry.get("devices.ids.false.positive.rate").gauge().value()).isZero();
+
+        insert(1, Instant.now().minus(Duration.ofHours(1)));
+        filter.sync();
+        // on the filter, but not found on the db
+        UUID deleted = UUID.randomUUID();
+        filter.addAll(List.of(deleted));
+        filter.recordAbsent(deleted, filter.lookup(deleted));
+
+        assertThat(registry.get("devices.ids.false.positives").counter().count()).isEqualTo(1);
+        assertThat(registry.get("devices.ids.false.positive.rate").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void redisErrorsFailOpen() {
+        StringRedisTemplate down = mock(StringRedisTemplate.class);
+        when(down.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+        when(down.opsForValue()).thenThrow(new RedisConnectionFailureException("down"));
+        DeviceIdFilter filter = filter(down);
+
+        filter.sync();
+        filter.addAll(Set.of(UUID.randomUUID()));
+        assertThat(filter.mightExist(UUID.randomUUID())).isTrue();
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private DeviceIdFilter filter(StringRedisTemplate template) {
+        return new DeviceIdFilter(template, dataSource, new DataSourceTransactionManager(dataSource), registry,
+                EXPECTED, FPP, Duration.ofHours(6), 1_000, Duration.ofMinutes(1));
+    }
+
+    private List<UUID> insert(int count, Instant creationTime) {
+        List<UUID> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        jdbc.batchUpdate("INSERT INTO devices (id, creation_time) VALUES (?, ?)", ids, ids.size(),
+                (ps, id) -> {
+                    ps.setObject(1, id);
+                    ps.setTimestamp(2, Timestamp.from(creationTime));
+                });
+        return ids;
+    }
+
+    /**
+     * @return how many of some random (absent) ids the filter rejects
+     */
+    private long rejectedOf(DeviceIdFilter filter, int count) {
+        long rejected = 0;
+        for (int i = 0; i < count; i++) {
+            if (!filter.mightExist(UUID.randomUUID())) {
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+}
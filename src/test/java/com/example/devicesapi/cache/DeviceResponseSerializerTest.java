@@ -0,0 +1,138 @@
+package com.example.devicesapi.cache;
+
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compact serializer of the cached devices
+ * - round trips, with and without optional fields
+ * - size and encode / decode time against the JDK and JSON serializers
+ *   (only runs on demand: mvn test -Dtest=DeviceResponseSerializerTest -Dbenchmark=true)
+ */
+class DeviceResponseSerializerTest {
+
+    static final int DEVICES = 1_000;
+    static final int ROUNDS = 200;
+
+    final DeviceResponseSerializer serializer = new DeviceResponseSerializer();
+
+    @Test
+    void roundTripKeepsAllFields() {
+        DeviceResponse device = device(7);
+        assertThat(serializer.deserialize(serializer.serialize(device))).isEqualTo(device);
+    }
+
+    @Test
+    void roundTripKeepsNullFields() {
+        DeviceResponse device = DeviceResponse.builder()
+                .id(UUID.randomUUID())
+                .name("Galaxy S30")
+                .build();
+        assertThat(serializer.deserialize(serializer.serialize(device))).isEqualTo(device);
+    }
+
+    @Test
+    void entriesOfAnotherFormatAreMisses() {
+        byte[] jdk = new JdkSerializationRedisSerializer().serialize(device(1));
+        assertThat(serializer.deserialize(jdk)).isNull();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void compareWithJdkAndJson() {
+        List<DeviceResponse> devices = IntStream.range(0, DEVICES)
+                .mapToObj(DeviceResponseSerializerTest::device)
+                .toList();
+        Map<String, RedisSerializer<Object>> serializers = new LinkedHashMap<>();
+        serializers.put("jdk", new JdkSerializationRedisSerializer());
+        serializers.put("json", GenericJackson2JsonRedisSerializer.builder()
+                .objectMapper(jsonMapper())
+                .defaultTyping(true)
+                .build());
+        serializers.put("compact", erased(serializer));
+
+        System.out.println("-".repeat(80));
+        System.out.printf("%-10s %12s %14s %14s%n", "format", "bytes/entry", "encode ns/op", "decode ns/op");
+        Map<String, Double> sizes = new LinkedHashMap<>();
+        serializers.forEach((format, s) -> {
+            Result result = measure(s, devices);
+            sizes.put(format, result.bytes);
+            System.out.printf("%-10s %12.1f %14.1f %14.1f%n", format, result.bytes, result.encodeNs, result.decodeNs);
+        });
+        System.out.println("-".repeat(80));
+
+        assertThat(sizes.get("compact")).isLessThan(sizes.get("json")).isLessThan(sizes.get("jdk"));
+    }
+
+    record Result(double bytes, double encodeNs, double decodeNs) {}
+
+    /**
+     * encodes and decodes all the devices ROUNDS times (after a warm up round)
+     */
+    static Result measure(RedisSerializer<Object> s, List<DeviceResponse> devices) {
+        byte[][] encoded = new byte[devices.size()][];
+        long size = 0;
+        for (int i = 0; i < devices.size(); i++) {
+            encoded[i] = s.serialize(devices.get(i));
+            size += encoded[i].length;
+            assertThat(s.deserialize(encoded[i])).isEqualTo(devices.get(i));
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < devices.size(); i++) {
+                encoded[i] = s.serialize(devices.get(i));
+            }
+        }
+        long encode = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (byte[] bytes : encoded) {
+                s.deserialize(bytes);
+            }
+        }
+        long decode = System.nanoTime() - start;
+        double ops = (double) ROUNDS * devices.size();
+        return new Result((double) size / devices.size(), encode / ops, decode / ops);
+    }
+
+    static DeviceResponse device(int i) {
+        return DeviceResponse.builder()
+                .id(UUID.randomUUID())
+                .name("Galaxy S" + i)
+                .brand("Samsung")
+                .state(i % 2 == 0 ? "AVAILABLE" : "IN_USE")
+                .createdAt(OffsetDateTime.of(2025, 12, 16, 10, 57, 40, 123_456_000, ZoneOffset.UTC).plusSeconds(i))
+                .version((long) i)
+                .build();
+    }
+
+    /**
+     * same json form of the default cache configuration
+     */
+    static ObjectMapper jsonMapper() {
+        return new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    @SuppressWarnings("unchecked")
+    static RedisSerializer<Object> erased(RedisSerializer<?> s) {
+        return (RedisSerializer<Object>) s;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.devicesapi.cache;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of the tracking of the most accessed devices, against a redis container
+ * - the devices are ranked by their sampled accesses, the hottest first
+ * - the accesses of the current and previous hours are added up
+ * - nothing is counted below the sample rate, nor beyond the tracked devices
+ */
+@Testcontainers
+class HotKeyTrackerTest {
+
+    @Container
+    static GenericContainer<?> redisContainer = new GenericContainer<>(DockerImageName.parse("redis:7.4.2"))
+            .withExposedPorts(6379);
+
+    static LettuceConnectionFactory connectionFactory;
+    static StringRedisTemplate redis;
+
+    final UUID first = UUID.randomUUID();
+    final UUID second = UUID.randomUUID();
+    final UUID third = UUID.randomUUID();
+
+    @BeforeAll
+    static void setUp() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redisContainer.getHost(), redisContainer.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redis = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void clean() {
+        redis.delete(redis.keys(HotKeyTracker.HOT_KEY_PREFIX + "*"));
+    }
+
+    @Test
+    void hottestDevicesComeFirst() {
+        HotKeyTracker tracker = new HotKeyTracker(redis, 1.0, 100);
+        record(tracker, third, 1);
+        record(tracker, first, 5);
+        record(tracker, second, 3);
+        tracker.flush();
+
+        assertThat(tracker.hottest(10)).containsExactly(first, second, third);
+        assertThat(tracker.hottest(2)).containsExactly(first, second);
+        assertThat(redis.getExpire(bucket(0))).isPositive();
+    }
+
+    @Test
+    void flushesAddUp() {
+        HotKeyTracker tracker = new HotKeyTracker(redis, 1.0, 100);
+        record(tracker, first, 2);
+        record(tracker, second, 3);
+        tracker.flush();
+        record(tracker, first, 2);
+        tracker.flush();
+
+        assertThat(tracker.hottest(10)).containsExactly(first, second);
+    }
+
+    @Test
+    void previousHourCountsAreAdded() {
+        HotKeyTracker tracker = new HotKeyTracker(redis, 1.0, 100);
+        record(tracker, first, 3);
+        record(tracker, second, 2);
+        tracker.flush();
+        // hot on the previous hour only, or on both
+        redis.opsForZSet().incrementScore(bucket(1), third.toString(), 4);
+        redis.opsForZSet().incrementScore(bucket(1), second.toString(), 3);
+
+        assertThat(tracker.hottest(10)).containsExactly(second, third, first);
+    }
+
+    @Test
+    void nothingIsCountedWithoutSampling() {
+        HotKeyTracker tracker = new HotKeyTracker(redis, 0.0, 100);
+        record(tracker, first, 100);
+        tracker.flush();
+
+        assertThat(tracker.hottest(10)).isEmpty();
+    }
+
+    @Test
+    void untrackedDevicesWaitForTheNextFlush() {
+        HotKeyTracker tracker = new HotKeyTracker(redis, 1.0, 2);
+        record(tracker, first, 1);
+        record(tracker, second, 1);
+        record(tracker, third, 5);
+        tracker.flush();
+        assertThat(tracker.hottest(10)).containsExactlyInAnyOrder(first, second);
+
+        record(tracker, third, 5);
+        tracker.flush();
+        assertThat(tracker.hottest(10)).first().isEqualTo(third);
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private static void record(HotKeyTracker tracker, UUID id, int accesses) {
+        for (int i = 0; i < accesses; i++) {
+            tracker.record(id);
+        }
+    }
+
+    /**
+     * @param hoursAgo - 0 for the current hour
+     * @return key of the sorted set of an hour
+     */
+    private static String bucket(int hoursAgo) {
+        return HotKeyTracker.HOT_KEY_PREFIX + (Instant.now().getEpochSecond() / 3600 - hoursAgo);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.devicesapi.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of the near cache, in front of a mocked redis cache
+ * - L1 serves the entries read once from L2; L2 misses are not kept
+ * - invalidations of the other nodes drop the L1 entries, the ones of this node are ignored
+ * - an invalidation arriving while L2 is read keeps the value read out of L1
+ */
+class NearCacheTest {
+
+    static final String CACHE = "devices";
+
+    private RedisCache remote;
+    private StringRedisTemplate redis;
+    private NearCacheManager manager;
+    private Cache cache;
+
+    @BeforeEach
+    void setUp() {
+        remote = mock(RedisCache.class);
+        when(remote.getName()).thenReturn(CACHE);
+        when(remote.getCacheConfiguration()).thenReturn(RedisCacheConfiguration.defaultCacheConfig());
+        RedisCacheManager redisCacheManager = mock(RedisCacheManager.class);
+        when(redisCacheManager.getCache(CACHE)).thenReturn(remote);
+        redis = mock(StringRedisTemplate.class);
+        manager = new NearCacheManager(redisCacheManager, redis, new SimpleMeterRegistry(),
+                Set.of(CACHE), 100, Duration.ofMinutes(1), 1.0);
+        cache = manager.getCache(CACHE);
+    }
+
+    @Test
+    void l1ServesTheEntriesReadFromL2() {
+        when(remote.get("k")).thenReturn(new SimpleValueWrapper("v1"));
+
+        assertThat(cache.get("k", String.class)).isEqualTo("v1");
+        assertThat(cache.get("k", String.class)).isEqualTo("v1");
+
+        verify(remote, times(1)).get("k");
+    }
+
+    @Test
+    void l2MissesAreNotKept() {
+        assertThat(cache.get("k")).isNull();
+        assertThat(cache.get("k")).isNull();
+
+        verify(remote, times(2)).get("k");
+    }
+
+    @Test
+    void invalidationsOfOtherNodesDropTheL1Entries() {
+        when(remote.get("k")).thenReturn(new SimpleValueWrapper("v1"), new SimpleValueWrapper("v2"));
+        when(remote.get("j")).thenReturn(new SimpleValueWrapper("w1"), new SimpleValueWrapper("w2"));
+        cache.get("k");
+        cache.get("j");
+
+        manager.onMessage(message("other-node|" + CACHE + "|k"), null);
+        assertThat(cache.get("k", String.class)).isEqualTo("v2");
+        assertThat(cache.get("j", String.class)).isEqualTo("w1");
+
+        manager.onMessage(message("other-node|" + CACHE + "|" + NearCacheManager.ALL_KEYS), null);
+        assertThat(cache.get("j", String.class)).isEqualTo("w2");
+    }
+
+    @Test
+    void invalidationsOfThisNodeAreIgnored() {
+        cache.put("k", "v1");
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(redis).convertAndSend(eq(NearCacheManager.INVALIDATION_TOPIC), published.capture());
+
+        manager.onMessage(message(published.getValue()), null);
+
+        assertThat(cache.get("k", String.class)).isEqualTo("v1");
+        verify(remote, never()).get("k");
+    }
+
+    @Test
+    void invalidationDuringTheL2ReadIsNotUndone() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+        when(remote.get("k")).thenAnswer(invocation -> {
+            if (reads.incrementAndGet() > 1) {
+                return new SimpleValueWrapper("new");
+            }
+            reading.countDown();
+            invalidated.await(5, TimeUnit.SECONDS);
+            return new SimpleValueWrapper("old");
+        });
+
+        CompletableFuture<Object> staleRead = CompletableFuture.supplyAsync(() -> cache.get("k", String.class));
+        assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+        manager.onMessage(message("other-node|" + CACHE + "|k"), null);
+        invalidated.countDown();
+
+        assertThat(staleRead.get(5, TimeUnit.SECONDS)).isEqualTo("old");
+        assertThat(cache.get("k", String.class)).isEqualTo("new");
+        assertThat(reads).hasValue(2);
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(
+                NearCacheManager.INVALIDATION_TOPIC.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
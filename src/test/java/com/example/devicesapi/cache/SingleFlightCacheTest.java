@@ -0,0 +1,221 @@
+package com.example.devicesapi.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Load test of the coalesced cache loads
+ * - many concurrent callers per key, on a cold cache
+ * - the loader (standing for the db) must run once per key
+ * - the refreshes run on the caller drawing them (a failed one keeps the cached value),
+ *   must not overwrite an entry evicted or rewritten meanwhile,
+ *   and the loads must not broadcast near cache invalidations
+ */
+class SingleFlightCacheTest {
+
+    static final int KEYS = 20;
+    static final int CALLERS_PER_KEY = 50;
+
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final ExecutorService callers = Executors.newFixedThreadPool(KEYS * CALLERS_PER_KEY);
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void loadsOncePerKeyUnderConcurrency() throws Exception {
+        SingleFlightCache cache = cache(0);
+        Map<String, AtomicInteger> dbCalls = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int caller = 0; caller < KEYS * CALLERS_PER_KEY; caller++) {
+            String key = "device-" + (caller % KEYS);
+            results.add(callers.submit(() -> {
+                start.await();
+                return cache.get(key, () -> {
+                    dbCalls.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                    Thread.sleep(100);
+                    return "value of " + key;
+                });
+            }));
+        }
+        start.countDown();
+        for (int caller = 0; caller < results.size(); caller++) {
+            assertThat(results.get(caller).get(10, TimeUnit.SECONDS)).isEqualTo("value of device-" + (caller % KEYS));
+        }
+
+        System.out.printf("%d callers over %d keys : db calls per key %s%n",
+                KEYS * CALLERS_PER_KEY, KEYS, dbCalls.values());
+        assertThat(dbCalls).hasSize(KEYS);
+        assertThat(dbCalls.values()).allSatisfy(calls -> assertThat(calls.get()).isEqualTo(1));
+        assertThat(registry.get("cache.loads.coalesced").counter().count()).isGreaterThan(0);
+    }
+
+    @Test
+    void loaderFailureReachesAllWaiters() throws Exception {
+        SingleFlightCache cache = cache(0);
+        AtomicInteger dbCalls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> results = new ArrayList<>();
+        for (int caller = 0; caller < CALLERS_PER_KEY; caller++) {
+            results.add(callers.submit(() -> {
+                start.await();
+                return cache.get("missing", () -> {
+                    dbCalls.incrementAndGet();
+                    Thread.sleep(100);
+                    throw new IllegalStateException("not found");
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<Object> result : results) {
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(Cache.ValueRetrievalException.class)
+                    .hasRootCauseMessage("not found");
+        }
+        assertThat(dbCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void hotEntriesAreRefreshedBeforeExpiring() {
+        SingleFlightCache cache = cache(Double.MAX_VALUE);
+        AtomicInteger dbCalls = new AtomicInteger();
+        for (int call = 0; call < 3; call++) {
+            cache.get("device", () -> "version " + dbCalls.incrementAndGet());
+        }
+        assertThat(dbCalls.get()).isGreaterThan(1);
+        assertThat(registry.get("cache.loads.early.refresh").counter().count()).isGreaterThan(0);
+    }
+
+    @Test
+    void refreshIsDroppedWhenEvictedMeanwhile() {
+        SingleFlightCache cache = cache(Double.MAX_VALUE);
+        cache.get("device", () -> "version 1");
+        cache.get("device", () -> {
+            cache.evict("device");
+            return "version 2";
+        });
+        assertThat(cache.get("device")).isNull();
+    }
+
+    @Test
+    void refreshIsDroppedWhenRewrittenMeanwhile() {
+        SingleFlightCache cache = cache(Double.MAX_VALUE);
+        cache.get("device", () -> "version 1");
+        cache.get("device", () -> {
+            cache.put("device", "updated");
+            return "version 1 refreshed";
+        });
+        assertThat(cache.get("device", String.class)).isEqualTo("updated");
+    }
+
+    @Test
+    void evictDuringARefreshIsNotOverwritten() throws Exception {
+        SingleFlightCache cache = cache(Double.MAX_VALUE);
+        cache.get("device", () -> "version 1");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch evicted = new CountDownLatch(1);
+        Future<String> refresh = callers.submit(() -> cache.get("device", () -> {
+            loading.countDown();
+            evicted.await(5, TimeUnit.SECONDS);
+            return "version 2";
+        }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(cache.get("device", () -> "not loaded")).isEqualTo("version 1");
+
+        cache.evict("device");
+        evicted.countDown();
+
+        assertThat(refresh.get(5, TimeUnit.SECONDS)).isEqualTo("version 2");
+        assertThat(cache.get("device")).isNull();
+    }
+
+    @Test
+    void evictDuringAMissIsNotOverwritten() {
+        SingleFlightCache cache = cache(0);
+        assertThat(cache.get("device", () -> {
+            cache.evict("device");
+            return "version 1";
+        })).isEqualTo("version 1");
+        assertThat(cache.get("device")).isNull();
+    }
+
+    @Test
+    void refreshRunsOnTheCallerThread() {
+        SingleFlightCache cache = cache(Double.MAX_VALUE);
+        cache.get("device", () -> "version 1");
+        AtomicReference<Thread> loader = new AtomicReference<>();
+        cache.get("device", () -> {
+            loader.set(Thread.currentThread());
+            return "version 2";
+        });
+        assertThat(loader).hasValue(Thread.currentThread());
+        assertThat(cache.get("device", String.class)).isEqualTo("version 2");
+    }
+
+    @Test
+    void failedRefreshKeepsTheCachedValue() {
+        SingleFlightCache cache = cache(Double.MAX_VALUE);
+        cache.get("device", () -> "version 1");
+        Object value = cache.get("device", () -> {
+            throw new IllegalStateException("db down");
+        });
+        assertThat(value).isEqualTo("version 1");
+        assertThat(cache.get("device", String.class)).isEqualTo("version 1");
+    }
+
+    @Test
+    void loadsFillTheNearCacheWithoutInvalidations() {
+        NearCacheManager owner = mock(NearCacheManager.class);
+        SingleFlightCache cache = new SingleFlightCache(
+                new NearCache(new ConcurrentMapCache("devices"), owner, 1000, Duration.ofMinutes(1), registry),
+                (key, value) -> Duration.ofMinutes(5),
+                Double.MAX_VALUE,
+                1000,
+                registry);
+        cache.get("device", () -> "version 1");
+        cache.get("device", () -> "version 1 refreshed");
+        verify(owner, never()).publish(anyString(), anyList());
+
+        cache.put("device", "updated");
+        verify(owner).publish("devices", List.of("device"));
+    }
+
+    /**
+     * @param beta - early refresh eagerness (0 never refreshes, MAX_VALUE refreshes on every hit)
+     */
+    SingleFlightCache cache(double beta) {
+        return new SingleFlightCache(
+                new ConcurrentMapCache("devices"),
+                (key, value) -> Duration.ofMinutes(5),
+                beta,
+                1000,
+                registry);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.devicesapi.controllers;
+
+import com.example.devicesapi.DevicesapiApplication;
+import com.example.devicesapi.dtos.ApiTokenResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of the exchange of the API key and secret for an access token, against postgres and redis containers
+ * - the key and secret get a bearer token, which authenticates the next requests
+ * - a wrong secret is unauthorized
+ * - a caller authenticated by a token can't exchange it for another one
+ */
+@Testcontainers
+@SpringBootTest(
+        classes = DevicesapiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ApiTokenApiTest {
+
+    static final String API_KEY = "devices-api-key";
+    static final String API_SECRET = "devices-api-secret";
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database");
+
+    @Container
+    @ServiceConnection
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7.4.2"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.security.user.name", () -> "admin");
+        registry.add("spring.security.user.password", () -> "admin-password");
+        registry.add("spring.security.api-keys.clients[0].key", () -> API_KEY);
+        registry.add("spring.security.api-keys.clients[0].secret-hash",
+                () -> new BCryptPasswordEncoder().encode(API_SECRET));
+        registry.add("cache.warmup.enabled", () -> false);
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void keyAndSecretGetATokenAuthenticatingTheNextRequests() {
+        ResponseEntity<ApiTokenResponse> issued = token(secret(API_SECRET));
+        assertThat(issued.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(issued.getBody().tokenType()).isEqualTo("Bearer");
+        assertThat(issued.getBody().expiresIn()).isPositive();
+
+        // authenticated: an unknown device, instead of an unauthorized request
+        assertThat(restTemplate.exchange("/api/devices/" + UUID.randomUUID(), HttpMethod.GET,
+                new HttpEntity<>(bearer(issued.getBody().accessToken())), String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void wrongSecretIsUnauthorized() {
+        assertThat(restTemplate.exchange("/api/auth/token", HttpMethod.POST,
+                new HttpEntity<>(secret(API_SECRET + "x")), String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void tokensCantBeExchangedForAnotherOne() {
+        String token = token(secret(API_SECRET)).getBody().accessToken();
+
+        ResponseEntity<String> exchanged = restTemplate.exchange("/api/auth/token", HttpMethod.POST,
+                new HttpEntity<>(bearer(token)), String.class);
+
+        assertThat(exchanged.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(exchanged.getBody()).doesNotContain(token);
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private ResponseEntity<ApiTokenResponse> token(HttpHeaders credentials) {
+        return restTemplate.exchange("/api/auth/token", HttpMethod.POST,
+                new HttpEntity<>(credentials), ApiTokenResponse.class);
+    }
+
+    private static HttpHeaders secret(String secret) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("API-Key", API_KEY);
+        headers.set("API-Secret", secret);
+        return headers;
+    }
+
+    private static HttpHeaders bearer(String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return headers;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.devicesapi.controllers;
+
+import com.example.devicesapi.DevicesapiApplication;
+import com.example.devicesapi.cache.NearCacheManager;
+import com.example.devicesapi.config.RedisConfig;
+import com.example.devicesapi.dtos.CacheEvictionResponse;
+import com.example.devicesapi.dtos.CacheInfo;
+import com.example.devicesapi.dtos.DeviceResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.cache.Cache;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of the admin API of the caches, against postgres and redis containers
+ * - only the ADMIN (basic auth) user is let in
+ * - unknown caches and entries are 404
+ * - inspecting an entry doesn't count on the cache statistics
+ * - evicting by prefix drops the entries from the near cache too
+ * - an on demand warmup is a conflict while the warmup is disabled
+ */
+@Testcontainers
+@SpringBootTest(
+        classes = DevicesapiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CacheAdminApiTest {
+
+    static final String ADMIN = "admin";
+    static final String ADMIN_PASSWORD = "admin-password";
+    static final String API_KEY = "devices-api-key";
+    static final String API_SECRET = "devices-api-secret";
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database");
+
+    @Container
+    @ServiceConnection
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7.4.2"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.security.user.name", () -> ADMIN);
+        registry.add("spring.security.user.password", () -> ADMIN_PASSWORD);
+        registry.add("spring.security.api-keys.clients[0].key", () -> API_KEY);
+        registry.add("spring.security.api-keys.clients[0].secret-hash",
+                () -> new BCryptPasswordEncoder().encode(API_SECRET));
+        registry.add("cache.warmup.enabled", () -> false);
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private NearCacheManager cacheManager;
+
+    private Cache devices;
+
+    @BeforeEach
+    void setUp() {
+        devices = cacheManager.getCache(RedisConfig.DEVICES_CACHE);
+        devices.clear();
+    }
+
+    @Test
+    void onlyTheAdminIsLetIn() {
+        assertThat(restTemplate.getForEntity("/admin/caches", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(restTemplate.withBasicAuth(ADMIN, "wrong")
+                .getForEntity("/admin/caches", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+
+        HttpHeaders apiClient = new HttpHeaders();
+        apiClient.set("API-Key", API_KEY);
+        apiClient.set("API-Secret", API_SECRET);
+        assertThat(restTemplate.exchange("/admin/caches", HttpMethod.GET, new HttpEntity<>(apiClient), String.class)
+                .getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+
+        ResponseEntity<CacheInfo[]> caches = admin().getForEntity("/admin/caches", CacheInfo[].class);
+        assertThat(caches.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(caches.getBody()).extracting(CacheInfo::name).contains(RedisConfig.DEVICES_CACHE);
+    }
+
+    @Test
+    void unknownCachesAndEntriesAreNotFound() {
+        assertThat(admin().getForEntity("/admin/caches/unknown", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(admin().getForEntity("/admin/caches/unknown/entries", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(admin().exchange("/admin/caches/unknown/entries", HttpMethod.DELETE, null, String.class)
+                .getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(admin().getForEntity("/admin/caches/devices/entries/" + UUID.randomUUID(), String.class)
+                .getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void inspectingAnEntryIsNotALookup() {
+        DeviceResponse device = device();
+        devices.put(device.id(), device);
+        CacheInfo before = admin().getForObject("/admin/caches/devices", CacheInfo.class);
+
+        ResponseEntity<String> entry = admin().getForEntity("/admin/caches/devices/entries/" + device.id(), String.class);
+        assertThat(entry.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(entry.getBody()).contains(device.id().toString(), device.name());
+
+        CacheInfo after = admin().getForObject("/admin/caches/devices", CacheInfo.class);
+        assertThat(after.hits()).isEqualTo(before.hits());
+        assertThat(after.misses()).isEqualTo(before.misses());
+    }
+
+    @Test
+    void prefixEvictionDropsTheNearCacheEntries() {
+        DeviceResponse device = device();
+        devices.put("probe-1", device);
+        devices.put("probe-2", device);
+        devices.put("other-1", device);
+
+        ResponseEntity<CacheEvictionResponse> evicted = admin().exchange(
+                "/admin/caches/devices/entries?prefix=probe-", HttpMethod.DELETE, null, CacheEvictionResponse.class);
+        assertThat(evicted.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(evicted.getBody().entries()).isEqualTo(2);
+
+        // the local (L1) copies would still be served without the invalidation
+        assertThat(devices.get("probe-1")).isNull();
+        assertThat(devices.get("probe-2")).isNull();
+        assertThat(devices.get("other-1", DeviceResponse.class)).isEqualTo(device);
+    }
+
+    @Test
+    void warmupIsAConflictWhileDisabled() {
+        assertThat(admin().postForEntity("/admin/caches/warmup", null, String.class).getStatusCode())
+                .isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private TestRestTemplate admin() {
+        return restTemplate.withBasicAuth(ADMIN, ADMIN_PASSWORD);
+    }
+
+    private static DeviceResponse device() {
+        return DeviceResponse.builder()
+                .id(UUID.randomUUID())
+                .name("Cache Probe")
+                .brand("Admin")
+                .state("AVAILABLE")
+                .createdAt(OffsetDateTime.parse("2025-01-01T00:00:00Z"))
+                .version(0L)
+                .build();
+    }
+}
@@ -1,25 +1,58 @@
 package com.example.devicesapi.controllers;
 
+import com.example.devicesapi.cache.DeviceIdFilter;
+import com.example.devicesapi.cache.DeviceListCacheKeys;
+import com.example.devicesapi.cache.HotKeyTracker;
+import com.example.devicesapi.cache.NearCacheManager;
+import com.example.devicesapi.config.RedisConfig;
 import com.example.devicesapi.dtos.DeviceCreateRequest;
 import com.example.devicesapi.dtos.DeviceResponse;
 import com.example.devicesapi.dtos.DeviceUpdateRequest;
 import com.example.devicesapi.entities.Device;
 import com.example.devicesapi.entities.Device.State;
+import com.example.devicesapi.repository.DevicesBatchRepository;
+import com.example.devicesapi.repository.DevicesRepository;
+import com.example.devicesapi.services.DeviceStateWriteBehind;
+import com.example.devicesapi.services.DevicesBatchService;
+import com.example.devicesapi.services.DevicesExportService;
+import com.example.devicesapi.services.DevicesImportService;
+import com.example.devicesapi.services.DevicesService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.util.ObjectUtils;
 import org.springframework.web.client.RestClient;
+import java.time.Duration;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 class DeviceControllerTest {
@@ -216,6 +249,112 @@ class DeviceControllerTest {
 
 
 
+    /**
+     * versioning of the single device API (ETag, If-None-Match and If-Match)
+     * - the controller runs on a mock mvc, over the service with a mocked repo
+     *   (no running API needed); the device is on version 3
+     */
+    @Nested
+    class Versioning {
+
+        final UUID id = UUID.randomUUID();
+        final DevicesRepository repo = mock(DevicesRepository.class);
+        final AtomicLong version = new AtomicLong(3);
+        final String body = """
+                {"name": "Iphone", "brand": "Apple", "state": "AVAILABLE"}
+                """;
+        MockMvc mvc;
+
+        @BeforeEach
+        void setUp() {
+            NearCacheManager cacheManager = mock(NearCacheManager.class);
+            when(cacheManager.getCache(RedisConfig.DEVICES_CACHE))
+                    .thenReturn(new ConcurrentMapCache(RedisConfig.DEVICES_CACHE));
+            DeviceStateWriteBehind stateWrites = new DeviceStateWriteBehind(repo, mock(DevicesBatchRepository.class),
+                    mock(DeviceListCacheKeys.class), cacheManager, new SimpleMeterRegistry(), false, 1000);
+            DeviceIdFilter idFilter = mock(DeviceIdFilter.class);
+            when(idFilter.lookup(any())).thenReturn(DeviceIdFilter.Lookup.MAYBE);
+            DevicesService svc = new DevicesService(repo, mock(DeviceListCacheKeys.class), idFilter, stateWrites);
+            mvc = MockMvcBuilders
+                    .standaloneSetup(new DevicesController(svc, mock(DevicesBatchService.class),
+                            mock(DevicesExportService.class), mock(DevicesImportService.class), stateWrites,
+                            mock(HotKeyTracker.class), Runnable::run, Duration.ofMinutes(1)))
+                    .setControllerAdvice(new GlobalExceptionHandler())
+                    .build();
+
+            when(repo.findById(id)).thenAnswer(invocation -> Optional.of(Device.builder()
+                    .id(id)
+                    .name("Iphone")
+                    .brand("Apple")
+                    .state(State.AVAILABLE)
+                    .createdAt(OffsetDateTime.parse("2025-01-01T00:00:00Z"))
+                    .version(version.get())
+                    .build()));
+            when(repo.saveAndFlush(any(Device.class))).thenAnswer(invocation -> {
+                Device device = invocation.getArgument(0);
+                device.setVersion(version.incrementAndGet());
+                return device;
+            });
+        }
+
+        @Test
+        void versionIsTheETag() throws Exception {
+            mvc.perform(get(endPoint + "/{id}", id))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+        }
+
+        @Test
+        void matchingIfNoneMatchIsNotModified() throws Exception {
+            mvc.perform(get(endPoint + "/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+            mvc.perform(get(endPoint + "/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+                    .andExpect(status().isOk());
+        }
+
+        @Test
+        void staleIfMatchFails() throws Exception {
+            replace("\"2\"")
+                    .andExpect(status().isPreconditionFailed());
+            verify(repo, never()).saveAndFlush(any());
+        }
+
+        @Test
+        void ifMatchListWithTheCurrentVersionUpdates() throws Exception {
+            replace("\"1\", \"3\"")
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+            replace("*")
+                    .andExpect(status().isOk());
+        }
+
+        @Test
+        void weakIfMatchNeverMatches() throws Exception {
+            replace("W/\"3\"")
+                    .andExpect(status().isPreconditionFailed());
+            replace("W/\"3\", \"2\"")
+                    .andExpect(status().isPreconditionFailed());
+            verify(repo, never()).saveAndFlush(any());
+        }
+
+        @Test
+        void concurrentUpdateConflicts() throws Exception {
+            // another update saved the device between its read and this save
+            when(repo.saveAndFlush(any(Device.class)))
+                    .thenThrow(new ObjectOptimisticLockingFailureException(Device.class, id));
+            replace("\"3\"")
+                    .andExpect(status().isConflict());
+        }
+
+        private ResultActions replace(String ifMatch) throws Exception {
+            return mvc.perform(put(endPoint + "/{id}", id)
+                    .header(HttpHeaders.IF_MATCH, ifMatch)
+                    .contentType(APPLICATION_JSON)
+                    .content(body));
+        }
+    }
+
     //---------------------------------------------------------------------------------------//
     //                                   utility methods                                     //
     //---------------------------------------------------------------------------------------//
@@ -0,0 +1,218 @@
+package com.example.devicesapi.controllers;
+
+import com.example.devicesapi.cache.HotKeyTracker;
+import com.example.devicesapi.config.ExportConfig;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.entities.Device;
+import com.example.devicesapi.repository.DevicesRepository;
+import com.example.devicesapi.services.DeviceStateWriteBehind;
+import com.example.devicesapi.services.DevicesBatchService;
+import com.example.devicesapi.services.DevicesExportService;
+import com.example.devicesapi.services.DevicesImportService;
+import com.example.devicesapi.services.DevicesService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test of the devices export endpoint, against a postgres container
+ * - NDJSON and CSV bodies hold one device per line (csv free text fields quoted when needed)
+ * - the filters of the listing select the exported devices
+ * - a full export executor is a 503
+ */
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import(DevicesExportService.class)
+class DevicesExportApiTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    @Autowired
+    private DevicesExportService exportSvc;
+
+    @Autowired
+    private DevicesRepository repo;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    /**
+     * brand of the devices of a test, so other rows on the table are not exported
+     */
+    private final String brand = "Export" + UUID.randomUUID().toString().substring(0, 8);
+
+    private List<Device> devices;
+
+    @BeforeEach
+    void seed() {
+        devices = List.of(
+                Device.create("Phone 1", brand, Device.State.AVAILABLE),
+                Device.create("Phone, \"Pro\"", brand, Device.State.IN_USE),
+                Device.create("Tablet 1", brand, Device.State.AVAILABLE),
+                Device.create("Phone 1", "Other" + brand, Device.State.AVAILABLE));
+        repo.saveAllAndFlush(devices);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repo.deleteAllById(devices.stream().map(Device::getId).toList());
+    }
+
+    @Test
+    void ndjsonHasADeviceOnEachLine() throws Exception {
+        MvcResult result = export(mvc(Runnable::run), get("/api/devices/export").param("brand", brand));
+
+        assertThat(result.getResponse().getContentType()).startsWith(MediaType.APPLICATION_NDJSON_VALUE);
+        assertThat(result.getResponse().getHeader(HttpHeaders.CONTENT_DISPOSITION)).contains("devices.ndjson");
+        List<DeviceResponse> exported = ndjson(result);
+        assertThat(exported).extracting(DeviceResponse::name)
+                .containsExactlyInAnyOrder("Phone 1", "Phone, \"Pro\"", "Tablet 1");
+        assertThat(exported).extracting(DeviceResponse::brand).containsOnly(brand);
+    }
+
+    @Test
+    void csvHasAHeaderAndQuotedFields() throws Exception {
+        MvcResult result = export(mvc(Runnable::run), get("/api/devices/export")
+                .param("format", "csv")
+                .param("brand", brand));
+
+        assertThat(result.getResponse().getContentType()).startsWith("text/csv");
+        assertThat(result.getResponse().getHeader(HttpHeaders.CONTENT_DISPOSITION)).contains("devices.csv");
+        List<String> lines = result.getResponse().getContentAsString().lines().toList();
+        assertThat(lines).hasSize(4);
+        assertThat(lines.getFirst()).isEqualTo("id,name,brand,state,createdAt");
+        assertThat(lines).anySatisfy(line -> assertThat(line)
+                .startsWith(devices.get(1).getId() + ",\"Phone, \"\"Pro\"\"\"," + brand + ",IN_USE,"));
+        assertThat(lines).anySatisfy(line -> assertThat(line)
+                .startsWith(devices.get(0).getId() + ",Phone 1," + brand + ",AVAILABLE,"));
+    }
+
+    @Test
+    void filtersSelectTheExportedDevices() throws Exception {
+        MvcResult result = export(mvc(Runnable::run), get("/api/devices/export")
+                .param("name", "phone")
+                .param("brand", brand)
+                .param("state", "AVAILABLE"));
+
+        assertThat(ndjson(result)).extracting(DeviceResponse::id).containsExactly(devices.get(0).getId());
+    }
+
+    @Test
+    void fullExecutorIsAServiceUnavailable() throws Exception {
+        Executor full = task -> {
+            throw new TaskRejectedException("full");
+        };
+
+        mvc(full).perform(get("/api/devices/export").param("brand", brand))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void exportExecutorRejectsBeyondItsCapacity() throws Exception {
+        ThreadPoolTaskExecutor executor = new ExportConfig().exportExecutor(1, 0, false);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            running.await();
+
+            assertThatThrownBy(() -> executor.execute(() -> {}))
+                    .isInstanceOf(TaskRejectedException.class);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private MockMvc mvc(Executor exportExecutor) {
+        return MockMvcBuilders
+                .standaloneSetup(new DevicesController(mock(DevicesService.class), mock(DevicesBatchService.class),
+                        exportSvc, mock(DevicesImportService.class), mock(DeviceStateWriteBehind.class),
+                        mock(HotKeyTracker.class), exportExecutor, Duration.ofMinutes(1)))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    /**
+     * runs an export up to the end of its streamed body
+     * @return result with the whole body
+     */
+    private static MvcResult export(MockMvc mvc, MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult started = mvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.CONTENT_DISPOSITION))
+                .andReturn();
+    }
+
+    private List<DeviceResponse> ndjson(MvcResult result) throws Exception {
+        return Arrays.stream(result.getResponse().getContentAsString().split("\n"))
+                .filter(line -> !line.isBlank())
+                .map(line -> {
+                    try {
+                        return mapper.readValue(line, DeviceResponse.class);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(line, e);
+                    }
+                })
+                .toList();
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.devicesapi.dtos;
+
+import com.example.devicesapi.exceptions.InvalidFieldValueException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test of the keyset pagination cursor
+ * - the token decodes to the same (creationTime, id) position
+ * - tokens that are not a cursor are rejected as an invalid after value
+ */
+class DeviceCursorTest {
+
+    @Test
+    void roundTrip() {
+        DeviceCursor cursor = new DeviceCursor(OffsetDateTime.parse("2025-03-01T10:15:30.123456+02:00"), UUID.randomUUID());
+        String token = cursor.encode();
+
+        assertThat(token).doesNotContain("=", "+", "/");
+        assertThat(DeviceCursor.decode(token)).isEqualTo(cursor);
+    }
+
+    @Test
+    void cursorOfTheLastDevice() {
+        DeviceResponse device = DeviceResponse.builder()
+                .id(UUID.randomUUID())
+                .name("Iphone")
+                .brand("Apple")
+                .state("AVAILABLE")
+                .createdAt(OffsetDateTime.parse("2025-01-01T00:00:00Z"))
+                .version(0L)
+                .build();
+
+        assertThat(DeviceCursor.decode(DeviceCursor.of(device).encode()))
+                .isEqualTo(new DeviceCursor(device.createdAt(), device.id()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "not a cursor", "%%%", "MjAyNS0wMS0wMQ"})
+    void invalidTokensAreRejected(String token) {
+        assertThatThrownBy(() -> DeviceCursor.decode(token))
+                .isInstanceOf(InvalidFieldValueException.class);
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        String raw = "2025-01-01T00:00Z|" + UUID.randomUUID().toString().substring(0, 30) + "zzzzzz";
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> DeviceCursor.decode(token))
+                .isInstanceOf(InvalidFieldValueException.class);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.devicesapi.repository;
+
+import com.example.devicesapi.entities.Device;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the statements issued to create devices
+ * - a single create must be a single insert (no select before it)
+ * - multiple creates must be sent as jdbc batches
+ */
+@Testcontainers
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class DeviceInsertStatementsTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    @Autowired
+    private DevicesRepository repo;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    private Statistics stats;
+
+    @BeforeEach
+    void resetStatistics() {
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+    }
+
+    @Test
+    void singleCreateIsOneInsert() {
+        repo.save(Device.create("Statement Counter", "Probe"));
+        repo.flush();
+
+        assertThat(stats.getEntityInsertCount()).isEqualTo(1);
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void multipleCreatesAreBatched() {
+        List<Device> devices = IntStream.range(0, 50)
+                .mapToObj(i -> Device.create("Batched " + i, "Probe"))
+                .toList();
+        repo.saveAll(devices);
+        repo.flush();
+
+        assertThat(stats.getEntityInsertCount()).isEqualTo(50);
+        assertThat(stats.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void loadedDeviceIsNotNew() {
+        Device saved = repo.saveAndFlush(Device.create("Reloaded", "Probe"));
+        assertThat(saved.isNew()).isFalse();
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.devicesapi.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.jpa.repository.Query;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark of the name searches, with and without the trigram index
+ * - seeds a multi-million rows devices table (benchmark.rows, default 2M)
+ * - runs the same set of searches with idx_device_name_trgm dropped and recreated:
+ *   the plain substring filter (LIKE) and the similarity ranked search of DevicesRepository.searchByName
+ *   (LIKE or %, ORDER BY similarity), run with the very SQL of its @Query
+ * only runs on demand:
+ *   mvn test -Dtest=NameSearchBenchmarkTest -Dbenchmark=true [-Dbenchmark.rows=5000000]
+ */
+@Testcontainers
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class NameSearchBenchmarkTest {
+
+    static final int ROWS = Integer.getInteger("benchmark.rows", 2_000_000);
+    static final int ROUNDS = 5;
+    static final List<String> TERMS = List.of("a1b2", "ffe0", "0c3d", "9e7a", "d00d", "beef", "cafe", "5a5a");
+
+    static final int SEARCH_LIMIT = 20;
+
+    static final String SUBSTRING_QUERY =
+            "SELECT id FROM devices WHERE lower(name) LIKE ?";
+
+    static final String RANKED_QUERY = searchByNameQuery();
+
+    /**
+     * binds a search term to a query
+     */
+    @FunctionalInterface
+    interface Search {
+        void bind(PreparedStatement query, String term) throws SQLException;
+    }
+
+    static final Search SUBSTRING = (query, term) -> query.setString(1, "%" + term + "%");
+
+    /**
+     * the escaped term is bound first (LIKE), the term on its other (2) occurrences, the limit last
+     * (the benchmark terms have no wildcards to escape)
+     */
+    static final Search RANKED = (query, term) -> {
+        int parameters = (int) RANKED_QUERY.chars().filter(c -> c == '?').count();
+        for (int i = 1; i < parameters; i++) {
+            query.setString(i, term);
+        }
+        query.setInt(parameters, SEARCH_LIMIT);
+    };
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    /**
+     * benchmark setup:
+     * - applies the application migrations
+     * - seeds the devices table with ROWS random devices
+     */
+    @BeforeAll
+    static void seed() throws SQLException {
+        Flyway.configure()
+                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        try (Connection conn = connect();
+             PreparedStatement insert = conn.prepareStatement("""
+                     INSERT INTO devices(id, name, brand, state, creation_time)
+                     SELECT gen_random_uuid(),
+                            'Model ' || md5(i::text),
+                            'Brand ' || (i % 500),
+                            (ARRAY['AVAILABLE','IN_USE','INACTIVE'])[1 + i % 3],
+                            now() - make_interval(secs => i)
+                     FROM generate_series(1, ?) AS i
+                     """)) {
+            insert.setInt(1, ROWS);
+            insert.executeUpdate();
+            try (Statement st = conn.createStatement()) {
+                st.execute("ANALYZE devices");
+            }
+        }
+    }
+
+    @Test
+    void nameSearchLatency() throws SQLException {
+        try (Connection conn = connect(); Statement st = conn.createStatement()) {
+            double substringIndexed = averageLatencyMs(conn, SUBSTRING_QUERY, SUBSTRING);
+            double rankedIndexed = averageLatencyMs(conn, RANKED_QUERY, RANKED);
+
+            st.execute("DROP INDEX idx_device_name_trgm");
+            st.execute("ANALYZE devices");
+            double substringSequential = averageLatencyMs(conn, SUBSTRING_QUERY, SUBSTRING);
+            double rankedSequential = averageLatencyMs(conn, RANKED_QUERY, RANKED);
+
+            st.execute("CREATE INDEX idx_device_name_trgm ON devices USING gin (lower(name) gin_trgm_ops)");
+            st.execute("ANALYZE devices");
+
+            System.out.println("-".repeat(80));
+            System.out.printf("name searches over %,d devices%n", ROWS);
+            System.out.printf("%-28s %16s %16s %10s%n", "search", "no index ms/q", "trigram ms/q", "speedup");
+            System.out.printf("%-28s %16.2f %16.2f %9.1fx%n", "substring (LIKE)",
+                    substringSequential, substringIndexed, substringSequential / substringIndexed);
+            System.out.printf("%-28s %16.2f %16.2f %9.1fx%n", "ranked (searchByName)",
+                    rankedSequential, rankedIndexed, rankedSequential / rankedIndexed);
+            System.out.println("-".repeat(80));
+
+            assertThat(substringIndexed).isLessThan(substringSequential);
+            assertThat(rankedIndexed).isLessThan(rankedSequential);
+        }
+    }
+
+    /**
+     * runs all the search terms ROUNDS times (after a warm up round)
+     * @param conn - database connection
+     * @param sql - search query
+     * @param search - binds each term to the query
+     * @return average latency of a single search, in milliseconds
+     */
+    double averageLatencyMs(Connection conn, String sql, Search search) throws SQLException {
+        try (PreparedStatement query = conn.prepareStatement(sql)) {
+            runTerms(query, search);
+            long start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                runTerms(query, search);
+            }
+            return (System.nanoTime() - start) / 1e6 / (ROUNDS * TERMS.size());
+        }
+    }
+
+    void runTerms(PreparedStatement query, Search search) throws SQLException {
+        for (String term : TERMS) {
+            search.bind(query, term);
+            try (ResultSet rs = query.executeQuery()) {
+                while (rs.next()) {
+                    rs.getObject(1);
+                }
+            }
+        }
+    }
+
+    /**
+     * SQL of DevicesRepository.searchByName, with its named parameters as jdbc ones
+     */
+    static String searchByNameQuery() {
+        try {
+            return DevicesRepository.class.getMethod("searchByName", String.class, String.class, int.class)
+                    .getAnnotation(Query.class)
+                    .value()
+                    .replace(":escapedTerm", "?")
+                    .replace(":term", "?")
+                    .replace(":limit", "?");
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Connection connect() throws SQLException {
+        return DriverManager.getConnection(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.devicesapi.repository;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static com.example.devicesapi.repository.DevicesRepository.byFilters;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Query plan regression suite for DevicesRepository.byFilters
+ * - seeds the devices table above the seq scan threshold (plan.rows, default 200k)
+ * - runs every combination of the five optional filters, in both sort directions,
+ *   through the repository (byFilters + PageRequest), capturing the SQL hibernate generates
+ * - runs EXPLAIN on the captured SQL, with the same values bound,
+ *   and fails if any plan falls back to a sequential scan of devices
+ */
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(QueryPlanRegressionTest.CaptureStatements.class)
+class QueryPlanRegressionTest {
+
+    static final int ROWS = Integer.getInteger("plan.rows", 200_000);
+
+    /**
+     * page fetched on every combination (its offset and size are both bound as PAGE_SIZE)
+     */
+    static final int PAGE_SIZE = 10;
+
+    static final LocalDateTime NOW = LocalDateTime.now();
+
+    /**
+     * SQL statements prepared by hibernate
+     */
+    static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    static boolean seeded;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class CaptureStatements {
+
+        @Bean
+        HibernatePropertiesCustomizer statementInspector() {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                    (StatementInspector) sql -> {
+                        STATEMENTS.add(sql);
+                        return sql;
+                    });
+        }
+    }
+
+    @Autowired
+    private DevicesRepository repo;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    /**
+     * test battery setup (once, the migrations are applied by the context):
+     * - seeds the devices table with ROWS random devices, one per minute
+     */
+    @BeforeEach
+    void seed() {
+        if (seeded) {
+            return;
+        }
+        jdbc.update("""
+                INSERT INTO devices(id, name, brand, state, creation_time)
+                SELECT gen_random_uuid(),
+                       'Model ' || md5(i::text),
+                       'Brand' || (i % 1000),
+                       (ARRAY['AVAILABLE','IN_USE','INACTIVE'])[1 + i % 3],
+                       ?::timestamp - make_interval(mins => ? - i)
+                FROM generate_series(1, ?) AS i
+                """, Timestamp.valueOf(NOW), ROWS, ROWS);
+        jdbc.execute("ANALYZE devices");
+        seeded = true;
+    }
+
+    /**
+     * all the 32 filter combinations, in both sort directions
+     * @return arguments with the filters bit mask and the sort direction
+     */
+    static Stream<Arguments> filterCombinations() {
+        return Stream.of(true, false)
+                .flatMap(ascending -> Stream.iterate(0, mask -> mask < 32, mask -> mask + 1)
+                        .map(mask -> Arguments.of(mask, ascending)));
+    }
+
+    @ParameterizedTest(name = "filters={0} ascending={1}")
+    @MethodSource("filterCombinations")
+    void noSequentialScan(int mask, boolean ascending) {
+        Optional<String> name = (mask & 1) != 0 ? Optional.of("a1b") : Optional.empty();
+        Optional<String> brand = (mask & 2) != 0 ? Optional.of("brand42") : Optional.empty();
+        Optional<String> state = (mask & 4) != 0 ? Optional.of("IN_USE") : Optional.empty();
+        Optional<LocalDateTime> start = (mask & 8) != 0 ? Optional.of(NOW.minusDays(7)) : Optional.empty();
+        Optional<LocalDateTime> end = (mask & 16) != 0 ? Optional.of(NOW.minusDays(1)) : Optional.empty();
+
+        STATEMENTS.clear();
+        repo.findAll(byFilters(name, brand, state, start, end),
+                PageRequest.of(1, PAGE_SIZE, Sort.by(ascending ? Sort.Direction.ASC : Sort.Direction.DESC, "createdAt")));
+        String sql = STATEMENTS.stream()
+                .filter(statement -> statement.contains(" order by "))
+                .findFirst()
+                .orElseThrow();
+
+        String plan = explain(sql, values(DeviceFilters.of(name, brand, state, start, end), sql));
+        assertThat(plan)
+                .as("plan of %s", sql)
+                .doesNotContain("\"Seq Scan\"");
+    }
+
+    /**
+     * values of the query parameters, in the order byFilters renders its predicates,
+     * followed by the pagination ones
+     * @param filters - filters of the query
+     * @param sql - generated SQL
+     * @return values to bind
+     */
+    static List<Object> values(DeviceFilters filters, String sql) {
+        List<Object> values = new ArrayList<>();
+        filters.namePattern().ifPresent(values::add);
+        filters.brandPattern().ifPresent(values::add);
+        filters.state().ifPresent(s -> values.add(s.name()));
+        filters.startDate().ifPresent(d -> values.add(Timestamp.valueOf(d)));
+        filters.endDate().ifPresent(d -> values.add(Timestamp.valueOf(d)));
+        long parameters = sql.chars().filter(c -> c == '?').count();
+        while (values.size() < parameters) {
+            values.add(PAGE_SIZE);
+        }
+        return values;
+    }
+
+    /**
+     * gets the execution plan of a query
+     * @param sql - query
+     * @param values - values of the query parameters
+     * @return plan, in json format
+     */
+    String explain(String sql, List<Object> values) {
+        return String.join("", jdbc.queryForList("EXPLAIN (FORMAT JSON) " + sql, String.class, values.toArray()));
+    }
+}
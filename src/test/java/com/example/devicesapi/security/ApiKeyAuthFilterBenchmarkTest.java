@@ -0,0 +1,124 @@
+package com.example.devicesapi.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * API key authentication
+ * - cached verifications still reject wrong secrets; clients are bound once (rotations need a restart)
+ * - throughput of the auth filter without and with the verification cache, and with tokens
+ *   (only runs on demand: mvn test -Dtest=ApiKeyAuthFilterBenchmarkTest -Dbenchmark=true)
+ */
+class ApiKeyAuthFilterBenchmarkTest {
+
+    static final String KEY = "devices-api-key";
+    static final String SECRET = "devices-api-secret";
+    static final int REQUESTS = 200;
+
+    static final String SECRET_HASH = new BCryptPasswordEncoder().encode(SECRET);
+    static final ApiTokenService TOKENS = new ApiTokenService("", Duration.ofMinutes(15), Clock.systemUTC());
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void cachedVerificationRejectsOtherSecrets() {
+        var provider = provider(new ApiKeyProperties(List.of(new ApiKeyProperties.Client(KEY, SECRET_HASH, null)), null),
+                Duration.ofMinutes(5));
+        assertThat(provider.authenticate(new ApiKeyAuthenticationToken(KEY, SECRET)).isAuthenticated()).isTrue();
+        assertThat(provider.authenticate(new ApiKeyAuthenticationToken(KEY, SECRET)).isAuthenticated()).isTrue();
+        assertThatThrownBy(() -> provider.authenticate(new ApiKeyAuthenticationToken(KEY, SECRET + "x")))
+                .isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> provider.authenticate(new ApiKeyAuthenticationToken(KEY + "x", SECRET)))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void clientsAreBoundOnce() {
+        var clients = new ArrayList<>(List.of(new ApiKeyProperties.Client(KEY, SECRET_HASH, null)));
+        var provider = provider(new ApiKeyProperties(clients, null), Duration.ofMinutes(5));
+        clients.set(0, new ApiKeyProperties.Client(KEY, new BCryptPasswordEncoder().encode("rotated"), null));
+
+        // rotations only take effect on a restart (a new provider)
+        assertThat(provider.authenticate(new ApiKeyAuthenticationToken(KEY, SECRET)).isAuthenticated()).isTrue();
+        var restarted = provider(new ApiKeyProperties(clients, null), Duration.ofMinutes(5));
+        assertThatThrownBy(() -> restarted.authenticate(new ApiKeyAuthenticationToken(KEY, SECRET)))
+                .isInstanceOf(BadCredentialsException.class);
+        assertThat(restarted.authenticate(new ApiKeyAuthenticationToken(KEY, "rotated")).isAuthenticated()).isTrue();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void filterThroughputWithAndWithoutCache() throws Exception {
+        var props = new ApiKeyProperties(List.of(new ApiKeyProperties.Client(KEY, SECRET_HASH, null)), null);
+        var secret = secret();
+        double uncached = throughput(new ApiKeyAuthFilter(new ProviderManager(provider(props, Duration.ZERO)), TOKENS), secret);
+        double cached = throughput(new ApiKeyAuthFilter(new ProviderManager(provider(props, Duration.ofMinutes(5))), TOKENS), secret);
+        double token = throughput(new ApiKeyAuthFilter(new ProviderManager(provider(props, Duration.ZERO)), TOKENS),
+                bearer(TOKENS.issue(KEY).accessToken()));
+
+        System.out.println("-".repeat(80));
+        System.out.printf("%-10s %14s%n", "auth", "requests/s");
+        System.out.printf("%-10s %14.1f%n", "bcrypt", uncached);
+        System.out.printf("%-10s %14.1f%n", "cached", cached);
+        System.out.printf("%-10s %14.1f%n", "token", token);
+        System.out.println("-".repeat(80));
+
+        assertThat(cached).isGreaterThan(uncached);
+        assertThat(token).isGreaterThan(uncached);
+    }
+
+    /**
+     * runs REQUESTS authenticated requests through the filter (after a warm up one)
+     * @return requests per second
+     */
+    static double throughput(ApiKeyAuthFilter filter, Map<String, String> headers) throws Exception {
+        request(filter, headers);
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            assertThat(request(filter, headers)).isEqualTo(200);
+        }
+        return REQUESTS * 1e9 / (System.nanoTime() - start);
+    }
+
+    static Map<String, String> secret() {
+        return Map.of("API-Key", KEY, "API-Secret", SECRET);
+    }
+
+    static Map<String, String> bearer(String token) {
+        return Map.of("Authorization", "Bearer " + token);
+    }
+
+    static int request(ApiKeyAuthFilter filter, Map<String, String> headers) throws Exception {
+        SecurityContextHolder.clearContext();
+        var request = new MockHttpServletRequest("GET", "/api/devices");
+        headers.forEach(request::addHeader);
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+
+    static ApiKeyAuthenticationProvider provider(ApiKeyProperties props, Duration ttl) {
+        return new ApiKeyAuthenticationProvider(props, new SimpleMeterRegistry(), 1000, ttl);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.devicesapi.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per client token buckets
+ * - the burst is allowed at once, then requests wait for the refill
+ * - each client has its own bucket and limit
+ * - concurrent callers never take more tokens than available
+ */
+class ApiRateLimiterTest {
+
+    static final long SECOND = 1_000_000_000L;
+
+    final AtomicLong now = new AtomicLong(SECOND);
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void burstThenRefill() {
+        var limiter = limiter(new ApiKeyProperties(List.of(), new ApiKeyProperties.RateLimit(10, 5)));
+        IntStream.range(0, 5).forEach(i -> assertThat(limiter.tryAcquire("a")).isEmpty());
+        assertThat(limiter.tryAcquire("a")).contains(Duration.ofMillis(100));
+
+        now.addAndGet(SECOND / 10);
+        assertThat(limiter.tryAcquire("a")).isEmpty();
+        assertThat(limiter.tryAcquire("a")).isPresent();
+        assertThat(registry.get("api.requests.throttled").tag("client", ApiRateLimiter.clientTag("a")).counter().count())
+                .isEqualTo(2);
+        assertThat(registry.find("api.requests.throttled").tag("client", "a").counter()).isNull();
+    }
+
+    @Test
+    void clientsHaveTheirOwnLimits() {
+        var limiter = limiter(new ApiKeyProperties(List.of(
+                new ApiKeyProperties.Client("a", "hash", new ApiKeyProperties.RateLimit(1, 1)),
+                new ApiKeyProperties.Client("b", "hash", null)), null));
+        assertThat(limiter.tryAcquire("a")).isEmpty();
+        assertThat(limiter.tryAcquire("a")).isPresent();
+        IntStream.range(0, 1000).forEach(i -> assertThat(limiter.tryAcquire("b")).isEmpty());
+    }
+
+    @Test
+    void concurrentCallersShareTheBurst() throws Exception {
+        var limiter = limiter(new ApiKeyProperties(List.of(), new ApiKeyProperties.RateLimit(1, 100)));
+        AtomicInteger allowed = new AtomicInteger();
+        try (ExecutorService pool = Executors.newFixedThreadPool(8)) {
+            IntStream.range(0, 1000).forEach(i -> pool.submit(() -> {
+                if (limiter.tryAcquire("a").isEmpty()) {
+                    allowed.incrementAndGet();
+                }
+            }));
+        }
+        assertThat(allowed.get()).isEqualTo(100);
+    }
+
+    ApiRateLimiter limiter(ApiKeyProperties props) {
+        return new ApiRateLimiter(props, registry, now::get);
+    }
+}
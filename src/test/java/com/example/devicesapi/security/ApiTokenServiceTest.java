@@ -0,0 +1,150 @@
+package com.example.devicesapi.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test of the API access tokens
+ * - issued tokens authenticate their client (without a secret), also through the auth filter
+ * - forged, malformed and expired tokens are rejected
+ * - tokens are valid on the nodes sharing the signing key, and only there
+ */
+class ApiTokenServiceTest {
+
+    static final String KEY = "devices-api-key";
+    static final Instant ISSUED = Instant.parse("2026-01-01T00:00:00Z");
+    static final Duration TTL = Duration.ofMinutes(15);
+
+    final String signingKey = signingKey();
+    final ApiTokenService tokens = tokens(signingKey, ISSUED);
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void issuedTokensAuthenticateTheirClient() {
+        var issued = tokens.issue(KEY);
+        assertThat(issued.tokenType()).isEqualTo("Bearer");
+        assertThat(issued.expiresIn()).isEqualTo(TTL.toSeconds());
+
+        var client = tokens.authenticate(issued.accessToken());
+        assertThat(client.getKey()).isEqualTo(KEY);
+        assertThat(client.hasSecret()).isFalse();
+        assertThat(client.isAuthenticated()).isTrue();
+    }
+
+    @Test
+    void filterLetsValidTokensIn() throws Exception {
+        var live = new ApiTokenService(signingKey, TTL, Clock.systemUTC());
+        String token = live.issue(KEY).accessToken();
+        var filter = new ApiKeyAuthFilter(new ProviderManager(new ApiKeyAuthenticationProvider(
+                new ApiKeyProperties(List.of(), null), new SimpleMeterRegistry(), 1000, Duration.ZERO)), live);
+
+        assertThat(request(filter, token)).isEqualTo(200);
+        assertThat(request(filter, resigned(token))).isEqualTo(401);
+    }
+
+    @Test
+    void forgedAndMalformedTokensAreRejected() {
+        String token = tokens.issue(KEY).accessToken();
+        String payload = token.substring(0, token.indexOf('.'));
+        String signature = token.substring(token.indexOf('.') + 1);
+        String otherClient = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("other-key\n" + ISSUED.plus(TTL).getEpochSecond()).getBytes(StandardCharsets.UTF_8));
+
+        for (String invalid : List.of(
+                otherClient + "." + signature,
+                resigned(token),
+                payload,
+                "." + signature,
+                payload + ".not base64!",
+                "")) {
+            assertThatThrownBy(() -> tokens.authenticate(invalid))
+                    .as(invalid)
+                    .isInstanceOf(BadCredentialsException.class)
+                    .hasMessage("Invalid API token");
+        }
+    }
+
+    @Test
+    void tokensExpire() {
+        String token = tokens.issue(KEY).accessToken();
+
+        assertThat(tokens(signingKey, ISSUED.plus(TTL).minusSeconds(1)).authenticate(token).getKey())
+                .isEqualTo(KEY);
+        assertThatThrownBy(() -> tokens(signingKey, ISSUED.plus(TTL)).authenticate(token))
+                .isInstanceOf(BadCredentialsException.class)
+                .hasMessage("Expired API token");
+    }
+
+    @Test
+    void tokensAreOnlyValidWithTheSameSigningKey() {
+        String token = tokens.issue(KEY).accessToken();
+
+        assertThat(tokens(signingKey, ISSUED).authenticate(token).getKey()).isEqualTo(KEY);
+        assertThatThrownBy(() -> tokens(signingKey(), ISSUED).authenticate(token))
+                .isInstanceOf(BadCredentialsException.class);
+        // without a configured key, each node signs with a random one
+        var node = tokens("", ISSUED);
+        String nodeToken = node.issue(KEY).accessToken();
+        assertThat(node.authenticate(nodeToken).getKey()).isEqualTo(KEY);
+        assertThatThrownBy(() -> tokens("", ISSUED).authenticate(nodeToken))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    /**
+     * @return the token with its signature replaced (by an all zeros one)
+     */
+    private static String resigned(String token) {
+        return token.substring(0, token.indexOf('.') + 1)
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(new byte[32]);
+    }
+
+    /**
+     * sends a request with a bearer token through the filter
+     * @return response status
+     */
+    private static int request(ApiKeyAuthFilter filter, String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        var request = new MockHttpServletRequest("GET", "/api/devices");
+        request.addHeader("Authorization", "Bearer " + token);
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+
+    private static ApiTokenService tokens(String signingKey, Instant now) {
+        return new ApiTokenService(signingKey, TTL, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static String signingKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return Base64.getEncoder().encodeToString(key);
+    }
+}
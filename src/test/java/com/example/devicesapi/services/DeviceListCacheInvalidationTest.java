@@ -0,0 +1,146 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.DevicesapiApplication;
+import com.example.devicesapi.cache.DeviceListCacheKeys;
+import com.example.devicesapi.cache.NearCacheManager;
+import com.example.devicesapi.config.RedisConfig;
+import com.example.devicesapi.dtos.CursorPageResponse;
+import com.example.devicesapi.dtos.DeviceCreateRequest;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.dtos.DeviceUpdateRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.cache.Cache;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of the invalidation of the cached device lists, against postgres and redis containers
+ * - a cached page is served until the devices change
+ * - a create, update or delete moves the lists to a new generation, so the pages cached
+ *   before it are no longer reachable (they stay on redis until their ttl) and the next
+ *   read returns the changed devices
+ */
+@Testcontainers
+@SpringBootTest(
+        classes = DevicesapiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class DeviceListCacheInvalidationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database");
+
+    @Container
+    @ServiceConnection
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7.4.2"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.security.user.name", () -> "admin");
+        registry.add("spring.security.user.password", () -> "admin-password");
+        registry.add("spring.security.api-keys.clients[0].key", () -> "devices-api-key");
+        registry.add("spring.security.api-keys.clients[0].secret-hash",
+                () -> new BCryptPasswordEncoder().encode("devices-api-secret"));
+        registry.add("cache.warmup.enabled", () -> false);
+    }
+
+    @Autowired
+    private DevicesService svc;
+
+    @Autowired
+    private DeviceListCacheKeys listKeys;
+
+    @Autowired
+    private NearCacheManager cacheManager;
+
+    /**
+     * brand of the devices of a test, so its pages only hold its own devices
+     */
+    private final String brand = "Lists" + UUID.randomUUID().toString().substring(0, 8);
+
+    private Cache pages;
+    private DeviceResponse device;
+
+    @BeforeEach
+    void setUp() {
+        pages = cacheManager.getCache(RedisConfig.DEVICE_CURSOR_PAGES_CACHE);
+        device = svc.create(new DeviceCreateRequest("Phone 1", brand, "AVAILABLE"));
+    }
+
+    @Test
+    void cachedPageIsServedUntilAChange() {
+        String key = key();
+        CursorPageResponse<DeviceResponse> first = page();
+
+        assertThat(pages.get(key)).isNotNull();
+        assertThat(page()).isEqualTo(first);
+        assertThat(key()).isEqualTo(key);
+    }
+
+    @Test
+    void createHidesTheCachedPages() {
+        assertWriteHidesTheCachedPages(() -> svc.create(new DeviceCreateRequest("Phone 2", brand, "AVAILABLE")), 2);
+    }
+
+    @Test
+    void updateHidesTheCachedPages() {
+        assertWriteHidesTheCachedPages(() -> svc.update(device.id(),
+                new DeviceUpdateRequest("Phone 1", brand, "IN_USE"), Optional.empty()), 1);
+        assertThat(page().content()).extracting(DeviceResponse::state).containsExactly("IN_USE");
+    }
+
+    @Test
+    void deleteHidesTheCachedPages() {
+        assertWriteHidesTheCachedPages(() -> svc.delete(device.id()), 0);
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    /**
+     * caches the page of the test devices, applies a write and checks the page is read again
+     * @param write - change to the devices
+     * @param devices - number of devices on the page after the change
+     */
+    private void assertWriteHidesTheCachedPages(Runnable write, int devices) {
+        String before = key();
+        page();
+        assertThat(pages.get(before)).isNotNull();
+
+        write.run();
+
+        String after = key();
+        assertThat(after).isNotEqualTo(before);
+        assertThat(pages.get(after)).isNull();
+        assertThat(page().content()).hasSize(devices);
+        assertThat(pages.get(after)).isNotNull();
+    }
+
+    private CursorPageResponse<DeviceResponse> page() {
+        return svc.getDevicesAfter(Optional.empty(), Optional.of(brand), Optional.empty(),
+                Optional.empty(), Optional.empty(), Optional.empty(), 10, true);
+    }
+
+    private String key() {
+        return listKeys.key(Optional.empty(), Optional.of(brand), Optional.empty(),
+                Optional.empty(), Optional.empty(), Optional.empty(), 10, true);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.cache.DeviceListCacheKeys;
+import com.example.devicesapi.cache.NearCacheManager;
+import com.example.devicesapi.config.RedisConfig;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.exceptions.DeviceConcurrentUpdateException;
+import com.example.devicesapi.repository.DevicesBatchRepository;
+import com.example.devicesapi.repository.DevicesRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test of the write-behind of the state changes against the other writes of a device
+ * - a state change waits for an ongoing write, and is based on its saved version
+ * - a queued state is written before any other write
+ * - a device whose state is queued on another node (cached ahead of the db) can't be written
+ * the db is mocked: only the queue and the cache are under test
+ */
+class DeviceStateWriteBehindTest {
+
+    final UUID id = UUID.randomUUID();
+    final Cache devicesCache = new ConcurrentMapCache(RedisConfig.DEVICES_CACHE);
+    final DevicesBatchRepository batchRepo = mock(DevicesBatchRepository.class);
+    final ExecutorService callers = Executors.newFixedThreadPool(2);
+    DeviceStateWriteBehind stateWrites;
+
+    @BeforeEach
+    void setUp() {
+        NearCacheManager cacheManager = mock(NearCacheManager.class);
+        when(cacheManager.getCache(RedisConfig.DEVICES_CACHE)).thenReturn(devicesCache);
+        when(batchRepo.applyStates(anyCollection())).thenAnswer(invocation -> ids(invocation.getArgument(0)));
+        stateWrites = new DeviceStateWriteBehind(mock(DevicesRepository.class), batchRepo,
+                mock(DeviceListCacheKeys.class), cacheManager, new SimpleMeterRegistry(), true, 1000);
+        devicesCache.put(id, device("Probe", "AVAILABLE", 1L));
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void stateChangeWaitsForAnOngoingWrite() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch saved = new CountDownLatch(1);
+        Future<DeviceResponse> write = callers.submit(() -> stateWrites.serialized(id, () -> {
+            saving.countDown();
+            await(saved);
+            return device("Renamed", "AVAILABLE", 2L);
+        }));
+        assertThat(saving.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<DeviceResponse> stateChange = callers.submit(() -> stateWrites.updateState(id, "IN_USE", Optional.empty()));
+        Thread.sleep(200);
+        assertThat(stateChange).isNotDone();
+
+        saved.countDown();
+        assertThat(write.get(5, TimeUnit.SECONDS).version()).isEqualTo(2L);
+        DeviceResponse changed = stateChange.get(5, TimeUnit.SECONDS);
+        assertThat(changed.name()).isEqualTo("Renamed");
+        assertThat(changed.state()).isEqualTo("IN_USE");
+        assertThat(changed.version()).isEqualTo(3L);
+        assertThat(devicesCache.get(id, DeviceResponse.class)).isEqualTo(changed);
+    }
+
+    @Test
+    void queuedStateIsWrittenBeforeAnotherWrite() {
+        DeviceResponse changed = stateWrites.updateState(id, "IN_USE", Optional.empty());
+        verify(batchRepo, never()).applyStates(anyCollection());
+
+        stateWrites.serialized(id, () -> {
+            verify(batchRepo).applyStates(List.of(changed));
+            return device("Renamed", "IN_USE", 3L);
+        });
+        stateWrites.flush();
+
+        verify(batchRepo, times(1)).applyStates(anyCollection());
+        assertThat(devicesCache.get(id, DeviceResponse.class).version()).isEqualTo(3L);
+    }
+
+    @Test
+    void deletedDeviceIsEvicted() {
+        stateWrites.serialized(id, () -> null);
+        assertThat(devicesCache.get(id)).isNull();
+    }
+
+    @Test
+    void deviceCachedAheadOfTheDbCantBeWritten() {
+        // a state change queued on another node
+        devicesCache.put(id, device("Probe", "IN_USE", 2L));
+
+        assertThatThrownBy(() -> stateWrites.checkWritten(id, 1L))
+                .isInstanceOf(DeviceConcurrentUpdateException.class);
+        stateWrites.checkWritten(id, 2L);
+    }
+
+    @Test
+    void stateSupersededOnTheDbIsEvicted() {
+        when(batchRepo.applyStates(anyCollection())).thenReturn(Set.of());
+        stateWrites.updateState(id, "IN_USE", Optional.empty());
+        stateWrites.flush();
+
+        ArgumentCaptor<Collection<DeviceResponse>> written = ArgumentCaptor.forClass(Collection.class);
+        verify(batchRepo).applyStates(written.capture());
+        assertThat(written.getValue()).extracting(DeviceResponse::version).containsExactly(2L);
+        assertThat(devicesCache.get(id)).isNull();
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private DeviceResponse device(String name, String state, Long version) {
+        return DeviceResponse.builder()
+                .id(id)
+                .name(name)
+                .brand("Write Behind")
+                .state(state)
+                .createdAt(OffsetDateTime.parse("2025-01-01T00:00:00Z"))
+                .version(version)
+                .build();
+    }
+
+    private static Set<UUID> ids(Collection<DeviceResponse> devices) {
+        return Set.copyOf(devices.stream().map(DeviceResponse::id).toList());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
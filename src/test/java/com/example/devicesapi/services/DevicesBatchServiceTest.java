@@ -0,0 +1,290 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.DevicesapiApplication;
+import com.example.devicesapi.cache.NearCacheManager;
+import com.example.devicesapi.config.RedisConfig;
+import com.example.devicesapi.dtos.DeviceBatchItem;
+import com.example.devicesapi.dtos.DeviceBatchResponse;
+import com.example.devicesapi.dtos.DeviceCreateRequest;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.dtos.DeviceStateTransitionRequest;
+import com.example.devicesapi.dtos.DeviceStateTransitionResponse;
+import com.example.devicesapi.entities.Device;
+import com.example.devicesapi.repository.DevicesBatchRepository;
+import com.example.devicesapi.repository.DevicesRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test of the batch creation of devices, against postgres and redis containers
+ * - a batch with rejected devices is a 207, with the outcome of each device in the request order
+ * - duplicates inside the batch and duplicates of existing devices are 409 items
+ * - a device whose identification is taken meanwhile is skipped by the insert
+ * - the created devices are cached on a single pipeline
+ * - a state transition moves the devices of the ids or of the filters, bumping their version,
+ *   skips the ones already on the new state and evicts the moved ones on a single pipeline
+ */
+@Testcontainers
+@SpringBootTest(
+        classes = DevicesapiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class DevicesBatchServiceTest {
+
+    static final String API_KEY = "devices-api-key";
+    static final String API_SECRET = "devices-api-secret";
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database");
+
+    @Container
+    @ServiceConnection
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7.4.2"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.security.api-keys.clients[0].key", () -> API_KEY);
+        registry.add("spring.security.api-keys.clients[0].secret-hash",
+                () -> new BCryptPasswordEncoder().encode(API_SECRET));
+        registry.add("cache.warmup.enabled", () -> false);
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private NearCacheManager cacheManager;
+
+    @Autowired
+    private DevicesBatchRepository batchRepo;
+
+    @Autowired
+    private DevicesBatchService batchSvc;
+
+    @Autowired
+    private DevicesRepository repo;
+
+    /**
+     * template of the pipelined cache writes
+     */
+    @MockitoSpyBean(name = "redisCacheTemplate")
+    private RedisTemplate<String, Serializable> redisTemplate;
+
+    /**
+     * brand of the devices of a test, so the devices of other tests are not duplicates
+     */
+    private final String brand = "Batch" + UUID.randomUUID().toString().substring(0, 8);
+
+    @Test
+    void allCreatedIsACreated() {
+        ResponseEntity<DeviceBatchResponse> response = createAll(List.of(
+                request("Phone 1"),
+                request("Phone 2")));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(response.getBody().created()).isEqualTo(2);
+        assertThat(response.getBody().failed()).isZero();
+    }
+
+    @Test
+    void partialFailureIsAMultiStatus() {
+        createAll(List.of(request("Existing")));
+
+        ResponseEntity<DeviceBatchResponse> response = createAll(List.of(
+                request("Phone 1"),
+                request("ab"),
+                request("Phone 1"),
+                request("Existing"),
+                request("Phone 2")));
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.MULTI_STATUS);
+        DeviceBatchResponse batch = response.getBody();
+        assertThat(batch.created()).isEqualTo(2);
+        assertThat(batch.failed()).isEqualTo(3);
+        assertThat(batch.items()).extracting(DeviceBatchItem::index).containsExactly(0, 1, 2, 3, 4);
+        assertThat(batch.items()).extracting(DeviceBatchItem::status).containsExactly(
+                HttpStatus.CREATED.value(),
+                HttpStatus.BAD_REQUEST.value(),
+                HttpStatus.CONFLICT.value(),
+                HttpStatus.CONFLICT.value(),
+                HttpStatus.CREATED.value());
+        assertThat(batch.items().get(0).device().name()).isEqualTo("Phone 1");
+        assertThat(batch.items().get(4).device().name()).isEqualTo("Phone 2");
+        assertThat(batch.items().get(1).error()).contains("3-50 characters");
+        assertThat(batch.items().get(2).error()).contains("Phone 1", brand);
+        assertThat(batch.items().get(3).error()).contains("Existing", brand);
+        assertThat(batch.items()).filteredOn(item -> item.status() != HttpStatus.CREATED.value())
+                .allSatisfy(item -> assertThat(item.device()).isNull());
+    }
+
+    @Test
+    void identificationTakenMeanwhileIsSkipped() {
+        DeviceBatchResponse existing = createAll(List.of(request("Taken"))).getBody();
+        UUID takenId = existing.items().getFirst().device().id();
+
+        Device taken = Device.create("Taken", brand, Device.State.AVAILABLE);
+        Device free = Device.create("Free", brand, Device.State.AVAILABLE);
+        Set<UUID> inserted = batchRepo.insertAll(List.of(taken, free));
+
+        assertThat(inserted).containsExactly(free.getId());
+        assertThat(inserted).doesNotContain(takenId, taken.getId());
+    }
+
+    @Test
+    void createdDevicesAreCachedOnASinglePipeline() {
+        clearInvocations(redisTemplate);
+
+        DeviceBatchResponse batch = createAll(List.of(
+                request("Phone 1"),
+                request("Phone 2"),
+                request("Phone 3"))).getBody();
+
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        Cache devices = cacheManager.getCache(RedisConfig.DEVICES_CACHE);
+        assertThat(batch.items()).hasSize(3).allSatisfy(item -> {
+            DeviceResponse created = item.device();
+            DeviceResponse cached = devices.get(created.id(), DeviceResponse.class);
+            assertThat(cached).isNotNull();
+            assertThat(cached.name()).isEqualTo(created.name());
+            assertThat(cached.brand()).isEqualTo(created.brand());
+            assertThat(cached.state()).isEqualTo(created.state());
+            assertThat(cached.version()).isEqualTo(created.version());
+            assertThat(cached.createdAt().toInstant()).isEqualTo(created.createdAt().toInstant());
+        });
+    }
+
+    @Test
+    void transitionOfIdsSkipsTheDevicesAlreadyOnTheState() {
+        List<DeviceResponse> devices = created(createAll(List.of(
+                request("Phone 1"),
+                request("Phone 2"),
+                request("Phone 3", "IN_USE"))).getBody());
+        List<UUID> ids = devices.stream().map(DeviceResponse::id).toList();
+
+        DeviceStateTransitionResponse moved = batchSvc.transitionAll(
+                new DeviceStateTransitionRequest(ids, "IN_USE", null),
+                Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+
+        assertThat(moved.state()).isEqualTo("IN_USE");
+        assertThat(moved.updated()).isEqualTo(2);
+        assertThat(moved.ids()).containsExactlyInAnyOrder(ids.get(0), ids.get(1));
+        assertThat(stored(ids.get(0))).satisfies(device -> {
+            assertThat(device.getState()).isEqualTo(Device.State.IN_USE);
+            assertThat(device.getVersion()).isEqualTo(devices.get(0).version() + 1);
+        });
+        // already IN_USE: not rewritten, so its version doesn't change
+        assertThat(stored(ids.get(2)).getVersion()).isEqualTo(devices.get(2).version());
+    }
+
+    @Test
+    void transitionOfFiltersMovesOnlyTheMatchingDevices() {
+        List<DeviceResponse> devices = created(createAll(List.of(
+                request("Phone 1"),
+                request("Phone 2", "INACTIVE"),
+                request("Tablet 1"))).getBody());
+        DeviceResponse other = created(createAll(List.of(DeviceCreateRequest.builder()
+                .name("Phone 1")
+                .brand("Other" + brand)
+                .state("AVAILABLE")
+                .build())).getBody()).getFirst();
+
+        DeviceStateTransitionResponse moved = batchSvc.transitionAll(
+                new DeviceStateTransitionRequest(null, "IN_USE", "AVAILABLE"),
+                Optional.of("phone"), Optional.of(brand), Optional.empty(), Optional.empty());
+
+        assertThat(moved.ids()).containsExactly(devices.get(0).id());
+        assertThat(stored(devices.get(0).id()).getState()).isEqualTo(Device.State.IN_USE);
+        assertThat(stored(devices.get(0).id()).getVersion()).isEqualTo(devices.get(0).version() + 1);
+        assertThat(stored(devices.get(1).id()).getState()).isEqualTo(Device.State.INACTIVE);
+        assertThat(stored(devices.get(2).id()).getState()).isEqualTo(Device.State.AVAILABLE);
+        assertThat(stored(other.id()).getState()).isEqualTo(Device.State.AVAILABLE);
+    }
+
+    @Test
+    void transitionEvictsTheMovedDevicesOnASinglePipeline() {
+        List<DeviceResponse> devices = created(createAll(List.of(
+                request("Phone 1"),
+                request("Phone 2"),
+                request("Phone 3", "IN_USE"))).getBody());
+        Cache cache = cacheManager.getCache(RedisConfig.DEVICES_CACHE);
+        // also on the near cache (L1)
+        devices.forEach(device -> assertThat(cache.get(device.id(), DeviceResponse.class)).isNotNull());
+        clearInvocations(redisTemplate);
+
+        batchSvc.transitionAll(
+                new DeviceStateTransitionRequest(devices.stream().map(DeviceResponse::id).toList(), "IN_USE", null),
+                Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        assertThat(cache.get(devices.get(0).id())).isNull();
+        assertThat(cache.get(devices.get(1).id())).isNull();
+        // not moved, so still cached
+        assertThat(cache.get(devices.get(2).id(), DeviceResponse.class)).isNotNull();
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private ResponseEntity<DeviceBatchResponse> createAll(List<DeviceCreateRequest> reqs) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("API-Key", API_KEY);
+        headers.set("API-Secret", API_SECRET);
+        return restTemplate.postForEntity("/api/devices/batch", new HttpEntity<>(reqs, headers),
+                DeviceBatchResponse.class);
+    }
+
+    private DeviceCreateRequest request(String name) {
+        return request(name, "AVAILABLE");
+    }
+
+    private DeviceCreateRequest request(String name, String state) {
+        return DeviceCreateRequest.builder()
+                .name(name)
+                .brand(brand)
+                .state(state)
+                .build();
+    }
+
+    private static List<DeviceResponse> created(DeviceBatchResponse batch) {
+        assertThat(batch.failed()).isZero();
+        return batch.items().stream().map(DeviceBatchItem::device).toList();
+    }
+
+    private Device stored(UUID id) {
+        return repo.findById(id).orElseThrow();
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.DevicesapiApplication;
+import com.example.devicesapi.cache.DevicesCacheWriter;
+import com.example.devicesapi.cache.HotKeyTracker;
+import com.example.devicesapi.cache.NearCacheManager;
+import com.example.devicesapi.config.RedisConfig;
+import com.example.devicesapi.dtos.CacheWarmupResponse;
+import com.example.devicesapi.dtos.DeviceCreateRequest;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.repository.DevicesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of the cache warmup, against postgres and redis containers
+ * - the hottest devices are read from the db and cached, the others are not
+ * - a device already cached keeps its entry (it may be newer than the db read)
+ * - the on demand warmup of the admin API reports the devices it cached
+ */
+@Testcontainers
+@SpringBootTest(
+        classes = DevicesapiApplication.class,
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class DevicesCacheWarmupTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database");
+
+    @Container
+    @ServiceConnection
+    static GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:7.4.2"))
+            .withExposedPorts(6379);
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.security.user.name", () -> "admin");
+        registry.add("spring.security.user.password", () -> "admin-password");
+        registry.add("spring.security.api-keys.clients[0].key", () -> "devices-api-key");
+        registry.add("spring.security.api-keys.clients[0].secret-hash",
+                () -> new BCryptPasswordEncoder().encode("devices-api-secret"));
+        // nothing is hot yet on startup, so the startup warmup caches nothing
+        registry.add("cache.warmup.enabled", () -> true);
+    }
+
+    @Autowired
+    private DevicesService svc;
+
+    @Autowired
+    private DevicesRepository repo;
+
+    @Autowired
+    private DevicesCacheWriter cacheWriter;
+
+    @Autowired
+    private NearCacheManager cacheManager;
+
+    @Autowired
+    private RedisCacheManager redisCacheManager;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private CacheAdminService adminSvc;
+
+    /**
+     * brand of the devices of a test
+     */
+    private final String brand = "Warmup" + UUID.randomUUID().toString().substring(0, 8);
+
+    private HotKeyTracker hotKeys;
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate.delete(stringRedisTemplate.keys("devicesapi:devices:hot:*"));
+        hotKeys = new HotKeyTracker(stringRedisTemplate, 1.0, 100);
+    }
+
+    @Test
+    void hottestDevicesAreCached() {
+        DeviceResponse hot = create("Phone 1");
+        DeviceResponse warm = create("Phone 2");
+        DeviceResponse cold = create("Phone 3");
+        devices().evict(hot.id());
+        devices().evict(warm.id());
+        devices().evict(cold.id());
+        record(hot, 3);
+        record(warm, 2);
+        record(cold, 1);
+        hotKeys.flush();
+
+        int cached = new DevicesCacheWarmup(hotKeys, repo, cacheWriter, 2).warmup();
+
+        assertThat(cached).isEqualTo(2);
+        assertThat(stored(hot)).extracting(DeviceResponse::name).isEqualTo("Phone 1");
+        assertThat(stored(warm)).extracting(DeviceResponse::name).isEqualTo("Phone 2");
+        assertThat(stored(cold)).isNull();
+    }
+
+    @Test
+    void cachedDevicesAreKept() {
+        DeviceResponse device = create("Phone 1");
+        // written to the cache after the warmup read the device from the db
+        DeviceResponse newer = DeviceResponse.builder()
+                .id(device.id())
+                .name("Phone 1 renamed")
+                .brand(brand)
+                .state(device.state())
+                .createdAt(device.createdAt())
+                .version(device.version())
+                .build();
+        devices().put(device.id(), newer);
+        record(device, 1);
+        hotKeys.flush();
+
+        new DevicesCacheWarmup(hotKeys, repo, cacheWriter, 10).warmup();
+
+        assertThat(stored(device)).extracting(DeviceResponse::name).isEqualTo("Phone 1 renamed");
+    }
+
+    @Test
+    void onDemandWarmupReportsTheCachedDevices() {
+        DeviceResponse first = create("Phone 1");
+        DeviceResponse second = create("Phone 2");
+        devices().evict(first.id());
+        devices().evict(second.id());
+        // the hot keys are shared on redis, so the tracker of the application ranks them too
+        record(first, 2);
+        record(second, 1);
+        hotKeys.flush();
+
+        assertThat(adminSvc.warmup()).isEqualTo(new CacheWarmupResponse(RedisConfig.DEVICES_CACHE, 2));
+        assertThat(stored(first)).isNotNull();
+        assertThat(stored(second)).isNotNull();
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private DeviceResponse create(String name) {
+        return svc.create(new DeviceCreateRequest(name, brand, "AVAILABLE"));
+    }
+
+    private void record(DeviceResponse device, int accesses) {
+        for (int i = 0; i < accesses; i++) {
+            hotKeys.record(device.id());
+        }
+    }
+
+    private Cache devices() {
+        return cacheManager.getCache(RedisConfig.DEVICES_CACHE);
+    }
+
+    /**
+     * @return the device cached on redis, bypassing the near cache
+     */
+    private DeviceResponse stored(DeviceResponse device) {
+        return redisCacheManager.getCache(RedisConfig.DEVICES_CACHE).get(device.id(), DeviceResponse.class);
+    }
+}
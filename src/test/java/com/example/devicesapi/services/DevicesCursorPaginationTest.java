@@ -0,0 +1,242 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.cache.DeviceIdFilter;
+import com.example.devicesapi.cache.DeviceListCacheKeys;
+import com.example.devicesapi.cache.HotKeyTracker;
+import com.example.devicesapi.controllers.DevicesController;
+import com.example.devicesapi.controllers.GlobalExceptionHandler;
+import com.example.devicesapi.dtos.CursorPageResponse;
+import com.example.devicesapi.dtos.DeviceCursor;
+import com.example.devicesapi.dtos.DeviceResponse;
+import com.example.devicesapi.entities.Device;
+import com.example.devicesapi.repository.DevicesRepository;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Test of the keyset (cursor) pagination of the devices list
+ * - walking the pages in both directions returns every device once, in (creationTime, id) order,
+ *   also when devices share the same creation time
+ * - the last page has no next cursor
+ * - no count query is issued
+ * - an invalid cursor or limit is a 400
+ * the cache collaborators of the service (redis backed) are mocked: only the db is under test
+ */
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({DevicesService.class, DevicesCursorPaginationTest.CaptureStatements.class})
+class DevicesCursorPaginationTest {
+
+    static final OffsetDateTime CREATED_AT = OffsetDateTime.parse("2020-01-01T00:00:00Z");
+
+    /**
+     * SQL statements prepared by hibernate
+     */
+    static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class CaptureStatements {
+
+        @Bean
+        HibernatePropertiesCustomizer statementInspector() {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                    (StatementInspector) sql -> {
+                        STATEMENTS.add(sql);
+                        return sql;
+                    });
+        }
+    }
+
+    @MockitoBean
+    private DeviceListCacheKeys listKeys;
+
+    @MockitoBean
+    private DeviceIdFilter idFilter;
+
+    @MockitoBean
+    private DeviceStateWriteBehind stateWrites;
+
+    @Autowired
+    private DevicesService svc;
+
+    @Autowired
+    private DevicesRepository repo;
+
+    /**
+     * brand of the devices of a test, so other rows on the table don't get in the pages
+     */
+    private final String brand = "Cursor" + UUID.randomUUID().toString().substring(0, 8);
+
+    private List<Device> devices;
+
+    /**
+     * two groups of three devices, each group sharing the same creation time
+     */
+    @BeforeEach
+    void seed() {
+        devices = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            devices.add(Device.builder()
+                    .id(UUID.randomUUID())
+                    .name("Device " + i)
+                    .brand(brand)
+                    .state(Device.State.AVAILABLE)
+                    .createdAt(CREATED_AT.plusMinutes(i / 3))
+                    .version(0L)
+                    .newEntity(true)
+                    .build());
+        }
+        repo.saveAllAndFlush(devices);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repo.deleteAllById(devices.stream().map(Device::getId).toList());
+    }
+
+    @Test
+    void ascendingPagesBreakTiesById() {
+        assertThat(walk(2, true)).containsExactlyElementsOf(expectedOrder(true));
+    }
+
+    @Test
+    void descendingPagesBreakTiesById() {
+        assertThat(walk(2, false)).containsExactlyElementsOf(expectedOrder(false));
+    }
+
+    @Test
+    void lastPageHasNoNextCursor() {
+        CursorPageResponse<DeviceResponse> first = page(Optional.empty(), 3, true);
+        assertThat(first.content()).hasSize(3);
+        assertThat(first.next()).isNotNull();
+
+        // exactly full, so only the extra row fetched tells there's nothing after it
+        CursorPageResponse<DeviceResponse> last = page(Optional.of(first.next()), 3, true);
+        assertThat(last.content()).hasSize(3);
+        assertThat(last.next()).isNull();
+
+        CursorPageResponse<DeviceResponse> all = page(Optional.empty(), 10, true);
+        assertThat(all.content()).hasSize(6);
+        assertThat(all.next()).isNull();
+    }
+
+    @Test
+    void noCountQueryIsIssued() {
+        STATEMENTS.clear();
+        CursorPageResponse<DeviceResponse> first = page(Optional.empty(), 2, true);
+        page(Optional.of(first.next()), 2, true);
+
+        assertThat(STATEMENTS).isNotEmpty();
+        assertThat(STATEMENTS).noneMatch(sql -> sql.toLowerCase().contains("count("));
+    }
+
+    @Test
+    void invalidCursorOrLimitIsABadRequest() throws Exception {
+        MockMvc mvc = MockMvcBuilders
+                .standaloneSetup(new DevicesController(svc, mock(DevicesBatchService.class),
+                        mock(DevicesExportService.class), mock(DevicesImportService.class), stateWrites,
+                        mock(HotKeyTracker.class), Runnable::run, Duration.ofMinutes(1)))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        String valid = DeviceCursor.of(page(Optional.empty(), 1, true).content().getFirst()).encode();
+        String tampered = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                new String(Base64.getUrlDecoder().decode(valid), StandardCharsets.UTF_8)
+                        .replace('|', '#')
+                        .getBytes(StandardCharsets.UTF_8));
+
+        mvc.perform(get("/api/devices").param("limit", "2").param("after", valid))
+                .andExpect(status().isOk());
+        mvc.perform(get("/api/devices").param("limit", "2").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/devices").param("limit", "2").param("after", tampered))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/devices").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/devices").param("limit", String.valueOf(DevicesService.MAX_PAGE_LIMIT + 1)))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/devices").param("limit", "ten"))
+                .andExpect(status().isBadRequest());
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private CursorPageResponse<DeviceResponse> page(Optional<String> after, int limit, boolean ascending) {
+        return svc.getDevicesAfter(Optional.empty(), Optional.of(brand), Optional.empty(),
+                Optional.empty(), Optional.empty(), after, limit, ascending);
+    }
+
+    /**
+     * follows the next cursors up to the last page
+     * @return ids of the devices, in the order they were returned
+     */
+    private List<UUID> walk(int limit, boolean ascending) {
+        List<UUID> ids = new ArrayList<>();
+        Optional<String> after = Optional.empty();
+        do {
+            CursorPageResponse<DeviceResponse> page = page(after, limit, ascending);
+            assertThat(page.content()).hasSizeLessThanOrEqualTo(limit);
+            page.content().forEach(device -> ids.add(device.id()));
+            after = Optional.ofNullable(page.next());
+        } while (after.isPresent());
+        return ids;
+    }
+
+    /**
+     * ids of the seeded devices in (creationTime, id) order
+     * (uuids compared as postgres does, by their unsigned bytes, as their text form)
+     */
+    private List<UUID> expectedOrder(boolean ascending) {
+        Comparator<Device> order = Comparator.comparing(Device::getCreatedAt)
+                .thenComparing(device -> device.getId().toString());
+        return devices.stream()
+                .sorted(ascending ? order : order.reversed())
+                .map(Device::getId)
+                .toList();
+    }
+}
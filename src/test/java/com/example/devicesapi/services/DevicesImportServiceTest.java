@@ -0,0 +1,160 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.cache.DeviceIdFilter;
+import com.example.devicesapi.cache.DeviceListCacheKeys;
+import com.example.devicesapi.dtos.DeviceDataFormat;
+import com.example.devicesapi.dtos.DeviceImportRejection;
+import com.example.devicesapi.dtos.DeviceImportResponse;
+import com.example.devicesapi.repository.DevicesImportRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of the csv import, against a postgres container
+ * - quoted fields keep their commas, escaped quotes and line breaks
+ * - the columns are located by the header, so an export can be imported back
+ * - records with a wrong number of fields, or an unterminated quote, are rejected rows
+ * the cache collaborators of the service (redis backed) are mocked: only the db is under test
+ */
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({DevicesImportService.class, DevicesImportRepository.class, DevicesExportService.class})
+class DevicesImportServiceTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    @MockitoBean
+    private DeviceListCacheKeys listKeys;
+
+    @MockitoBean
+    private DeviceIdFilter idFilter;
+
+    @Autowired
+    private DevicesImportService importSvc;
+
+    @Autowired
+    private DevicesExportService exportSvc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    /**
+     * brand of the devices of a test, so other rows on the table don't get in the way
+     */
+    private final String brand = "Import" + UUID.randomUUID().toString().substring(0, 8);
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM devices WHERE brand = ?", brand);
+    }
+
+    @Test
+    void quotedFieldsKeepSeparatorsQuotesAndLineBreaks() throws Exception {
+        DeviceImportResponse response = importCsv(
+                "name,brand,state\n"
+                + "\"Phone, Pro\"," + brand + ",AVAILABLE\n"
+                + "\"The \"\"Best\"\" Phone\"," + brand + ",IN_USE\r\n"
+                + "\"Phone\nwith two lines\"," + brand + ",INACTIVE\n"
+                + "\n"
+                + "Plain Phone,\"" + brand + "\",AVAILABLE");
+
+        assertThat(response.total()).isEqualTo(4);
+        assertThat(response.imported()).isEqualTo(4);
+        assertThat(response.rejections()).isEmpty();
+        assertThat(stored()).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "Phone, Pro", "AVAILABLE",
+                "The \"Best\" Phone", "IN_USE",
+                "Phone\nwith two lines", "INACTIVE",
+                "Plain Phone", "AVAILABLE"));
+    }
+
+    @Test
+    void exportIsImportedBack() throws Exception {
+        importCsv("name,brand,state\n"
+                + "\"Phone, Pro\"," + brand + ",AVAILABLE\n"
+                + "\"The \"\"Best\"\"\nPhone\"," + brand + ",IN_USE\n");
+        Map<String, String> exported = stored();
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        exportSvc.export(DeviceDataFormat.CSV, Optional.empty(), Optional.of(brand), Optional.empty(),
+                Optional.empty(), Optional.empty(), true, csv);
+        cleanUp();
+
+        DeviceImportResponse response = importCsv(csv.toString(StandardCharsets.UTF_8));
+
+        assertThat(response.imported()).isEqualTo(2);
+        assertThat(response.rejections()).isEmpty();
+        assertThat(stored()).isEqualTo(exported);
+    }
+
+    @Test
+    void malformedRecordsAreRejectedRows() throws Exception {
+        DeviceImportResponse response = importCsv(
+                "name,brand,state\n"
+                + "Phone 1," + brand + ",AVAILABLE\n"
+                + "Phone 2," + brand + "\n"
+                + "Phone 3," + brand + ",AVAILABLE,extra\n"
+                + "Phone 4," + brand + ",AVAILABLE\n"
+                + "\"Phone 5," + brand + ",AVAILABLE\n");
+
+        assertThat(response.total()).isEqualTo(5);
+        assertThat(response.imported()).isEqualTo(2);
+        assertThat(response.rejected()).isEqualTo(3);
+        assertThat(response.rejections()).extracting(DeviceImportRejection::line).containsExactly(2L, 3L, 5L);
+        assertThat(response.rejections()).extracting(DeviceImportRejection::reason).containsExactly(
+                "Malformed csv record: 2 fields, expected 3",
+                "Malformed csv record: 4 fields, expected 3",
+                "Unterminated quoted csv field");
+        assertThat(stored()).containsOnlyKeys("Phone 1", "Phone 4");
+    }
+
+    //---------------------------------------------------------------------------------------//
+    //                              internal utility methods                                 //
+    //---------------------------------------------------------------------------------------//
+
+    private DeviceImportResponse importCsv(String csv) throws Exception {
+        return importSvc.importDevices(DeviceDataFormat.CSV,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return state of the stored devices of the test brand, by name
+     */
+    private Map<String, String> stored() {
+        return jdbc.queryForList("SELECT name, state FROM devices WHERE brand = ?", brand).stream()
+                .collect(Collectors.toMap(
+                        row -> (String) row.get("name"),
+                        row -> (String) row.get("state")));
+    }
+}
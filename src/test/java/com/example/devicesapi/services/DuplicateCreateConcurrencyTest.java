@@ -0,0 +1,109 @@
+package com.example.devicesapi.services;
+
+import com.example.devicesapi.cache.DeviceIdFilter;
+import com.example.devicesapi.cache.DeviceListCacheKeys;
+import com.example.devicesapi.dtos.DeviceCreateRequest;
+import com.example.devicesapi.exceptions.InvalidDuplicatedValuesException;
+import com.example.devicesapi.repository.DevicesRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fires parallel creates of the same device identification (name, brand)
+ * - exactly one must succeed
+ * - all the others must be rejected as duplicates (409)
+ * the cache collaborators of the service (redis backed) are mocked: only the db is under test
+ */
+@Testcontainers
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(DevicesService.class)
+class DuplicateCreateConcurrencyTest {
+
+    static final int THREADS = 16;
+    static final String NAME = "Race Condition";
+    static final String BRAND = "Probe";
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("devices_database")
+            .withUsername("postgres")
+            .withPassword("postgres");
+
+    @MockitoBean
+    private DeviceListCacheKeys listKeys;
+
+    @MockitoBean
+    private DeviceIdFilter idFilter;
+
+    @MockitoBean
+    private DeviceStateWriteBehind stateWrites;
+
+    @Autowired
+    private DevicesService svc;
+
+    @Autowired
+    private DevicesRepository repo;
+
+    @AfterEach
+    void cleanUp() {
+        repo.deleteAll(repo.findDeviceByNameAndBrand(NAME, BRAND));
+    }
+
+    @Test
+    void parallelDuplicateCreates() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger duplicated = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                calls.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        svc.create(new DeviceCreateRequest(NAME, BRAND, "AVAILABLE"));
+                        created.incrementAndGet();
+                    } catch (InvalidDuplicatedValuesException e) {
+                        duplicated.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> call : calls) {
+                call.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(created.get()).isEqualTo(1);
+        assertThat(duplicated.get()).isEqualTo(THREADS - 1);
+        assertThat(repo.findDeviceByNameAndBrand(NAME, BRAND)).hasSize(1);
+    }
+}